@@ -4,13 +4,29 @@ public class Action {
     private String type; // Can be "BORROW" or "RETURN"
     private int bookId; // Which book was involved
     private String userName; // Who did the action
+    private Loan loan; // For a RETURN: the loan it ended, so undo can bring it back
+    private Hold hold; // For a BORROW: the hold it picked up, so undo can put it back
 
     // Create a new action record
     // Time Complexity: O(1)
     public Action(String type, int bookId, String userName) {
+        this(type, bookId, userName, null);
+    }
+
+    // Create a new action record that remembers a loan
+    // Time Complexity: O(1)
+    public Action(String type, int bookId, String userName, Loan loan) {
+        this(type, bookId, userName, loan, null);
+    }
+
+    // Create a new action record that remembers a loan and a picked-up hold
+    // Time Complexity: O(1)
+    public Action(String type, int bookId, String userName, Loan loan, Hold hold) {
         this.type = type;
         this.bookId = bookId;
         this.userName = userName;
+        this.loan = loan;
+        this.hold = hold;
     }
 
     // Get what type of action this was
@@ -31,6 +47,18 @@ public class Action {
         return userName;
     }
 
+    // Get the loan this action ended (null if none)
+    // Time Complexity: O(1)
+    public Loan getLoan() {
+        return loan;
+    }
+
+    // Get the hold this action picked up (null if none)
+    // Time Complexity: O(1)
+    public Hold getHold() {
+        return hold;
+    }
+
     // Show the action in a readable way
     // Time Complexity: O(1)
     @Override
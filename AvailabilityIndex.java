@@ -0,0 +1,200 @@
+import java.util.Arrays;
+
+// Bitmap of which book IDs are available (bit set = available)
+// A Fenwick tree over blocks of 512 bits keeps running counts, so we can
+//   - count available books in O(1)
+//   - rank: count available books with a smaller ID in O(log n)
+//   - select: find the k-th available book ID in O(log n)
+// which makes paging through available books fast without scanning the catalog
+public class AvailabilityIndex {
+    private static final int WORDS_PER_BLOCK = 8; // 8 * 64 = 512 bits per block
+    private static final int BLOCK_BITS = WORDS_PER_BLOCK * 64;
+    private static final int MAX_BLOCKS = 1 << 22; // 2^22 * 512 bits covers every non-negative int ID
+
+    private long[] words; // The bitmap itself
+    private int[] tree; // Fenwick tree of per-block counts (1-based)
+    private int blocks;
+    private int count; // Total bits set
+
+    // Start with an empty bitmap
+    // Time Complexity: O(1)
+    public AvailabilityIndex() {
+        this.blocks = 4;
+        this.words = new long[blocks * WORDS_PER_BLOCK];
+        this.tree = new int[blocks + 1];
+        this.count = 0;
+    }
+
+    // Mark a book ID as available or not
+    // Time Complexity: O(log n)
+    public void set(int bookId, boolean available) {
+        if (bookId < 0) {
+            throw new IllegalArgumentException("Book ID cannot be negative: " + bookId);
+        }
+        if (bookId >= capacity()) {
+            if (!available) {
+                return; // Bits past the end are already off
+            }
+            grow(bookId);
+        }
+
+        int w = bookId >>> 6;
+        long mask = 1L << bookId;
+        boolean wasSet = (words[w] & mask) != 0;
+        if (wasSet == available) {
+            return;
+        }
+
+        if (available) {
+            words[w] |= mask;
+        } else {
+            words[w] &= ~mask;
+        }
+        int delta = available ? 1 : -1;
+        count += delta;
+        for (int b = bookId / BLOCK_BITS + 1; b <= blocks; b += b & -b) {
+            tree[b] += delta;
+        }
+    }
+
+    // Is this book ID available?
+    // Time Complexity: O(1)
+    public boolean get(int bookId) {
+        if (bookId < 0 || bookId >= capacity()) {
+            return false;
+        }
+        return (words[bookId >>> 6] & (1L << bookId)) != 0;
+    }
+
+    // How many books are available?
+    // Time Complexity: O(1)
+    public int count() {
+        return count;
+    }
+
+    // How many available book IDs are smaller than bookId?
+    // Time Complexity: O(log n)
+    public int rank(int bookId) {
+        if (bookId <= 0) {
+            return 0;
+        }
+        if (bookId >= capacity()) {
+            return count;
+        }
+
+        int block = bookId / BLOCK_BITS;
+        int result = 0;
+        for (int b = block; b > 0; b -= b & -b) {
+            result += tree[b]; // Full blocks before this one
+        }
+        int firstWord = block * WORDS_PER_BLOCK;
+        int lastWord = bookId >>> 6;
+        for (int w = firstWord; w < lastWord; w++) {
+            result += Long.bitCount(words[w]);
+        }
+        long partial = words[lastWord] & ((1L << bookId) - 1);
+        return result + Long.bitCount(partial);
+    }
+
+    // ID of the k-th available book (k starts at 0), or -1 if there are not that many
+    // Time Complexity: O(log n)
+    public int select(int k) {
+        if (k < 0 || k >= count) {
+            return -1;
+        }
+
+        // Walk down the Fenwick tree to find the block holding the k-th bit
+        int block = 0;
+        int remaining = k;
+        for (int step = Integer.highestOneBit(blocks); step > 0; step >>= 1) {
+            int next = block + step;
+            if (next <= blocks && tree[next] <= remaining) {
+                block = next;
+                remaining -= tree[next];
+            }
+        }
+
+        // Then find the word, then the bit
+        int w = block * WORDS_PER_BLOCK;
+        while (true) {
+            int bits = Long.bitCount(words[w]);
+            if (remaining < bits) {
+                break;
+            }
+            remaining -= bits;
+            w++;
+        }
+        long word = words[w];
+        for (int i = 0; i < remaining; i++) {
+            word &= word - 1; // Drop the lowest set bit
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    // Smallest available book ID that is >= fromId, or -1 if there is none
+    // Time Complexity: O(gap / 64)
+    public int nextAvailable(int fromId) {
+        if (fromId < 0) {
+            fromId = 0;
+        }
+        int w = fromId >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & (-1L << fromId);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            w++;
+            if (w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    // How many book IDs the bitmap covers right now (0 .. capacity - 1)
+    // Counted in long: with 2^22 blocks it is 2^31, one more than an int holds
+    // Time Complexity: O(1)
+    private long capacity() {
+        return (long) blocks * BLOCK_BITS;
+    }
+
+    // Make room for bookId (doubles the number of blocks until it fits)
+    // Time Complexity: O(n)
+    private void grow(int bookId) {
+        if (bookId >= (long) MAX_BLOCKS * BLOCK_BITS) {
+            throw new IllegalArgumentException("Book ID is too large for the availability bitmap: " + bookId);
+        }
+        int newBlocks = blocks;
+        while (bookId >= (long) newBlocks * BLOCK_BITS) {
+            newBlocks *= 2; // Stops at MAX_BLOCKS at the latest, checked above
+        }
+        words = Arrays.copyOf(words, newBlocks * WORDS_PER_BLOCK);
+        blocks = newBlocks;
+
+        // Rebuild the Fenwick tree from the block counts
+        tree = new int[blocks + 1];
+        for (int b = 0; b < blocks; b++) {
+            int blockCount = 0;
+            for (int w = b * WORDS_PER_BLOCK; w < (b + 1) * WORDS_PER_BLOCK; w++) {
+                blockCount += Long.bitCount(words[w]);
+            }
+            tree[b + 1] += blockCount;
+            int parent = (b + 1) + ((b + 1) & -(b + 1));
+            if (parent <= blocks) {
+                tree[parent] += tree[b + 1];
+            }
+        }
+    }
+
+    // Forget everything
+    // Time Complexity: O(1)
+    public void clear() {
+        blocks = 4;
+        words = new long[blocks * WORDS_PER_BLOCK];
+        tree = new int[blocks + 1];
+        count = 0;
+    }
+}
@@ -49,15 +49,15 @@ public class Book {
     // Time Complexity: O(1)
     @Override
     public String toString() {
-        String status = isAvailable ? "Available" : "Borrowed";
+        String status = isAvailable() ? "Available" : "Borrowed";
         return String.format("ID: %d | Title: %s | Author: %s | Status: %s", 
-                             id, title, author, status);
+                             getId(), getTitle(), getAuthor(), status);
     }
 
     // Format the book data for saving to a file
     // Time Complexity: O(1)
     public String toFileString() {
-        return id + "," + title + "," + author + "," + isAvailable;
+        return getId() + "," + getTitle() + "," + getAuthor() + "," + isAvailable();
     }
 
     // Create a book from a line read from the file
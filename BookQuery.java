@@ -0,0 +1,231 @@
+// A search with several conditions, e.g. "available books by Tolkien whose title
+// starts with 'The', first 20":
+//   new BookQuery().authorIs("Tolkien").available(true).titleStartsWith("The").limit(20)
+// Every condition is optional; a book has to meet all of them.
+// Title and author conditions ignore uppercase/lowercase.
+public class BookQuery {
+    private Integer id;
+    private String titleLow; // Lowest lowercase title allowed (null = no limit)
+    private boolean titleLowInclusive;
+    private String titleHigh; // Highest lowercase title allowed (null = no limit)
+    private boolean titleHighInclusive;
+    private String author; // Lowercase
+    private Boolean available;
+    private int offset;
+    private int limit;
+
+    // Start with no conditions (matches every book)
+    // Time Complexity: O(1)
+    public BookQuery() {
+        this.offset = 0;
+        this.limit = Integer.MAX_VALUE;
+    }
+
+    // Only the book with this ID
+    // Time Complexity: O(1)
+    public BookQuery idIs(int id) {
+        this.id = id;
+        return this;
+    }
+
+    // Only books with exactly this title
+    // Time Complexity: O(length)
+    public BookQuery titleIs(String title) {
+        String key = title.toLowerCase();
+        narrowTitle(key, true, key, true);
+        return this;
+    }
+
+    // Only books whose title starts with prefix
+    // Time Complexity: O(length)
+    public BookQuery titleStartsWith(String prefix) {
+        String key = prefix.toLowerCase();
+        if (key.isEmpty()) {
+            return this;
+        }
+        narrowTitle(key, true, prefixEnd(key), false);
+        return this;
+    }
+
+    // Only books whose title sorts at or after from and before to (either may be null)
+    // Time Complexity: O(length)
+    public BookQuery titleBetween(String from, String to) {
+        narrowTitle(from == null ? null : from.toLowerCase(), true, to == null ? null : to.toLowerCase(), false);
+        return this;
+    }
+
+    // Only books by this author
+    // Time Complexity: O(length)
+    public BookQuery authorIs(String author) {
+        this.author = author.toLowerCase();
+        return this;
+    }
+
+    // Only available (true) or only borrowed (false) books
+    // Time Complexity: O(1)
+    public BookQuery available(boolean available) {
+        this.available = available;
+        return this;
+    }
+
+    // Skip this many matches (for paging)
+    // Time Complexity: O(1)
+    public BookQuery offset(int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset cannot be negative: " + offset);
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    // Return at most this many matches
+    // Time Complexity: O(1)
+    public BookQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    // Does a book meet every condition? (offset and limit aside)
+    // Time Complexity: O(title length)
+    public boolean matches(Book book) {
+        if (id != null && book.getId() != id) {
+            return false;
+        }
+        if (available != null && book.isAvailable() != available) {
+            return false;
+        }
+        if (author != null && !book.getAuthor().equalsIgnoreCase(author)) {
+            return false;
+        }
+        if (hasTitleCondition()) {
+            String key = book.getTitle().toLowerCase();
+            if (titleLow != null) {
+                int comparison = key.compareTo(titleLow);
+                if (comparison < 0 || (comparison == 0 && !titleLowInclusive)) {
+                    return false;
+                }
+            }
+            if (titleHigh != null) {
+                int comparison = key.compareTo(titleHigh);
+                if (comparison > 0 || (comparison == 0 && !titleHighInclusive)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Time Complexity: O(1)
+    public Integer getId() {
+        return id;
+    }
+
+    // Time Complexity: O(1)
+    public boolean hasTitleCondition() {
+        return titleLow != null || titleHigh != null;
+    }
+
+    // Time Complexity: O(1)
+    public String getTitleLow() {
+        return titleLow;
+    }
+
+    // Time Complexity: O(1)
+    public boolean isTitleLowInclusive() {
+        return titleLowInclusive;
+    }
+
+    // Time Complexity: O(1)
+    public String getTitleHigh() {
+        return titleHigh;
+    }
+
+    // Time Complexity: O(1)
+    public boolean isTitleHighInclusive() {
+        return titleHighInclusive;
+    }
+
+    // Time Complexity: O(1)
+    public String getAuthor() {
+        return author;
+    }
+
+    // Time Complexity: O(1)
+    public Boolean getAvailable() {
+        return available;
+    }
+
+    // Time Complexity: O(1)
+    public int getOffset() {
+        return offset;
+    }
+
+    // Time Complexity: O(1)
+    public int getLimit() {
+        return limit;
+    }
+
+    // Keep only the part of the title range that also fits the new bounds
+    // Time Complexity: O(length)
+    private void narrowTitle(String low, boolean lowInclusive, String high, boolean highInclusive) {
+        if (low != null) {
+            int comparison = titleLow == null ? 1 : low.compareTo(titleLow);
+            if (comparison > 0 || (comparison == 0 && !lowInclusive)) {
+                titleLow = low;
+                titleLowInclusive = lowInclusive;
+            }
+        }
+        if (high != null) {
+            int comparison = titleHigh == null ? -1 : high.compareTo(titleHigh);
+            if (comparison < 0 || (comparison == 0 && !highInclusive)) {
+                titleHigh = high;
+                titleHighInclusive = highInclusive;
+            }
+        }
+    }
+
+    // The first string after every string that starts with prefix ("the" -> "thf"),
+    // or null if there is none
+    // Time Complexity: O(length)
+    private static String prefixEnd(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+
+    // Show the query in a readable way
+    // Time Complexity: O(1)
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Query:");
+        if (id != null) {
+            sb.append(" id = ").append(id);
+        }
+        if (hasTitleCondition()) {
+            sb.append(" title in ").append(titleLowInclusive ? "[" : "(")
+                    .append(titleLow == null ? "" : "'" + titleLow + "'").append(", ")
+                    .append(titleHigh == null ? "" : "'" + titleHigh + "'").append(titleHighInclusive ? "]" : ")");
+        }
+        if (author != null) {
+            sb.append(" author = '").append(author).append("'");
+        }
+        if (available != null) {
+            sb.append(available ? " available" : " borrowed");
+        }
+        if (offset > 0) {
+            sb.append(" offset ").append(offset);
+        }
+        if (limit != Integer.MAX_VALUE) {
+            sb.append(" limit ").append(limit);
+        }
+        return sb.toString();
+    }
+}
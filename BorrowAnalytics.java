@@ -0,0 +1,143 @@
+// Live trends from borrow, request and return events, in constant memory
+// Unlike the undo stack (which forgets what it pops), this keeps counting for a
+// sliding window - by default the last 7 days in one-day steps - and can always say:
+//   - the most borrowed books, authors, and the most active borrowers
+//   - the books most asked for while they were not available
+//   - the borrowers with the most late returns
+// Each list is a WindowedTopK (count-min sketches + heavy-hitter heaps), so memory
+// doesn't grow with the number of books or users. Counts are approximate: never too
+// low, and at most epsilon * (events in the window) too high with probability 1 - delta.
+public class BorrowAnalytics {
+    public static final double DEFAULT_EPSILON = 0.001;
+    public static final double DEFAULT_DELTA = 0.01;
+    public static final int DEFAULT_K = 10;
+    public static final long DEFAULT_WINDOW_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    public static final int DEFAULT_BUCKETS = 7;
+
+    private final double epsilon;
+    private final double delta;
+    private final long windowMillis;
+    private final WindowedTopK borrowedBooks;
+    private final WindowedTopK borrowedAuthors;
+    private final WindowedTopK borrowers;
+    private final WindowedTopK wantedUnavailable; // Requests and borrow attempts for books that were out
+    private final WindowedTopK lateReturners;
+
+    // Analytics with the default window (7 days) and error bounds
+    // Time Complexity: O(counters), about 2 MB
+    public BorrowAnalytics(long now) {
+        this(DEFAULT_K, DEFAULT_WINDOW_MILLIS, DEFAULT_BUCKETS, DEFAULT_EPSILON, DEFAULT_DELTA, now);
+    }
+
+    // Top k lists over the last windowMillis, moving in 'buckets' steps; every count is
+    // at most epsilon * (events in the window) too high, with probability 1 - delta
+    // Time Complexity: O(5 * buckets * (e / epsilon) * ln(1 / delta)) for the counters
+    public BorrowAnalytics(int k, long windowMillis, int buckets, double epsilon, double delta, long now) {
+        this.epsilon = epsilon;
+        this.delta = delta;
+        this.windowMillis = windowMillis;
+        this.borrowedBooks = new WindowedTopK(k, windowMillis, buckets, epsilon, delta, now);
+        this.borrowedAuthors = new WindowedTopK(k, windowMillis, buckets, epsilon, delta, now);
+        this.borrowers = new WindowedTopK(k, windowMillis, buckets, epsilon, delta, now);
+        this.wantedUnavailable = new WindowedTopK(k, windowMillis, buckets, epsilon, delta, now);
+        this.lateReturners = new WindowedTopK(k, windowMillis, buckets, epsilon, delta, now);
+    }
+
+    // Someone borrowed a book (directly or from the queue)
+    // Time Complexity: O(depth + log k) per list
+    public void recordBorrow(Book book, String userName, long now) {
+        borrowedBooks.add(book.getId(), label(book), now);
+        borrowedAuthors.add(book.getAuthor(), now);
+        borrowers.add(userName, now);
+    }
+
+    // Someone asked for a book that wasn't available (queued or turned away)
+    // Time Complexity: O(depth + log k)
+    public void recordUnavailableRequest(Book book, long now) {
+        wantedUnavailable.add(book.getId(), label(book), now);
+    }
+
+    // A book came back; late returns are counted per borrower
+    // Time Complexity: O(depth + log k)
+    public void recordReturn(String userName, boolean late, long now) {
+        if (late) {
+            lateReturners.add(userName, now);
+        }
+    }
+
+    // Most borrowed books in the window, most first
+    // Time Complexity: O(buckets^2 * k * depth)
+    public DynamicArray<WindowedTopK.Item> getTopBooks(long now) {
+        return borrowedBooks.top(now);
+    }
+
+    // Most borrowed authors in the window
+    // Time Complexity: O(buckets^2 * k * depth)
+    public DynamicArray<WindowedTopK.Item> getTopAuthors(long now) {
+        return borrowedAuthors.top(now);
+    }
+
+    // Users who borrowed the most in the window
+    // Time Complexity: O(buckets^2 * k * depth)
+    public DynamicArray<WindowedTopK.Item> getTopBorrowers(long now) {
+        return borrowers.top(now);
+    }
+
+    // Books most asked for while they were out
+    // Time Complexity: O(buckets^2 * k * depth)
+    public DynamicArray<WindowedTopK.Item> getMostWantedUnavailable(long now) {
+        return wantedUnavailable.top(now);
+    }
+
+    // Users with the most late returns in the window
+    // Time Complexity: O(buckets^2 * k * depth)
+    public DynamicArray<WindowedTopK.Item> getTopLateReturners(long now) {
+        return lateReturners.top(now);
+    }
+
+    // Build a readable report of every list
+    // Time Complexity: O(5 * buckets^2 * k * depth)
+    public String report(long now) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("=== Trends, last %s (counts may be high by up to %.2f%% of events, %.0f%% sure) ===%n",
+                describe(windowMillis), epsilon * 100, (1 - delta) * 100));
+        appendList(sb, "Most borrowed books", borrowedBooks, now);
+        appendList(sb, "Most borrowed authors", borrowedAuthors, now);
+        appendList(sb, "Most active borrowers", borrowers, now);
+        appendList(sb, "Most wanted while unavailable", wantedUnavailable, now);
+        appendList(sb, "Most late returns", lateReturners, now);
+        return sb.toString();
+    }
+
+    // Helper method to add one list to the report
+    // Time Complexity: O(buckets^2 * k * depth)
+    private static void appendList(StringBuilder sb, String title, WindowedTopK list, long now) {
+        DynamicArray<WindowedTopK.Item> items = list.top(now);
+        sb.append(String.format("%n%s (%d events, counts at most %d too high):%n", title, list.getTotal(now), list.getErrorBound(now)));
+        if (items.isEmpty()) {
+            sb.append("  (none)\n");
+        }
+        for (int i = 0; i < items.size(); i++) {
+            sb.append(String.format("  %2d. %-50s %6d%n", i + 1, items.get(i).getLabel(), items.get(i).getCount()));
+        }
+    }
+
+    // Helper method for what a report shows for a book
+    // Time Complexity: O(1)
+    private static String label(Book book) {
+        return "#" + book.getId() + " " + book.getTitle();
+    }
+
+    // Helper method to say how long a window is ("7 days", "3 hours", ...)
+    // Time Complexity: O(1)
+    private static String describe(long millis) {
+        long hours = millis / (60 * 60 * 1000);
+        if (hours >= 24 && hours % 24 == 0) {
+            return (hours / 24) + " days";
+        }
+        if (hours > 0) {
+            return hours + " hours";
+        }
+        return (millis / 60000) + " minutes";
+    }
+}
@@ -3,6 +3,7 @@
 public class BorrowRequest {
     private String userName; // Who wants to borrow
     private int bookId; // Which book they want
+    boolean served; // Handed a copy from the book's waitlist; Library skips it in the queue
     
     // Create a new borrow request
     // Time Complexity: O(1)
@@ -0,0 +1,75 @@
+// One change to the library, as seen by ChangeEventBus consumers
+// The bus allocates all of these up front and reuses them, so a consumer must
+// copy anything it wants to keep before it returns from onEvent()
+public class ChangeEvent {
+    private long sequence; // Position in the stream (0, 1, 2, ...)
+    private long timestamp; // Milliseconds since 1970 (System.currentTimeMillis)
+    private MutationListener.Type type;
+    private int bookId;
+    private String title;
+    private String author;
+    private boolean available; // Book status right after the change
+    private String userName; // Who did it (null for add/remove)
+
+    // Fill in the slot (only the bus does this, while no consumer can see it)
+    // Time Complexity: O(1)
+    void set(long sequence, long timestamp, MutationListener.Type type, int bookId, String title, String author,
+            boolean available, String userName) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.bookId = bookId;
+        this.title = title;
+        this.author = author;
+        this.available = available;
+        this.userName = userName;
+    }
+
+    // Time Complexity: O(1)
+    public long getSequence() {
+        return sequence;
+    }
+
+    // Time Complexity: O(1)
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    // Time Complexity: O(1)
+    public MutationListener.Type getType() {
+        return type;
+    }
+
+    // Time Complexity: O(1)
+    public int getBookId() {
+        return bookId;
+    }
+
+    // Time Complexity: O(1)
+    public String getTitle() {
+        return title;
+    }
+
+    // Time Complexity: O(1)
+    public String getAuthor() {
+        return author;
+    }
+
+    // Time Complexity: O(1)
+    public boolean isAvailable() {
+        return available;
+    }
+
+    // Time Complexity: O(1)
+    public String getUserName() {
+        return userName;
+    }
+
+    // Show the event in a readable way
+    // Time Complexity: O(1)
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + " - Book ID: " + bookId + " | Title: " + title + " | Author: " + author
+                + " | Available: " + available + (userName == null ? "" : " | User: " + userName);
+    }
+}
@@ -0,0 +1,284 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// In-process change-data-capture stream of every library mutation
+// Events go into a ring buffer of pre-allocated ChangeEvent slots. Each event gets a
+// sequence number; slot = sequence mod capacity. The library thread is the only writer:
+// it fills the next slot and then moves the cursor, which makes the event visible.
+// Every consumer runs on its own thread with its own sequence, reads everything up to
+// the cursor as one batch, and reports how far it got. The writer never overwrites a
+// slot the slowest consumer hasn't read yet (it waits instead), and publishing
+// allocates nothing. A waiting thread spins briefly and then parks until the other
+// side wakes it: publish wakes parked consumers, a consumer that moves on (or goes
+// away) wakes a parked writer. A consumer whose thread dies is dropped, so the
+// writer never waits on it.
+public class ChangeEventBus implements MutationListener {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int SPINS_BEFORE_PARKING = 100;
+
+    private final ChangeEvent[] ring;
+    private final int mask; // ring.length - 1 (the length is a power of two)
+    private final AtomicLong cursor; // Last published sequence (-1 = nothing yet)
+    private long nextSequence; // Only touched by the writer
+    private long cachedGate; // Writer's last look at the slowest consumer
+    private volatile Subscription[] subscriptions; // Replaced (never changed) on subscribe/unsubscribe
+    private volatile Thread writer; // Thread that last waited for consumers
+    private volatile boolean writerWaiting; // Writer is (about to be) parked
+
+    // Create a bus that holds the default number of unread events
+    // Time Complexity: O(capacity)
+    public ChangeEventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // Create a bus that holds (at least) capacity unread events
+    // Time Complexity: O(capacity) - every slot is allocated now, none later
+    public ChangeEventBus(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int length = Integer.highestOneBit(capacity);
+        if (length < capacity) {
+            length <<= 1;
+        }
+        this.ring = new ChangeEvent[length];
+        for (int i = 0; i < length; i++) {
+            ring[i] = new ChangeEvent();
+        }
+        this.mask = length - 1;
+        this.cursor = new AtomicLong(-1);
+        this.nextSequence = 0;
+        this.cachedGate = -1;
+        this.subscriptions = new Subscription[0];
+    }
+
+    // Library calls this after every change
+    // Time Complexity: O(1) unless the ring is full
+    @Override
+    public void onMutation(Type type, Book book, String userName) {
+        publish(type, book.getId(), book.getTitle(), book.getAuthor(), book.isAvailable(), userName);
+    }
+
+    // Put one event on the stream (single writer only - the library's thread)
+    // Waits if the slowest consumer is a whole ring behind
+    // Time Complexity: O(1) amortized, no allocation
+    public void publish(Type type, int bookId, String title, String author, boolean available, String userName) {
+        long sequence = nextSequence;
+        long wrapPoint = sequence - ring.length; // The event this one overwrites
+        if (wrapPoint > cachedGate) {
+            cachedGate = awaitConsumers(wrapPoint, sequence - 1, 0);
+        }
+
+        ring[(int) (sequence & mask)].set(sequence, System.currentTimeMillis(), type, bookId, title, author,
+                available, userName);
+        nextSequence = sequence + 1;
+        cursor.set(sequence); // Volatile write: the filled slot is now visible to consumers
+        for (Subscription subscription : subscriptions) {
+            if (subscription.waiting) {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    // Start a consumer on its own thread; it sees every event published from now on
+    // Time Complexity: O(consumers)
+    public synchronized Subscription subscribe(String name, ChangeEventConsumer consumer) {
+        Subscription subscription = new Subscription(name, consumer, cursor.get());
+        Subscription[] current = subscriptions;
+        Subscription[] bigger = new Subscription[current.length + 1];
+        System.arraycopy(current, 0, bigger, 0, current.length);
+        bigger[current.length] = subscription;
+        subscriptions = bigger;
+        subscription.thread.start();
+        return subscription;
+    }
+
+    // Stop a consumer; the writer no longer waits for it
+    // Time Complexity: O(consumers)
+    public synchronized void unsubscribe(Subscription subscription) {
+        subscription.running = false;
+        LockSupport.unpark(subscription.thread);
+        Subscription[] current = subscriptions;
+        int index = -1;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                index = i;
+            }
+        }
+        if (index < 0) {
+            return;
+        }
+        Subscription[] smaller = new Subscription[current.length - 1];
+        System.arraycopy(current, 0, smaller, 0, index);
+        System.arraycopy(current, index + 1, smaller, index, current.length - index - 1);
+        subscriptions = smaller;
+        wakeWriter(); // It may be waiting on this consumer
+    }
+
+    // Wait (up to timeoutMillis) for every consumer to read everything, then stop them
+    // Time Complexity: O(consumers)
+    public void close(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long last = cursor.get();
+        awaitConsumers(last, last, System.nanoTime() + Math.max(1, timeoutMillis) * 1_000_000);
+        for (Subscription subscription : subscriptions) {
+            unsubscribe(subscription);
+            try {
+                subscription.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Sequence of the newest event (-1 if nothing was published yet)
+    // Time Complexity: O(1)
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    // How many events fit in the ring
+    // Time Complexity: O(1)
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    // Lowest sequence any consumer has finished (defaultValue if there are none)
+    // Time Complexity: O(consumers)
+    private long slowestSequence(long defaultValue) {
+        long slowest = defaultValue;
+        for (Subscription subscription : subscriptions) {
+            slowest = Math.min(slowest, subscription.sequence.get());
+        }
+        return slowest;
+    }
+
+    // Writer side: wait until every consumer has finished target, or until deadlineNanos
+    // (0 = no limit). Spins first (cheap if the wait is short), then parks until a
+    // consumer reports progress or is dropped. Returns the slowest consumer's sequence.
+    // Time Complexity: O(consumers) per wake-up
+    private long awaitConsumers(long target, long defaultValue, long deadlineNanos) {
+        long gate;
+        int spins = 0;
+        while (target > (gate = slowestSequence(defaultValue))) {
+            long left = deadlineNanos == 0 ? 0 : deadlineNanos - System.nanoTime();
+            if (deadlineNanos != 0 && left <= 0) {
+                break;
+            }
+            if (spins++ < SPINS_BEFORE_PARKING) {
+                Thread.onSpinWait();
+                continue;
+            }
+            writer = Thread.currentThread();
+            writerWaiting = true; // Set before the re-check, so a consumer's progress can't be missed
+            if (target > slowestSequence(defaultValue)) {
+                if (deadlineNanos == 0) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, left);
+                }
+            }
+            writerWaiting = false;
+        }
+        return gate;
+    }
+
+    // Wake the writer if it is parked waiting for consumers
+    // Time Complexity: O(1)
+    private void wakeWriter() {
+        if (writerWaiting) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // One consumer reading the stream at its own pace
+    public final class Subscription {
+        private final String name;
+        private final ChangeEventConsumer consumer;
+        private final AtomicLong sequence; // Last event this consumer has finished
+        private final Thread thread;
+        private volatile boolean running;
+        private volatile boolean waiting; // Parked (or about to park) until the next publish
+        private volatile long batches; // How many batches were handed over (for statistics)
+
+        private Subscription(String name, ChangeEventConsumer consumer, long startAfter) {
+            this.name = name;
+            this.consumer = consumer;
+            this.sequence = new AtomicLong(startAfter);
+            this.running = true;
+            this.thread = new Thread(this::run, "change-events-" + name);
+            this.thread.setDaemon(true); // Don't keep the program alive just for this
+        }
+
+        // Read batches until stopped; if the thread dies, drop this consumer
+        private void run() {
+            try {
+                readBatches();
+            } finally {
+                if (running) { // Not unsubscribed - an Error escaped the consumer
+                    System.out.println("Change consumer '" + name + "' stopped unexpectedly; no longer waiting for it.");
+                    unsubscribe(this);
+                }
+            }
+        }
+
+        // Spin briefly when there's nothing to read, then park until publish wakes us
+        private void readBatches() {
+            int spins = 0;
+            while (running) {
+                long next = sequence.get() + 1;
+                long available = cursor.get();
+                if (available < next) {
+                    if (spins++ < SPINS_BEFORE_PARKING) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    waiting = true; // Set before the re-check, so a publish can't be missed
+                    if (running && cursor.get() < next) {
+                        LockSupport.park(this);
+                    }
+                    waiting = false;
+                    continue;
+                }
+                spins = 0;
+
+                // Everything up to the cursor is one batch
+                for (long s = next; s <= available; s++) {
+                    try {
+                        consumer.onEvent(ring[(int) (s & mask)], s, s == available);
+                    } catch (RuntimeException e) {
+                        System.out.println("Change consumer '" + name + "' failed on event " + s + ": " + e.getMessage());
+                    }
+                }
+                batches++;
+                sequence.set(available); // Lets the writer reuse these slots
+                wakeWriter();
+            }
+        }
+
+        // Consumer name (also its thread name)
+        // Time Complexity: O(1)
+        public String getName() {
+            return name;
+        }
+
+        // Last event this consumer has finished
+        // Time Complexity: O(1)
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        // How many published events this consumer still has to read
+        // Time Complexity: O(1)
+        public long getLag() {
+            return cursor.get() - sequence.get();
+        }
+
+        // How many batches this consumer has read
+        // Time Complexity: O(1)
+        public long getBatches() {
+            return batches;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+// Reads the change stream of a ChangeEventBus on its own thread
+public interface ChangeEventConsumer {
+
+    // Called once per event, in sequence order
+    // endOfBatch is true for the last event that is ready right now, so a consumer
+    // can buffer work (file writes, network sends) and flush once per batch
+    // The event object is reused after this returns - copy what you need
+    void onEvent(ChangeEvent event, long sequence, boolean endOfBatch);
+}
@@ -0,0 +1,33 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+// Change stream consumer that appends every event to a log file
+// (one tab-separated line per event, flushed once per batch)
+public class ChangeLogWriter implements ChangeEventConsumer {
+    private final PrintWriter writer;
+
+    // Open (or create) the log file for appending
+    // Time Complexity: O(1)
+    public ChangeLogWriter(String path) throws IOException {
+        this.writer = new PrintWriter(new BufferedWriter(new FileWriter(path, true)));
+    }
+
+    // Time Complexity: O(length of the event)
+    @Override
+    public void onEvent(ChangeEvent event, long sequence, boolean endOfBatch) {
+        writer.println(sequence + "\t" + event.getTimestamp() + "\t" + event.getType() + "\t" + event.getBookId()
+                + "\t" + event.isAvailable() + "\t" + event.getTitle() + "\t" + event.getAuthor() + "\t"
+                + (event.getUserName() == null ? "" : event.getUserName()));
+        if (endOfBatch) {
+            writer.flush(); // One write to disk per batch, not per event
+        }
+    }
+
+    // Flush and close the file
+    // Time Complexity: O(1)
+    public void close() {
+        writer.close();
+    }
+}
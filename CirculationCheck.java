@@ -0,0 +1,157 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// Runnable checks that loans and holds survive saving and loading the library
+// Run it in an empty directory (it writes books.txt and the files next to it):
+//   java CirculationCheck
+// Prints PASS or FAIL for every check and exits with status 1 if any failed.
+public class CirculationCheck {
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final String[] FILES = {"books.txt", "books.txt.loans", "books.txt.holds", "reminders.log"};
+
+    private static PrintStream console;
+    private static int failures;
+
+    public static void main(String[] args) {
+        for (String name : FILES) {
+            if (new File(name).exists()) {
+                System.out.println(name + " already exists here - run this in an empty directory.");
+                System.exit(2);
+            }
+        }
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The library talks a lot
+        try {
+            checkLoansSurviveRestart();
+            checkLoansSurviveStagedStartup();
+            checkHoldsSurviveRestart();
+            checkHeldCopiesOfManyCopies();
+        } finally {
+            System.setOut(console);
+            for (String name : FILES) {
+                new File(name).delete();
+            }
+        }
+        console.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // Loans, due dates and reminders come back after a save and a new Library
+    // Time Complexity: O(1) - a handful of books
+    private static void checkLoansSurviveRestart() {
+        Library library = new Library(0, false);
+        library.addBook("Dune", "Frank Herbert");
+        library.addBook("Emma", "Jane Austen");
+        library.addBook("Ulysses", "James Joyce");
+        library.borrowBook("ann", 1);
+        library.borrowBook("bob", 2);
+        library.renewLoan("bob", 2);
+        long annDue = library.getLoan(1).getDueAt();
+        long bobDue = library.getLoan(2).getDueAt();
+        long later = annDue + DAY_MILLIS; // Ann is late then, Bob isn't (renewed)
+        library.sendOverdueReminders(later);
+        library.saveBooksToFile();
+
+        Library again = new Library(0, true);
+        check(again.getLoanCount() == 2, "both loans are back after a restart");
+        Loan ann = again.getLoan(1);
+        check(ann != null && ann.getUserName().equals("ann") && ann.getDueAt() == annDue, "Ann's loan keeps its due date");
+        check(again.getLoan(2) != null && again.getLoan(2).getDueAt() == bobDue, "Bob's renewal is kept");
+        check(again.listOverdue(later).size() == 1 && again.getOverdueCount() == 0, "overdue list works on loaded loans");
+        check(ann != null && ann.isReminded(), "a reminder already sent is not sent again");
+        check(again.sendOverdueReminders(later) == 0, "no second reminder after the restart");
+
+        again.returnBook("ann", 1);
+        check(again.getBookById(1).isAvailable() && again.getLoan(1) == null, "a loaded loan can be returned");
+        again.saveBooksToFile();
+        Library third = new Library(0, true);
+        check(third.getLoanCount() == 1 && third.getLoan(1) == null, "a returned loan stays returned");
+
+        third.returnBook("bob", 2);
+        third.saveBooksToFile();
+        check(!new File("books.txt.loans").exists(), "no loans file is left when nothing is on loan");
+    }
+
+    // The staged startup (what Main uses) and the columnar catalog load loans too
+    // Time Complexity: O(1) - a handful of books
+    private static void checkLoansSurviveStagedStartup() {
+        Library library = new Library(0, true);
+        library.borrowBook("cem", 3);
+        long due = library.getLoan(3).getDueAt();
+        library.saveBooksToFile();
+
+        Library staged = Library.startStaged(Library.UnbuiltIndexPolicy.WAIT);
+        check(staged.getLoan(3) != null && staged.getLoan(3).getDueAt() == due, "staged startup loads the loans");
+        Library columnar = Library.startStaged(Library.UnbuiltIndexPolicy.WAIT, Library.CatalogLayout.COLUMNAR);
+        check(columnar.getLoan(3) != null && !columnar.getBookById(3).isAvailable(), "a columnar catalog loads the loans");
+        columnar.returnBook("cem", 3);
+        columnar.saveBooksToFile();
+    }
+
+    // A returned book kept for the next person is still on the hold shelf after a
+    // restart - and can be borrowed again once the hold runs out
+    // Time Complexity: O(1) - a handful of books
+    private static void checkHoldsSurviveRestart() {
+        Library library = new Library(0, true);
+        library.borrowBook("ann", 1);
+        library.requestBorrow("bob", 1);
+        library.returnBook("ann", 1);
+        Hold hold = library.getHold(1);
+        library.saveBooksToFile();
+
+        Library again = new Library(0, true);
+        Hold loaded = again.getHold(1);
+        check(loaded != null && loaded.getUserName().equals("bob") && loaded.getExpiresAt() == hold.getExpiresAt(),
+                "the hold is back after a restart, with its expiry");
+        check(!again.getBookById(1).isAvailable() && again.getHoldCount() == 1, "the held book is not on the open shelf");
+        again.borrowBook("cem", 1);
+        check(again.getLoan(1) == null, "someone else can't take the held book");
+        again.borrowBook("bob", 1);
+        check(again.getLoan(1) != null && again.getHold(1) == null, "the person it is held for can pick it up");
+        again.undoLastAction(); // Back on the hold shelf
+
+        again.expireHolds(hold.getExpiresAt() + 2000);
+        check(again.getBookById(1).isAvailable() && again.getHoldCount() == 0, "a loaded hold runs out onto the shelf");
+        again.saveBooksToFile();
+        check(!new File("books.txt.holds").exists(), "no holds file is left when the hold shelf is empty");
+        Library third = new Library(0, true);
+        third.borrowBook("cem", 1);
+        check(third.getLoan(1) != null, "the book can be borrowed after the hold ran out and a restart");
+        third.returnBook("cem", 1);
+        third.saveBooksToFile();
+    }
+
+    // For a title with several copies, held copies are neither on the shelf nor lost
+    // Time Complexity: O(1) - a handful of books
+    private static void checkHeldCopiesOfManyCopies() {
+        Library library = new Library(0, true);
+        library.addCopies(2, 2); // 3 copies of Emma
+        library.borrowBook("ann", 2);
+        library.borrowBook("bob", 2);
+        library.borrowBook("cem", 2);
+        library.requestBorrow("dan", 2);
+        library.returnBook("ann", 2); // Goes to Dan's hold
+        library.saveBooksToFile();
+
+        Library again = new Library(0, true);
+        check(again.getCopies(2) == 3 && again.getAvailableCopies(2) == 0, "copy counts are saved without the held copy");
+        check(again.getHold(2) != null && again.getHold(2).getUserName().equals("dan") && again.getLoanCount() == 2,
+                "the held copy and both loans are back");
+        again.expireHolds(again.getHold(2).getExpiresAt() + 2000);
+        check(again.getAvailableCopies(2) == 1 && again.getBookById(2).isAvailable(), "the held copy goes back on the shelf");
+        again.returnBook("bob", 2);
+        again.returnBook("cem", 2);
+        check(again.getAvailableCopies(2) == 3, "every copy is accounted for");
+        again.saveBooksToFile();
+    }
+
+    // Print one result
+    // Time Complexity: O(1)
+    private static void check(boolean ok, String what) {
+        console.println((ok ? "PASS " : "FAIL ") + what);
+        if (!ok) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,472 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntPredicate;
+
+// Book catalog stored as columns of primitives instead of one object per book
+//   ids[row]          - book IDs in an int array, found again through an int hash table
+//   authorIds[row]    - index into a table of distinct author names
+//   titleStart/Length - where the title's UTF-8 bytes are in one shared byte array
+//   available         - one bit per row in a long array
+// Removed books leave their row, title bytes and author entry behind until the catalog
+// is compacted (by itself, once there are more removed rows than books). Compacting
+// moves the rows, so - like OffHeapCatalog - a view remembers its book's ID and finds
+// the new row by ID afterwards; a view of a removed book then throws IllegalStateException.
+// The catalog order, the title order and the lookups are in CompactCatalog; Library
+// keeps no Book objects of its own for this catalog, only the columns exist.
+public class ColumnarCatalog extends CompactCatalog {
+    private static final int INITIAL_ROWS = 16;
+    private static final int MIN_ROWS_TO_COMPACT = 1024; // Fewer removed rows than this are left alone
+
+    private int[] ids;
+    private int[] authorIds;
+    private int[] titleStart;
+    private int[] titleLength;
+    private long[] available; // Bit per row
+    private long[] deleted; // Bit per row
+    private int rowCount; // Rows in use (including deleted ones)
+    private int liveRows; // Rows that are not deleted
+    private int epoch; // Goes up every time rows move (compaction, clear)
+
+    private byte[] titleBytes; // All titles back to back
+    private int titleBytesUsed;
+
+    private String[] authorNames; // Author ID -> name as written
+    private int[] authorGroups; // Author ID -> group of names that are the same ignoring case
+    private int authorCount;
+    private final HashMap<String, Integer> authorLookup; // Name -> author ID
+    private final HashMap<String, Integer> groupLookup; // Lowercase name -> group
+    private int[] groupBooks; // Group -> books in the catalog by that author
+    private long authorNameBytes; // The names and their map entries, added up as authors come in
+
+    // ID -> row table (open addressing): each entry is row + 1, 0 = empty, -1 = removed
+    private int[] idTable; // Length is always a power of two
+    private int idTableUsed; // Entries that are not empty (including removed ones)
+
+    // Start with an empty catalog
+    // Time Complexity: O(1)
+    public ColumnarCatalog() {
+        this.authorLookup = new HashMap<>();
+        this.groupLookup = new HashMap<>();
+        clearRows();
+    }
+
+    // Number of rows in use, including deleted ones
+    // Time Complexity: O(1)
+    public int rowCount() {
+        return rowCount;
+    }
+
+    // Throw away deleted rows, their title bytes and authors no book has any more
+    // Views handed out before this find their book again by ID
+    // Time Complexity: O(n + title bytes)
+    public void compact() {
+        int[] oldIds = ids;
+        int[] oldAuthorIds = authorIds;
+        int[] oldTitleStart = titleStart;
+        int[] oldTitleLength = titleLength;
+        long[] oldAvailable = available;
+        long[] oldDeleted = deleted;
+        byte[] oldTitleBytes = titleBytes;
+        String[] oldAuthorNames = authorNames;
+        int oldRowCount = rowCount;
+        int[] oldToNew = new int[oldRowCount];
+
+        int rows = Math.max(INITIAL_ROWS, liveRows);
+        int bytes = 0;
+        for (int old = 0; old < oldRowCount; old++) {
+            if (!getBit(oldDeleted, old)) {
+                bytes += oldTitleLength[old];
+            }
+        }
+        ids = new int[rows];
+        authorIds = new int[rows];
+        titleStart = new int[rows];
+        titleLength = new int[rows];
+        available = new long[(rows + 63) >>> 6];
+        deleted = new long[available.length];
+        titleBytes = new byte[Math.max(INITIAL_ROWS * 16, bytes)];
+        titleBytesUsed = 0;
+        rowCount = 0;
+        clearAuthors();
+
+        for (int old = 0; old < oldRowCount; old++) {
+            if (getBit(oldDeleted, old)) {
+                oldToNew[old] = -1;
+                continue;
+            }
+            int row = rowCount++;
+            ids[row] = oldIds[old];
+            authorIds[row] = authorIdFor(oldAuthorNames[oldAuthorIds[old]]);
+            groupBooks[authorGroups[authorIds[row]]]++;
+            System.arraycopy(oldTitleBytes, oldTitleStart[old], titleBytes, titleBytesUsed, oldTitleLength[old]);
+            titleStart[row] = titleBytesUsed;
+            titleLength[row] = oldTitleLength[old];
+            titleBytesUsed += oldTitleLength[old];
+            setBit(available, row, getBit(oldAvailable, old));
+            oldToNew[old] = row;
+        }
+        epoch++;
+        idTable = new int[tableLengthFor(liveRows)];
+        idTableUsed = 0;
+        for (int row = 0; row < rowCount; row++) {
+            putId(row);
+        }
+        renumberRows(oldToNew);
+    }
+
+    // Books by an author (ignoring uppercase/lowercase), from a count kept per author
+    // Time Complexity: O(1) average
+    @Override
+    public int countByAuthor(String author) {
+        Integer group = groupLookup.get(author.toLowerCase());
+        return group == null ? 0 : groupBooks[group];
+    }
+
+    // Store one book's values in a new row
+    // Time Complexity: O(1) amortized
+    @Override
+    protected int addRow(Book book) {
+        if (rowCount == ids.length) {
+            growRows(ids.length * 2);
+        }
+
+        byte[] bytes = book.getTitle().getBytes(StandardCharsets.UTF_8);
+        if (titleBytesUsed + bytes.length > titleBytes.length) {
+            titleBytes = Arrays.copyOf(titleBytes, Math.max(titleBytes.length * 2, titleBytesUsed + bytes.length));
+        }
+        System.arraycopy(bytes, 0, titleBytes, titleBytesUsed, bytes.length);
+
+        int row = rowCount++;
+        ids[row] = book.getId();
+        authorIds[row] = authorIdFor(book.getAuthor());
+        groupBooks[authorGroups[authorIds[row]]]++;
+        titleStart[row] = titleBytesUsed;
+        titleLength[row] = bytes.length;
+        titleBytesUsed += bytes.length;
+        setBit(available, row, book.isAvailable());
+        liveRows++;
+        putId(row);
+        return row;
+    }
+
+    // Mark a row deleted (its values stay until compaction); compact once most rows are deleted ones
+    // Time Complexity: O(1) average, O(n) when it compacts (amortized O(1))
+    @Override
+    protected void deleteRow(int row) {
+        setBit(deleted, row, true);
+        liveRows--;
+        groupBooks[authorGroups[authorIds[row]]]--;
+        removeId(row);
+
+        int deletedRows = rowCount - liveRows;
+        if (deletedRows >= MIN_ROWS_TO_COMPACT && deletedRows > liveRows) {
+            compact();
+        }
+    }
+
+    // Grow the columns once for a batch of books (instead of doubling several times)
+    // Time Complexity: O(rows) if it has to grow, O(1) otherwise
+    @Override
+    protected void reserveRows(int moreRows) {
+        if (rowCount + moreRows > ids.length) {
+            growRows(rowCount + moreRows);
+        }
+    }
+
+    // Drop every row
+    // Time Complexity: O(1)
+    @Override
+    protected void clearRows() {
+        ids = new int[INITIAL_ROWS];
+        authorIds = new int[INITIAL_ROWS];
+        titleStart = new int[INITIAL_ROWS];
+        titleLength = new int[INITIAL_ROWS];
+        available = new long[1];
+        deleted = new long[1];
+        rowCount = 0;
+        liveRows = 0;
+        epoch++;
+        titleBytes = new byte[INITIAL_ROWS * 16];
+        titleBytesUsed = 0;
+        clearAuthors();
+        idTable = new int[INITIAL_ROWS * 2];
+        idTableUsed = 0;
+    }
+
+    // Helper method to empty the author dictionary
+    // Time Complexity: O(1)
+    private void clearAuthors() {
+        authorNames = new String[INITIAL_ROWS];
+        authorGroups = new int[INITIAL_ROWS];
+        authorCount = 0;
+        authorNameBytes = 0;
+        authorLookup.clear();
+        groupLookup.clear();
+        groupBooks = new int[INITIAL_ROWS];
+    }
+
+    // Find the row of a book ID (-1 if missing)
+    // Time Complexity: O(1) average
+    @Override
+    protected int rowOfId(int id) {
+        int mask = idTable.length - 1;
+        for (int i = hash(id) & mask; idTable[i] != 0; i = (i + 1) & mask) {
+            int row = idTable[i] - 1;
+            if (row >= 0 && ids[row] == id) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected int idOf(int row) {
+        return ids[row];
+    }
+
+    @Override
+    protected Book view(int row) {
+        return new RowBook(row);
+    }
+
+    @Override
+    protected int titleLength(int row) {
+        return titleLength[row];
+    }
+
+    @Override
+    protected byte titleByte(int row, int i) {
+        return titleBytes[titleStart[row] + i];
+    }
+
+    // Time Complexity: O(title length)
+    @Override
+    protected String decodeTitle(int row) {
+        return new String(titleBytes, titleStart[row], titleLength[row], StandardCharsets.UTF_8);
+    }
+
+    // Author names are looked up once, then only int IDs are compared per row
+    // Time Complexity: O(1) average
+    @Override
+    protected IntPredicate authorMatcher(String author) {
+        Integer group = groupLookup.get(author);
+        if (group == null || groupBooks[group] == 0) {
+            return null;
+        }
+        int wanted = group;
+        return row -> authorGroups[authorIds[row]] == wanted;
+    }
+
+    // Every column and table at its allocated length, plus the author names
+    // Time Complexity: O(1)
+    @Override
+    protected long rowBytes() {
+        long bytes = 16L + 4L * ids.length
+                + 16L + 4L * authorIds.length
+                + 16L + 4L * titleStart.length
+                + 16L + 4L * titleLength.length
+                + 16L + 8L * available.length
+                + 16L + 8L * deleted.length
+                + 16L + titleBytes.length
+                + 16L + 4L * idTable.length
+                + 16L + 4L * authorNames.length + 16L + 4L * authorGroups.length + 16L + 4L * groupBooks.length;
+        return bytes + authorNameBytes;
+    }
+
+    // Helper method to make every per-row column this long
+    // Time Complexity: O(rows)
+    private void growRows(int rows) {
+        ids = Arrays.copyOf(ids, rows);
+        authorIds = Arrays.copyOf(authorIds, rows);
+        titleStart = Arrays.copyOf(titleStart, rows);
+        titleLength = Arrays.copyOf(titleLength, rows);
+        int words = (rows + 63) >>> 6;
+        if (words > available.length) {
+            available = Arrays.copyOf(available, words);
+            deleted = Arrays.copyOf(deleted, words);
+        }
+        if (tableLengthFor(liveRows + rows - rowCount) > idTable.length) {
+            rehash(tableLengthFor(liveRows + rows - rowCount));
+        }
+    }
+
+    // Look up (or create) the dictionary ID of an author name
+    // Time Complexity: O(1) average
+    private int authorIdFor(String author) {
+        Integer known = authorLookup.get(author);
+        if (known != null) {
+            return known;
+        }
+        if (authorCount == authorNames.length) {
+            authorNames = Arrays.copyOf(authorNames, authorNames.length * 2);
+            authorGroups = Arrays.copyOf(authorGroups, authorGroups.length * 2);
+        }
+        String key = author.toLowerCase();
+        Integer group = groupLookup.get(key);
+        if (group == null) {
+            group = groupLookup.size();
+            groupLookup.put(key, group);
+            if (group == groupBooks.length) {
+                groupBooks = Arrays.copyOf(groupBooks, groupBooks.length * 2);
+            }
+        }
+        authorNames[authorCount] = author;
+        authorGroups[authorCount] = group;
+        authorNameBytes += 24 + 16 + author.length() * 2L + 2 * (32 + 16); // String + array, an entry in each map
+        authorLookup.put(author, authorCount);
+        return authorCount++;
+    }
+
+    // Where does this ID start probing in the table?
+    // Time Complexity: O(1)
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Remember a row under its book's ID (a later row with the same ID wins, like a map)
+    // Time Complexity: O(1) amortized
+    private void putId(int row) {
+        int existing = rowOfId(ids[row]);
+        if (existing >= 0) {
+            removeId(existing);
+        }
+        if ((idTableUsed + 1) * 2 > idTable.length) {
+            rehash(tableLengthFor(liveRows)); // Only grows if most entries are real, not removed
+        }
+        int mask = idTable.length - 1;
+        int i = hash(ids[row]) & mask;
+        while (idTable[i] > 0) {
+            i = (i + 1) & mask;
+        }
+        if (idTable[i] == 0) {
+            idTableUsed++; // Reusing a removed entry doesn't use up a new one
+        }
+        idTable[i] = row + 1;
+    }
+
+    // Forget a row in the ID table (the entry is marked removed so probing keeps working)
+    // Time Complexity: O(1) average
+    private void removeId(int row) {
+        int mask = idTable.length - 1;
+        for (int i = hash(ids[row]) & mask; idTable[i] != 0; i = (i + 1) & mask) {
+            if (idTable[i] == row + 1) {
+                idTable[i] = -1;
+                return;
+            }
+        }
+    }
+
+    // Helper method: a power-of-two table length that is at most a quarter full with n IDs
+    // Time Complexity: O(1)
+    private static int tableLengthFor(int n) {
+        return Math.max(INITIAL_ROWS * 2, Integer.highestOneBit(Math.max(1, n) * 4 - 1) << 1);
+    }
+
+    // Build a new ID table of the given length (also drops removed entries)
+    // Time Complexity: O(table length)
+    private void rehash(int newLength) {
+        int[] old = idTable;
+        idTable = new int[newLength];
+        idTableUsed = 0;
+        int mask = newLength - 1;
+        for (int entry : old) {
+            if (entry > 0) {
+                int i = hash(ids[entry - 1]) & mask;
+                while (idTable[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                idTable[i] = entry;
+                idTableUsed++;
+            }
+        }
+    }
+
+    // Turn a bit on or off
+    // Time Complexity: O(1)
+    private static void setBit(long[] bits, int row, boolean on) {
+        if (on) {
+            bits[row >>> 6] |= 1L << row;
+        } else {
+            bits[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    // Read a bit
+    // Time Complexity: O(1)
+    private static boolean getBit(long[] bits, int row) {
+        return (bits[row >>> 6] & (1L << row)) != 0;
+    }
+
+    // A Book that reads its values from one row of the columns
+    // Only made when a book is handed out - nothing in the library keeps these
+    // If the rows were moved since, the row is looked up again by ID
+    private class RowBook extends Book {
+        private final int id;
+        private long located; // Epoch in the high half, row in the low half (read and written at once)
+
+        RowBook(int row) {
+            super(0, null, null);
+            this.id = ids[row];
+            this.located = (long) epoch << 32 | row;
+        }
+
+        // The row this book is in now
+        // Time Complexity: O(1), O(1) average once after the rows moved
+        private int row() {
+            long at = located;
+            if ((int) (at >>> 32) == epoch) {
+                return (int) at;
+            }
+            int found = rowOfId(id);
+            if (found < 0) {
+                throw new IllegalStateException("Book " + id + " was removed from the columnar catalog");
+            }
+            located = (long) epoch << 32 | found;
+            return found;
+        }
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        // Decoded once, then read from the catalog's cache of recent titles
+        @Override
+        public String getTitle() {
+            return titleOf(row());
+        }
+
+        @Override
+        public String getAuthor() {
+            return authorNames[authorIds[row()]];
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return getBit(available, row());
+        }
+
+        // Writes the bit column, so every view of this book sees the change
+        @Override
+        public void setAvailable(boolean isAvailable) {
+            setBit(available, row(), isAvailable);
+        }
+
+        // Two views of the same book in the same catalog are the same book
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof RowBook && ((RowBook) other).id == id && owner() == ((RowBook) other).owner();
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        private ColumnarCatalog owner() {
+            return ColumnarCatalog.this;
+        }
+    }
+}
@@ -0,0 +1,685 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+// A catalog that keeps every book as a row of primitive values instead of a Book
+// object, and answers the lookups Library would otherwise keep a per-book index for:
+//   findById      - the subclass's ID -> row table
+//   findByAuthor  - a scan of the rows (only authors are stored once, not per book)
+//   title order   - an int array of rows sorted by title (then ID), searched with
+//                   binary search while the title bytes are compared where they lie
+// A Book handed out is a short-lived view of a row and nothing keeps it, so a
+// million books are a few arrays, not a million objects for the garbage collector
+// to trace. Titles that are read as Strings are decoded once into a small cache.
+// Subclasses only store rows: ColumnarCatalog on the heap, OffHeapCatalog outside it.
+//
+// Positions (what get(i) returns, in order of addition) and rows are different things:
+// 'order' maps a position to its row, so removing a book only shifts ints.
+public abstract class CompactCatalog extends DynamicArray<Book> {
+    private static final int INITIAL_SIZE = 16;
+    private static final int DECODED_TITLES = 1024; // Titles kept as Strings (a power of two)
+    private static final int INSERTION_SORT_RUN = 16; // Merge sort hands smaller runs to insertion sort
+
+    // ASCII byte -> its lowercase byte, or -1 where toLowerCase() would give something
+    // else than one ASCII char (the Turkish dotted/dotless i, for example) - those
+    // titles are compared as decoded Strings, so the order is exactly the title tree's
+    private static final int[] LOWER = new int[128];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            String lower = String.valueOf((char) c).toLowerCase();
+            LOWER[c] = lower.length() == 1 && lower.charAt(0) < 128 ? lower.charAt(0) : -1;
+        }
+    }
+
+    // One decoded title (never changed, so other threads can read the cache safely)
+    private static final class DecodedTitle {
+        final int row;
+        final String title;
+
+        DecodedTitle(int row, String title) {
+            this.row = row;
+            this.title = title;
+        }
+    }
+
+    private int[] order; // Position in the catalog -> row
+    private int size;
+    private int[] byTitle; // Rows sorted by lowercase title, then ID
+    private int titleCount; // Rows in byTitle
+    private boolean titleOrderKept; // False between suspendTitleOrder() and rebuildTitleOrder()
+    private DecodedTitle[] decoded; // Direct-mapped by row
+
+    // Start with an empty catalog
+    // Time Complexity: O(1)
+    protected CompactCatalog() {
+        super(1); // The parent's array is not used
+        this.order = new int[INITIAL_SIZE];
+        this.byTitle = new int[INITIAL_SIZE];
+        this.titleOrderKept = true;
+        this.decoded = new DecodedTitle[DECODED_TITLES];
+    }
+
+    // ---- What a subclass stores ----
+
+    // Store a copy of a book in a new row and return the row
+    protected abstract int addRow(Book book);
+
+    // Forget a row's book (its ID no longer finds it); the row's values may stay readable
+    protected abstract void deleteRow(int row);
+
+    // Make room for this many more rows without growing again
+    protected abstract void reserveRows(int moreRows);
+
+    // Drop every row
+    protected abstract void clearRows();
+
+    // The row of a book ID (-1 if there is none)
+    protected abstract int rowOfId(int id);
+
+    // The book ID in a row
+    protected abstract int idOf(int row);
+
+    // A view that reads and writes one row
+    protected abstract Book view(int row);
+
+    // Title of a row: its UTF-8 length, one of its bytes, and the whole title decoded
+    protected abstract int titleLength(int row);
+
+    protected abstract byte titleByte(int row, int i);
+
+    protected abstract String decodeTitle(int row);
+
+    // Which rows are by this author (ignoring uppercase/lowercase); null if none can be
+    protected abstract IntPredicate authorMatcher(String author);
+
+    // Bytes the rows take, counting every array or buffer at its allocated size
+    protected abstract long rowBytes();
+
+    // ---- DynamicArray ----
+
+    // Add a book at the end of the catalog (its values are copied into a row)
+    // Time Complexity: O(1) amortized, + O(log n) compares and an O(n) int move
+    // for the title order (not kept during a bulk load)
+    @Override
+    public void add(Book book) {
+        int row = addRow(book);
+        if (size == order.length) {
+            order = Arrays.copyOf(order, order.length * 2);
+        }
+        order[size++] = row;
+        if (titleOrderKept) {
+            insertIntoTitleOrder(row);
+        }
+    }
+
+    // Get a view of the book at a position
+    // Time Complexity: O(1)
+    @Override
+    public Book get(int index) {
+        checkIndex(index);
+        return view(order[index]);
+    }
+
+    // Remove the book at a position; returns a plain copy of it, since the row is gone
+    // Time Complexity: O(n) worst case - only ints are shifted
+    @Override
+    public Book remove(int index) {
+        checkIndex(index);
+        int row = order[index];
+        Book book = view(row);
+        Book removed = new Book(book.getId(), book.getTitle(), book.getAuthor());
+        removed.setAvailable(book.isAvailable());
+        System.arraycopy(order, index + 1, order, index, size - index - 1);
+        size--;
+        if (titleOrderKept) {
+            removeFromTitleOrder(row);
+        }
+        deleteRow(row);
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int capacity() {
+        return order.length;
+    }
+
+    // Make room for a batch of books (every array grows once instead of doubling)
+    // Time Complexity: O(n) if it has to grow, O(1) otherwise
+    @Override
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > order.length) {
+            order = Arrays.copyOf(order, minCapacity);
+        }
+        if (titleOrderKept && minCapacity > byTitle.length) {
+            byTitle = Arrays.copyOf(byTitle, minCapacity);
+        }
+        reserveRows(Math.max(0, minCapacity - size));
+    }
+
+    // Find the position of a book (compares IDs, not objects)
+    // Time Complexity: O(n) over the order array
+    @Override
+    public int indexOf(Book element) {
+        return indexOfId(element.getId());
+    }
+
+    // Remove everything
+    // Time Complexity: O(1)
+    @Override
+    public void clear() {
+        clearRows();
+        order = new int[INITIAL_SIZE];
+        size = 0;
+        byTitle = new int[INITIAL_SIZE];
+        titleCount = 0;
+        titleOrderKept = true;
+        decoded = new DecodedTitle[DECODED_TITLES];
+    }
+
+    @Override
+    public Iterator<Book> iterator() {
+        return new Iterator<Book>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Book next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return view(order[index++]);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<Book> spliterator() {
+        return new OrderSpliterator(0, size);
+    }
+
+    // ---- Lookups ----
+
+    // Find a book by ID (null if missing)
+    // Time Complexity: O(1) average
+    public Book findById(int bookId) {
+        int row = rowOfId(bookId);
+        return row < 0 ? null : view(row);
+    }
+
+    // Find the position of a book ID (-1 if missing)
+    // Time Complexity: O(1) average to find the row + O(n) over the order array
+    public int indexOfId(int bookId) {
+        int row = rowOfId(bookId);
+        if (row < 0) {
+            return -1;
+        }
+        for (int i = 0; i < size; i++) {
+            if (order[i] == row) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // All books by an author (ignoring uppercase/lowercase), in order of addition
+    // Time Complexity: O(n) over the rows
+    public DynamicArray<Book> findByAuthor(String author) {
+        DynamicArray<Book> books = new DynamicArray<>();
+        booksByAuthor(author).forEachRemaining(books::add);
+        return books;
+    }
+
+    // Same as findByAuthor(), but lazy: rows are only checked as the books are read
+    // Time Complexity: O(1) to create, O(n) to read to the end
+    public Iterator<Book> booksByAuthor(String author) {
+        IntPredicate matches = authorMatcher(author.toLowerCase());
+        return new Iterator<Book>() {
+            private int index = matches == null ? size : nextMatch(0);
+
+            private int nextMatch(int from) {
+                while (from < size && !matches.test(order[from])) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Book next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                Book book = view(order[index]);
+                index = nextMatch(index + 1);
+                return book;
+            }
+        };
+    }
+
+    // How many books an author has, if the subclass keeps count (-1 if it doesn't)
+    // Time Complexity: O(1) average where it is kept
+    public int countByAuthor(String author) {
+        return -1;
+    }
+
+    // Find a book by title, ignoring uppercase/lowercase (the lowest ID wins, like the tree)
+    // Time Complexity: O(log n) title compares
+    public Book findByTitle(String title) {
+        requireTitleOrder();
+        String key = title.toLowerCase();
+        byte[] keyBytes = utf8(key);
+        int rank = lowerBound(key, keyBytes, false);
+        if (rank < titleCount && compareToKey(byTitle[rank], key, keyBytes, false) == 0) {
+            return view(byTitle[rank]);
+        }
+        return null;
+    }
+
+    // How many books have a title that sorts before this one
+    // Time Complexity: O(log n) title compares
+    public int countTitlesBefore(String title) {
+        requireTitleOrder();
+        String key = title.toLowerCase();
+        return lowerBound(key, utf8(key), false);
+    }
+
+    // How many books have a title that sorts before this one or is equal to it
+    // Time Complexity: O(log n) title compares
+    public int countTitlesUpTo(String title) {
+        requireTitleOrder();
+        String key = title.toLowerCase();
+        return upperBound(key, utf8(key), false);
+    }
+
+    // How many books have a title that sorts before this prefix or starts with it
+    // (countTitlesBefore(prefix) up to this is every title that starts with it)
+    // Time Complexity: O(log n) title compares
+    public int countTitlesThroughPrefix(String prefix) {
+        requireTitleOrder();
+        String key = prefix.toLowerCase();
+        return upperBound(key, utf8(key), true);
+    }
+
+    // The book at a position in title order
+    // Time Complexity: O(1)
+    public Book bookAtTitleRank(int rank) {
+        requireTitleOrder();
+        if (rank < 0 || rank >= titleCount) {
+            throw new IndexOutOfBoundsException("Rank: " + rank + ", Size: " + titleCount);
+        }
+        return view(byTitle[rank]);
+    }
+
+    // The ID of the book at a position in title order (no view is made)
+    // Time Complexity: O(1)
+    public int idAtTitleRank(int rank) {
+        requireTitleOrder();
+        if (rank < 0 || rank >= titleCount) {
+            throw new IndexOutOfBoundsException("Rank: " + rank + ", Size: " + titleCount);
+        }
+        return idOf(byTitle[rank]);
+    }
+
+    // Go through the books in title order, positions from..to-1
+    // Don't add or remove books while it is being used
+    // Time Complexity: O(1) to create and per book
+    public Iterator<Book> titleOrderIterator(int from, int to) {
+        requireTitleOrder();
+        int end = Math.min(to, titleCount);
+        return new Iterator<Book>() {
+            private int rank = Math.max(0, from);
+
+            @Override
+            public boolean hasNext() {
+                return rank < end;
+            }
+
+            @Override
+            public Book next() {
+                if (rank >= end) {
+                    throw new NoSuchElementException();
+                }
+                return view(byTitle[rank++]);
+            }
+        };
+    }
+
+    // ---- Title order ----
+
+    // Stop keeping the title order (before adding many books); rebuildTitleOrder()
+    // sorts everything once afterwards. Title lookups fail until then.
+    // Time Complexity: O(1)
+    public void suspendTitleOrder() {
+        titleOrderKept = false;
+        byTitle = new int[0];
+        titleCount = 0;
+    }
+
+    // Sort every book by title again (after suspendTitleOrder()). May run on another
+    // thread as long as nothing adds or removes books meanwhile; the caller publishes
+    // the result (Library does with a volatile flag).
+    // Time Complexity: O(n log n) title compares
+    public void rebuildTitleOrder() {
+        int[] rows = Arrays.copyOf(order, Math.max(INITIAL_SIZE, size));
+        sortRows(rows, new int[size], 0, size);
+        byTitle = rows;
+        titleCount = size;
+        titleOrderKept = true;
+    }
+
+    // Is the title order there (false between suspendTitleOrder() and rebuildTitleOrder())?
+    // Time Complexity: O(1)
+    public boolean isTitleOrderKept() {
+        return titleOrderKept;
+    }
+
+    // How many compares a title lookup takes at most (the title order's "height")
+    // Time Complexity: O(1)
+    public int getTitleSearchDepth() {
+        return 32 - Integer.numberOfLeadingZeros(titleCount);
+    }
+
+    // ---- Memory ----
+
+    // Bytes per book, counting every array at its allocated size (rows, catalog order,
+    // title order and the decoded titles), so the number is what the catalog really costs
+    // Time Complexity: O(1) for the arrays here + whatever rowBytes() has to add up
+    public double bytesPerBook() {
+        return size == 0 ? 0 : (double) totalBytes() / size;
+    }
+
+    // Bytes the whole catalog takes (see bytesPerBook)
+    // Time Complexity: O(1) for the arrays here + whatever rowBytes() has to add up
+    public long totalBytes() {
+        long bytes = rowBytes() + 16L + 4L * order.length + 16L + 4L * byTitle.length + 16L + 4L * decoded.length;
+        for (DecodedTitle entry : decoded) {
+            if (entry != null) {
+                bytes += 16 + 24 + 16 + entry.title.length() * 2L; // Entry, String and its array (at most)
+            }
+        }
+        return bytes;
+    }
+
+    // ---- For subclasses ----
+
+    // A row's title, from the cache if it was decoded lately
+    // Time Complexity: O(1) on a hit, O(title length) to decode
+    protected final String titleOf(int row) {
+        DecodedTitle[] cache = decoded; // Read the field once
+        int slot = (row * 0x9E3779B9 >>> 16) & (cache.length - 1);
+        DecodedTitle entry = cache[slot];
+        if (entry != null && entry.row == row) {
+            return entry.title;
+        }
+        String title = decodeTitle(row);
+        cache[slot] = new DecodedTitle(row, title);
+        return title;
+    }
+
+    // Rows were moved (compaction): oldToNew[row] is each row's new number
+    // Time Complexity: O(n)
+    protected final void renumberRows(int[] oldToNew) {
+        for (int i = 0; i < size; i++) {
+            order[i] = oldToNew[order[i]];
+        }
+        for (int i = 0; i < titleCount; i++) {
+            byTitle[i] = oldToNew[byTitle[i]];
+        }
+        decoded = new DecodedTitle[DECODED_TITLES];
+    }
+
+    // Compare two bytes the way their lowercase chars compare; 0x100 means "can't
+    // tell from the bytes" (non-ASCII or no one-char lowercase)
+    // Time Complexity: O(1)
+    protected static int foldedDifference(int a, int b) {
+        if (a >= 128 || b >= 128 || LOWER[a] < 0 || LOWER[b] < 0) {
+            return 0x100;
+        }
+        return LOWER[a] - LOWER[b];
+    }
+
+    // ---- Helpers ----
+
+    // Compare two rows by lowercase title, then ID (the title tree's order)
+    // Time Complexity: O(title length)
+    private int compareRows(int a, int b) {
+        int lengthA = titleLength(a);
+        int lengthB = titleLength(b);
+        int n = Math.min(lengthA, lengthB);
+        int comparison = 0;
+        for (int i = 0; i < n && comparison == 0; i++) {
+            int x = titleByte(a, i) & 0xFF;
+            int y = titleByte(b, i) & 0xFF;
+            if (x != y) {
+                comparison = foldedDifference(x, y);
+                if (comparison == 0x100) {
+                    comparison = titleOf(a).toLowerCase().compareTo(titleOf(b).toLowerCase());
+                    return comparison != 0 ? comparison : Integer.compare(idOf(a), idOf(b));
+                }
+            }
+        }
+        if (comparison == 0) {
+            comparison = lengthA - lengthB;
+        }
+        return comparison != 0 ? comparison : Integer.compare(idOf(a), idOf(b));
+    }
+
+    // Compare a row's lowercase title with a lowercase key; with 'prefix', titles that
+    // start with the key count as equal
+    // Time Complexity: O(key length)
+    private int compareToKey(int row, String key, byte[] keyBytes, boolean prefix) {
+        int length = titleLength(row);
+        int n = Math.min(length, keyBytes.length);
+        for (int i = 0; i < n; i++) {
+            int x = titleByte(row, i) & 0xFF;
+            int y = keyBytes[i] & 0xFF;
+            if (x != y) {
+                int comparison = foldedDifference(x, y);
+                if (comparison == 0x100) {
+                    String title = titleOf(row).toLowerCase();
+                    return prefix && title.startsWith(key) ? 0 : title.compareTo(key);
+                }
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+        }
+        if (prefix && length >= keyBytes.length) {
+            return 0;
+        }
+        return length - keyBytes.length;
+    }
+
+    // First position in title order whose title is not below the key
+    // Time Complexity: O(log n) compares
+    private int lowerBound(String key, byte[] keyBytes, boolean prefix) {
+        int low = 0;
+        int high = titleCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareToKey(byTitle[middle], key, keyBytes, prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // First position in title order whose title is above the key
+    // Time Complexity: O(log n) compares
+    private int upperBound(String key, byte[] keyBytes, boolean prefix) {
+        int low = 0;
+        int high = titleCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareToKey(byTitle[middle], key, keyBytes, prefix) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Put a new row into its place in the title order
+    // Time Complexity: O(log n) compares + O(n) to move the ints after it
+    private void insertIntoTitleOrder(int row) {
+        int low = 0;
+        int high = titleCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareRows(byTitle[middle], row) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (titleCount == byTitle.length) {
+            byTitle = Arrays.copyOf(byTitle, Math.max(INITIAL_SIZE, byTitle.length * 2));
+        }
+        System.arraycopy(byTitle, low, byTitle, low + 1, titleCount - low);
+        byTitle[low] = row;
+        titleCount++;
+    }
+
+    // Take a row out of the title order
+    // Time Complexity: O(log n) compares + O(n) to move the ints after it
+    private void removeFromTitleOrder(int row) {
+        int low = 0;
+        int high = titleCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareRows(byTitle[middle], row) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        while (low < titleCount && byTitle[low] != row) {
+            low++; // Another row with the same title and ID (IDs are normally unique)
+        }
+        if (low == titleCount) {
+            return;
+        }
+        System.arraycopy(byTitle, low + 1, byTitle, low, titleCount - low - 1);
+        titleCount--;
+    }
+
+    // Sort rows from..to-1 by title (merge sort, stable; runs already in order cost one compare)
+    // Time Complexity: O(n log n) compares
+    private void sortRows(int[] rows, int[] temp, int from, int to) {
+        if (to - from <= INSERTION_SORT_RUN) {
+            for (int i = from + 1; i < to; i++) {
+                int row = rows[i];
+                int j = i;
+                while (j > from && compareRows(rows[j - 1], row) > 0) {
+                    rows[j] = rows[j - 1];
+                    j--;
+                }
+                rows[j] = row;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sortRows(rows, temp, from, middle);
+        sortRows(rows, temp, middle, to);
+        if (compareRows(rows[middle - 1], rows[middle]) <= 0) {
+            return; // Already in order
+        }
+        System.arraycopy(rows, from, temp, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compareRows(temp[left], temp[right]) <= 0)) {
+                rows[i] = temp[left++];
+            } else {
+                rows[i] = temp[right++];
+            }
+        }
+    }
+
+    // Title lookups need the title order
+    // Time Complexity: O(1)
+    private void requireTitleOrder() {
+        if (!titleOrderKept) {
+            throw new IllegalStateException("The title order is being rebuilt");
+        }
+    }
+
+    // Time Complexity: O(1)
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    // Time Complexity: O(length)
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Splits the catalog order by position range, like DynamicArray's spliterator
+    private class OrderSpliterator implements Spliterator<Book> {
+        private int from;
+        private final int to;
+
+        OrderSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Book> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(view(order[from++]));
+            return true;
+        }
+
+        @Override
+        public Spliterator<Book> trySplit() {
+            int middle = (from + to) >>> 1;
+            if (middle <= from) {
+                return null;
+            }
+            Spliterator<Book> prefix = new OrderSpliterator(from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+}
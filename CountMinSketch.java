@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+// Approximate counts for any number of keys in a fixed amount of memory
+// 'depth' rows of 'width' counters; a key adds to one counter per row (picked by a
+// different hash in each row) and its count is read as the smallest of those counters.
+// Other keys that land on the same counters can only make it bigger, never smaller, so:
+//   true count <= estimate <= true count + epsilon * (total of all counts)
+// with probability at least 1 - delta, where width = ceil(e / epsilon) and
+// depth = ceil(ln(1 / delta)).
+// add() uses "conservative update": it only raises the counters that are at the
+// minimum, which keeps the same guarantee with much less overcounting.
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final long[] seeds; // One hash per row
+    private final int[] counters; // Row after row
+    private long total; // Sum of everything added
+
+    // Create a sketch with the given error bounds
+    // Time Complexity: O(width * depth) - the counters are allocated up front
+    public CountMinSketch(double epsilon, double delta) {
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("epsilon and delta must be between 0 and 1: " + epsilon + ", " + delta);
+        }
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.seeds = new long[depth];
+        for (int row = 0; row < depth; row++) {
+            seeds[row] = mix(0x9E3779B97F4A7C15L * (row + 1));
+        }
+        this.counters = new int[width * depth];
+    }
+
+    // Count a key 'count' more times and return its new estimate
+    // Time Complexity: O(depth)
+    public int add(long key, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Counts only go up: " + count);
+        }
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(row, key)]);
+        }
+        int target = (int) Math.min(Integer.MAX_VALUE, (long) estimate + count);
+        for (int row = 0; row < depth; row++) {
+            int i = index(row, key);
+            if (counters[i] < target) {
+                counters[i] = target;
+            }
+        }
+        total += count;
+        return target;
+    }
+
+    // How many times a key was counted (never too low, maybe a bit too high)
+    // Time Complexity: O(depth)
+    public int estimate(long key) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(row, key)]);
+        }
+        return estimate;
+    }
+
+    // Forget everything (the counters are reused)
+    // Time Complexity: O(width * depth)
+    public void clear() {
+        Arrays.fill(counters, 0);
+        total = 0;
+    }
+
+    // Sum of all counts added since the last clear
+    // Time Complexity: O(1)
+    public long getTotal() {
+        return total;
+    }
+
+    // Counters per row (e / epsilon)
+    public int getWidth() {
+        return width;
+    }
+
+    // Number of rows (ln(1 / delta))
+    public int getDepth() {
+        return depth;
+    }
+
+    // Turn a string into a key (the same string always gives the same key)
+    // Time Complexity: O(length)
+    public static long keyOf(String text) {
+        long h = 0xCBF29CE484222325L; // FNV-1a
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    // Helper method to pick a key's counter in one row
+    // Time Complexity: O(1)
+    private int index(int row, long key) {
+        long h = mix(key ^ seeds[row]);
+        return row * width + (int) ((h >>> 1) % width);
+    }
+
+    // Helper method to scramble the bits of a long (splitmix64 finalizer)
+    // Time Complexity: O(1)
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,771 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+// B+tree of (title, book ID) pairs kept in a file of fixed-size pages
+// Only the pages in the PageCache are in memory, so the index can be much bigger
+// than the heap: a search reads one page per level (the top levels are nearly always
+// cached), and a listing walks the leaves from left to right through their "next"
+// links. Leaves built by rebuild() sit one after another in the file, so an
+// alphabetical listing is mostly one long sequential read.
+// Entries are ordered by lowercase title, then book ID (like PersistentTitleTree).
+// Only the first 200 characters of a title are kept, so callers check the book's
+// real title when it matters (see matches()).
+//
+// File layout (4 KB pages):
+//   page 0 - header: magic, version, page size, root page, height, entries,
+//            pages, "closed cleanly" flag, fingerprint of all entries
+//   other pages - one tree node each:
+//     0  byte  type (0 = leaf, 1 = inner)
+//     2  short number of entries
+//     4  int   leaf: next leaf (0 = last); inner: child for keys before entry 0
+//     8  short where the entry data starts (entries are packed at the end of the page)
+//     10 ...   one short per entry: where that entry is (kept in key order)
+//   entry: short key length in chars, the chars, int book ID, (inner only) int child
+//   (inner keys are only as long as needed to tell two leaves apart)
+// Deleting only takes the entry out of its leaf - pages are never merged; rebuild()
+// packs everything tightly again.
+public class DiskTitleIndex {
+    public static final int PAGE_SIZE = 4096;
+    public static final int MAX_KEY_CHARS = 200; // Longer titles are cut here (a page holds at least 9 keys)
+
+    private static final int MAGIC = 0x4C425449; // "LBTI"
+    private static final int VERSION = 1;
+
+    // Header fields
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_PAGE_SIZE = 8;
+    private static final int H_ROOT = 12;
+    private static final int H_HEIGHT = 16;
+    private static final int H_SIZE = 20;
+    private static final int H_PAGES = 24;
+    private static final int H_CLEAN = 28;
+    private static final int H_FINGERPRINT = 32;
+
+    // Node fields
+    private static final int N_TYPE = 0;
+    private static final int N_COUNT = 2;
+    private static final int N_LINK = 4;
+    private static final int N_DATA = 8;
+    private static final int N_SLOTS = 10;
+
+    private static final byte LEAF = 0;
+    private static final byte INNER = 1;
+    private static final int REBUILD_FILL = PAGE_SIZE * 9 / 10; // Leave some room for later inserts
+
+    private final String path;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final PageCache cache;
+    private int root;
+    private volatile int height; // Read by the metrics thread
+    private volatile int size;
+    private int pageCount;
+    private long fingerprint; // Sum of entryHash() of every entry
+    private boolean clean; // The file on disk is complete (nothing changed since the last flush)
+    private boolean wasClean; // How the file was found when it was opened
+
+    // One entry, used while splitting and rebuilding
+    private static final class Entry {
+        final String key;
+        final int bookId;
+        final int child; // Inner nodes only
+
+        Entry(String key, int bookId, int child) {
+            this.key = key;
+            this.bookId = bookId;
+            this.child = child;
+        }
+
+        int bytes(boolean leaf) {
+            return 2 + 2 * key.length() + 4 + (leaf ? 0 : 4);
+        }
+    }
+
+    // Walks entries in key order, one leaf at a time
+    public final class Cursor {
+        private String[] keys = new String[0];
+        private int[] ids = new int[0];
+        private int position = -1;
+        private int nextLeaf;
+
+        private Cursor(int leaf, int start) {
+            loadLeaf(leaf);
+            position = start - 1;
+        }
+
+        // Move to the next entry (false when there are no more)
+        // Time Complexity: O(1) amortized - one page read per leaf
+        public boolean next() {
+            position++;
+            while (position >= keys.length) {
+                if (nextLeaf == 0) {
+                    return false;
+                }
+                loadLeaf(nextLeaf);
+                position = 0;
+            }
+            return true;
+        }
+
+        // Lowercase title (cut to MAX_KEY_CHARS) of the current entry
+        public String key() {
+            return keys[position];
+        }
+
+        // Book ID of the current entry
+        public int bookId() {
+            return ids[position];
+        }
+
+        // Helper method to copy one leaf's entries so the page can be unpinned right away
+        // Time Complexity: O(entries in the leaf)
+        private void loadLeaf(int leaf) {
+            synchronized (DiskTitleIndex.this) {
+                ByteBuffer page = cache.pinForScan(leaf);
+                try {
+                    int count = count(page);
+                    keys = new String[count];
+                    ids = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        keys[i] = DiskTitleIndex.key(page, i);
+                        ids[i] = DiskTitleIndex.bookId(page, i);
+                    }
+                    nextLeaf = page.getInt(N_LINK);
+                } finally {
+                    cache.unpin(leaf, false);
+                }
+            }
+        }
+    }
+
+    private DiskTitleIndex(String path, RandomAccessFile file, int frames) {
+        this.path = path;
+        this.file = file;
+        this.channel = file.getChannel();
+        this.cache = new PageCache(channel, PAGE_SIZE, frames);
+    }
+
+    // Open an index file (created empty if it doesn't exist)
+    // At most memoryBudgetBytes of pages are kept in memory (at least 4 pages)
+    // Time Complexity: O(1)
+    public static DiskTitleIndex open(String path, long memoryBudgetBytes) throws IOException {
+        int frames = (int) Math.max(4, Math.min(Integer.MAX_VALUE, memoryBudgetBytes / PAGE_SIZE));
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        DiskTitleIndex index = new DiskTitleIndex(path, file, frames);
+        try {
+            if (file.length() == 0) {
+                index.initEmpty();
+                index.wasClean = true;
+            } else {
+                index.readHeader();
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+        return index;
+    }
+
+    // Stand-in for the whole set of entries: equal sets give equal fingerprints,
+    // so a caller can tell whether the file still matches its catalog
+    // Time Complexity: O(length of the title)
+    public static long entryHash(String title, int bookId) {
+        long h = keyOf(title).hashCode() * 0x9E3779B97F4A7C15L + bookId;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // The key a title is stored under
+    // Time Complexity: O(length of the title)
+    public static String keyOf(String title) {
+        String key = title.toLowerCase();
+        return key.length() > MAX_KEY_CHARS ? key.substring(0, MAX_KEY_CHARS) : key;
+    }
+
+    // Is this entry's key the stored form of the title? (the book's real title still
+    // has to be checked if the title is longer than MAX_KEY_CHARS)
+    // Time Complexity: O(length of the title)
+    public static boolean matches(String key, String title) {
+        return key.equals(keyOf(title));
+    }
+
+    // Add a (title, book ID) entry; does nothing if it is already there
+    // Time Complexity: O(log n) pages, usually all cached except the leaf
+    public synchronized void insert(String title, int bookId) {
+        String key = keyOf(title);
+        int[] path = descend(key, bookId);
+        ByteBuffer leaf = cache.pin(path[0]);
+        try {
+            int pos = lowerBound(leaf, key, bookId);
+            if (pos < count(leaf) && compare(leaf, pos, key, bookId) == 0) {
+                return;
+            }
+        } finally {
+            cache.unpin(path[0], false);
+        }
+        markChanged();
+
+        Entry carry = new Entry(key, bookId, 0);
+        for (int level = 0; carry != null; level++) {
+            if (level == height) {
+                // The root split - the tree gets one level taller
+                int newRoot = allocatePage();
+                ByteBuffer page = cache.pinNew(newRoot);
+                writeNode(page, INNER, root, new Entry[] { carry }, 0, 1);
+                cache.unpin(newRoot, true);
+                root = newRoot;
+                height++;
+                break;
+            }
+            carry = insertInto(path[level], carry, level == 0);
+        }
+        size++;
+        fingerprint += entryHash(title, bookId);
+    }
+
+    // Remove a (title, book ID) entry; false if it wasn't there
+    // Time Complexity: O(log n) pages
+    public synchronized boolean delete(String title, int bookId) {
+        String key = keyOf(title);
+        int leafNo = descend(key, bookId)[0];
+        ByteBuffer leaf = cache.pin(leafNo);
+        boolean changed = false;
+        try {
+            int pos = lowerBound(leaf, key, bookId);
+            int count = count(leaf);
+            if (pos >= count || compare(leaf, pos, key, bookId) != 0) {
+                return false;
+            }
+            markChanged();
+            for (int i = pos; i < count - 1; i++) {
+                leaf.putShort(N_SLOTS + 2 * i, leaf.getShort(N_SLOTS + 2 * (i + 1)));
+            }
+            leaf.putShort(N_COUNT, (short) (count - 1));
+            changed = true;
+        } finally {
+            cache.unpin(leafNo, changed);
+        }
+        size--;
+        fingerprint -= entryHash(title, bookId);
+        return true;
+    }
+
+    // A cursor on the first entry with this title (or the first one after it)
+    // Time Complexity: O(log n) pages
+    public synchronized Cursor seek(String title) {
+        String key = keyOf(title);
+        int leafNo = descend(key, Integer.MIN_VALUE)[0];
+        ByteBuffer leaf = cache.pin(leafNo);
+        int pos;
+        try {
+            pos = lowerBound(leaf, key, Integer.MIN_VALUE);
+        } finally {
+            cache.unpin(leafNo, false);
+        }
+        return new Cursor(leafNo, pos);
+    }
+
+    // A cursor before the first entry
+    // Time Complexity: O(log n) pages
+    public synchronized Cursor first() {
+        int pageNo = root;
+        for (int level = height - 1; level > 0; level--) {
+            ByteBuffer page = cache.pin(pageNo);
+            int child = page.getInt(N_LINK);
+            cache.unpin(pageNo, false);
+            pageNo = child;
+        }
+        return new Cursor(pageNo, 0);
+    }
+
+    // Books in key order, looked up by ID (books the lookup doesn't know are skipped)
+    // Time Complexity: O(1) to create
+    public Iterator<Book> books(Cursor cursor, IntFunction<Book> lookup) {
+        return new Iterator<Book>() {
+            private Book next = advance();
+
+            private Book advance() {
+                while (cursor.next()) {
+                    Book book = lookup.apply(cursor.bookId());
+                    if (book != null) {
+                        return book;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Book next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Book book = next;
+                next = advance();
+                return book;
+            }
+        };
+    }
+
+    // Throw everything away and build the index again from these books, packed tightly,
+    // with the leaves one after another in the file
+    // Time Complexity: O(n log n) to sort + O(n) page writes
+    public synchronized void rebuild(Iterable<Book> books) {
+        DynamicArray<Entry> list = new DynamicArray<>();
+        long newFingerprint = 0;
+        for (Book book : books) {
+            list.add(new Entry(keyOf(book.getTitle()), book.getId(), 0));
+            newFingerprint += entryHash(book.getTitle(), book.getId());
+        }
+        Entry[] entries = new Entry[list.size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = list.get(i);
+        }
+        Arrays.sort(entries, (a, b) -> {
+            int c = a.key.compareTo(b.key);
+            return c != 0 ? c : Integer.compare(a.bookId, b.bookId);
+        });
+
+        cache.discardAll();
+        try {
+            channel.truncate(PAGE_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not truncate " + path, e);
+        }
+        pageCount = 1;
+        clean = true;
+        markChanged();
+
+        // Leaves first, in order, then each level of inner nodes above them
+        DynamicArray<Entry> level = new DynamicArray<>(); // First key of each node + its page
+        int start = 0;
+        do {
+            int end = fill(entries, start, true);
+            int leafNo = allocatePage();
+            ByteBuffer page = cache.pinNew(leafNo);
+            // Leaves get consecutive pages, so the next leaf is always the next page
+            writeNode(page, LEAF, end < entries.length ? leafNo + 1 : 0, entries, start, end);
+            cache.unpin(leafNo, true);
+            level.add(start == 0 ? new Entry("", 0, leafNo) : separator(entries[start - 1], entries[start], leafNo));
+            start = end;
+        } while (start < entries.length);
+
+        int newHeight = 1;
+        while (level.size() > 1) {
+            DynamicArray<Entry> parents = new DynamicArray<>();
+            Entry[] children = new Entry[level.size()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = level.get(i);
+            }
+            start = 0;
+            while (start < children.length) {
+                // The first child becomes the node's link, the others its entries
+                int end = fill(children, start + 1, false);
+                int nodeNo = allocatePage();
+                ByteBuffer page = cache.pinNew(nodeNo);
+                writeNode(page, INNER, children[start].child, children, start + 1, end);
+                cache.unpin(nodeNo, true);
+                parents.add(new Entry(children[start].key, children[start].bookId, nodeNo));
+                start = end;
+            }
+            level = parents;
+            newHeight++;
+        }
+
+        root = level.get(0).child;
+        height = newHeight;
+        size = entries.length;
+        fingerprint = newFingerprint;
+        flush();
+    }
+
+    // Write all changed pages and the header to disk and mark the file complete
+    // Time Complexity: O(cached pages)
+    public synchronized void flush() {
+        cache.flush();
+        clean = true;
+        writeHeader();
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not flush " + path, e);
+        }
+    }
+
+    // Flush and close the file
+    // Time Complexity: O(cached pages)
+    public synchronized void close() throws IOException {
+        flush();
+        file.close();
+    }
+
+    // Was the file complete when it was opened? (false after a crash - rebuild it then)
+    // Time Complexity: O(1)
+    public boolean wasClosedCleanly() {
+        return wasClean;
+    }
+
+    // How many entries there are
+    // Time Complexity: O(1)
+    public int getSize() {
+        return size;
+    }
+
+    // How many levels the tree has (pages read by a search)
+    // Time Complexity: O(1)
+    public int getHeight() {
+        return height;
+    }
+
+    // Sum of entryHash() over all entries
+    // Time Complexity: O(1)
+    public synchronized long getFingerprint() {
+        return fingerprint;
+    }
+
+    // How many pages the file has (including the header page)
+    // Time Complexity: O(1)
+    public synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    // Get the page cache (for hit/miss/read/write statistics)
+    // Time Complexity: O(1)
+    public PageCache getCache() {
+        return cache;
+    }
+
+    // Get where the index file is
+    // Time Complexity: O(1)
+    public String getPath() {
+        return path;
+    }
+
+    // Helper method to find the pages from the leaf up to the root for a key
+    // (path[0] is the leaf, path[height - 1] the root)
+    // Time Complexity: O(height) pages
+    private int[] descend(String key, int bookId) {
+        int[] path = new int[height];
+        int pageNo = root;
+        for (int level = height - 1; level > 0; level--) {
+            path[level] = pageNo;
+            ByteBuffer page = cache.pin(pageNo);
+            try {
+                int pos = upperBound(page, key, bookId); // Entries <= the key come before pos
+                pageNo = pos == 0 ? page.getInt(N_LINK) : child(page, pos - 1);
+            } finally {
+                cache.unpin(path[level], false);
+            }
+        }
+        path[0] = pageNo;
+        return path;
+    }
+
+    // Helper method to put an entry into one node
+    // Returns the entry to add to the parent if the node had to split, null otherwise
+    // Time Complexity: O(page size)
+    private Entry insertInto(int pageNo, Entry entry, boolean leaf) {
+        ByteBuffer page = cache.pin(pageNo);
+        try {
+            int pos = lowerBound(page, entry.key, entry.bookId);
+            if (tryInsert(page, pos, entry, leaf)) {
+                return null;
+            }
+            Entry[] entries = readEntries(page, leaf);
+            writeNode(page, leaf ? LEAF : INNER, page.getInt(N_LINK), entries, 0, entries.length); // Close the gaps
+            if (tryInsert(page, pos, entry, leaf)) {
+                return null;
+            }
+
+            // Split: about half the bytes stay, the rest go to a new page on the right
+            Entry[] all = new Entry[entries.length + 1];
+            System.arraycopy(entries, 0, all, 0, pos);
+            all[pos] = entry;
+            System.arraycopy(entries, pos, all, pos + 1, entries.length - pos);
+            int total = 0;
+            for (Entry e : all) {
+                total += e.bytes(leaf);
+            }
+            int mid = 0;
+            for (int bytes = 0; mid < all.length - 1 && bytes < total / 2; mid++) {
+                bytes += all[mid].bytes(leaf);
+            }
+            mid = Math.max(1, Math.min(mid, all.length - 1));
+
+            int rightNo = allocatePage();
+            ByteBuffer right = cache.pinNew(rightNo);
+            try {
+                if (leaf) {
+                    writeNode(right, LEAF, page.getInt(N_LINK), all, mid, all.length);
+                    writeNode(page, LEAF, rightNo, all, 0, mid);
+                    return separator(all[mid - 1], all[mid], rightNo);
+                }
+                // The middle entry moves up; its child becomes the right node's link
+                writeNode(right, INNER, all[mid].child, all, mid + 1, all.length);
+                writeNode(page, INNER, page.getInt(N_LINK), all, 0, mid);
+                return new Entry(all[mid].key, all[mid].bookId, rightNo);
+            } finally {
+                cache.unpin(rightNo, true);
+            }
+        } finally {
+            cache.unpin(pageNo, true);
+        }
+    }
+
+    // Helper method to add an entry at slot pos if there is room left in the page
+    // Time Complexity: O(entries in the page)
+    private static boolean tryInsert(ByteBuffer page, int pos, Entry entry, boolean leaf) {
+        int count = count(page);
+        int dataStart = page.getShort(N_DATA) & 0xFFFF;
+        int bytes = entry.bytes(leaf);
+        if (dataStart - bytes < N_SLOTS + 2 * (count + 1)) {
+            return false;
+        }
+        int offset = dataStart - bytes;
+        writeEntry(page, offset, entry, leaf);
+        page.putShort(N_DATA, (short) offset);
+        for (int i = count; i > pos; i--) {
+            page.putShort(N_SLOTS + 2 * i, page.getShort(N_SLOTS + 2 * (i - 1)));
+        }
+        page.putShort(N_SLOTS + 2 * pos, (short) offset);
+        page.putShort(N_COUNT, (short) (count + 1));
+        return true;
+    }
+
+    // Helper method to make the entry an inner node needs between two neighbouring leaf
+    // entries: just enough of the right key to sort after the left one (so "harry potter
+    // and the..." | "hunger games" only needs "hu"), which keeps inner nodes wide
+    // Time Complexity: O(key length)
+    private static Entry separator(Entry left, Entry right, int child) {
+        if (left.key.equals(right.key)) {
+            return new Entry(right.key, right.bookId, child); // Same title - the ID tells them apart
+        }
+        int common = 0;
+        while (common < left.key.length() && left.key.charAt(common) == right.key.charAt(common)) {
+            common++;
+        }
+        // Sorts before every ID with this key, so books titled exactly like it go right
+        return new Entry(right.key.substring(0, common + 1), Integer.MIN_VALUE, child);
+    }
+
+    // Helper method to find where the next node of a rebuild ends: as many entries from
+    // 'start' as fit in REBUILD_FILL bytes (at least one)
+    // Time Complexity: O(entries taken)
+    private static int fill(Entry[] entries, int start, boolean leaf) {
+        int used = N_SLOTS;
+        int end = start;
+        while (end < entries.length) {
+            int bytes = entries[end].bytes(leaf) + 2;
+            if (end > start && used + bytes > REBUILD_FILL) {
+                break;
+            }
+            used += bytes;
+            end++;
+        }
+        return end;
+    }
+
+    // Helper method to write a whole node, entries [from, to) packed at the end of the page
+    // Time Complexity: O(page size)
+    private static void writeNode(ByteBuffer page, byte type, int link, Entry[] entries, int from, int to) {
+        int offset = PAGE_SIZE;
+        for (int i = from; i < to; i++) {
+            offset -= entries[i].bytes(type == LEAF);
+            writeEntry(page, offset, entries[i], type == LEAF);
+            page.putShort(N_SLOTS + 2 * (i - from), (short) offset);
+        }
+        page.put(N_TYPE, type);
+        page.putShort(N_COUNT, (short) (to - from));
+        page.putInt(N_LINK, link);
+        page.putShort(N_DATA, (short) offset);
+    }
+
+    // Helper method to write one entry at an offset
+    // Time Complexity: O(key length)
+    private static void writeEntry(ByteBuffer page, int offset, Entry entry, boolean leaf) {
+        int length = entry.key.length();
+        page.putShort(offset, (short) length);
+        for (int i = 0; i < length; i++) {
+            page.putChar(offset + 2 + 2 * i, entry.key.charAt(i));
+        }
+        page.putInt(offset + 2 + 2 * length, entry.bookId);
+        if (!leaf) {
+            page.putInt(offset + 6 + 2 * length, entry.child);
+        }
+    }
+
+    // Helper method to read all entries of a node
+    // Time Complexity: O(page size)
+    private static Entry[] readEntries(ByteBuffer page, boolean leaf) {
+        Entry[] entries = new Entry[count(page)];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new Entry(key(page, i), bookId(page, i), leaf ? 0 : child(page, i));
+        }
+        return entries;
+    }
+
+    // Helper method to compare entry i with (key, bookId): negative if the entry comes first
+    // Reads the chars straight from the page - nothing is copied
+    // Time Complexity: O(key length)
+    private static int compare(ByteBuffer page, int i, String key, int bookId) {
+        int offset = slot(page, i);
+        int length = page.getShort(offset);
+        int common = Math.min(length, key.length());
+        for (int j = 0; j < common; j++) {
+            char c = page.getChar(offset + 2 + 2 * j);
+            char k = key.charAt(j);
+            if (c != k) {
+                return c - k;
+            }
+        }
+        if (length != key.length()) {
+            return length - key.length();
+        }
+        return Integer.compare(page.getInt(offset + 2 + 2 * length), bookId);
+    }
+
+    // Helper method: first slot whose entry is >= (key, bookId)
+    // Time Complexity: O(log entries) compares
+    private static int lowerBound(ByteBuffer page, String key, int bookId) {
+        int low = 0;
+        int high = count(page);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(page, mid, key, bookId) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Helper method: first slot whose entry is > (key, bookId)
+    // Time Complexity: O(log entries) compares
+    private static int upperBound(ByteBuffer page, String key, int bookId) {
+        int low = 0;
+        int high = count(page);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(page, mid, key, bookId) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int count(ByteBuffer page) {
+        return page.getShort(N_COUNT);
+    }
+
+    private static int slot(ByteBuffer page, int i) {
+        return page.getShort(N_SLOTS + 2 * i) & 0xFFFF;
+    }
+
+    private static String key(ByteBuffer page, int i) {
+        int offset = slot(page, i);
+        int length = page.getShort(offset);
+        char[] chars = new char[length];
+        for (int j = 0; j < length; j++) {
+            chars[j] = page.getChar(offset + 2 + 2 * j);
+        }
+        return new String(chars);
+    }
+
+    private static int bookId(ByteBuffer page, int i) {
+        int offset = slot(page, i);
+        return page.getInt(offset + 2 + 2 * page.getShort(offset));
+    }
+
+    private static int child(ByteBuffer page, int i) {
+        int offset = slot(page, i);
+        return page.getInt(offset + 6 + 2 * page.getShort(offset));
+    }
+
+    // Helper method to hand out a new page at the end of the file
+    // Time Complexity: O(1)
+    private int allocatePage() {
+        return pageCount++;
+    }
+
+    // Helper method called before the first change after a flush: the header on disk
+    // says "not closed cleanly" until the next flush
+    // Time Complexity: O(1) - one small write the first time
+    private void markChanged() {
+        if (clean) {
+            clean = false;
+            writeHeader();
+        }
+    }
+
+    // Helper method to start a new file: the header and one empty leaf as the root
+    // Time Complexity: O(1)
+    private void initEmpty() {
+        pageCount = 1;
+        root = allocatePage();
+        ByteBuffer page = cache.pinNew(root);
+        writeNode(page, LEAF, 0, new Entry[0], 0, 0);
+        cache.unpin(root, true);
+        height = 1;
+        size = 0;
+        fingerprint = 0;
+        flush();
+    }
+
+    // Helper method to read the header when opening an existing file
+    // Time Complexity: O(1)
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(64);
+        channel.read(header, 0);
+        if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION
+                || header.getInt(H_PAGE_SIZE) != PAGE_SIZE) {
+            throw new IOException(path + " is not a title index file");
+        }
+        root = header.getInt(H_ROOT);
+        height = header.getInt(H_HEIGHT);
+        size = header.getInt(H_SIZE);
+        pageCount = header.getInt(H_PAGES);
+        clean = header.get(H_CLEAN) == 1;
+        wasClean = clean;
+        fingerprint = header.getLong(H_FINGERPRINT);
+    }
+
+    // Helper method to write the header page (straight to the file, not through the cache)
+    // Time Complexity: O(1)
+    private void writeHeader() {
+        ByteBuffer header = ByteBuffer.allocate(64);
+        header.putInt(H_MAGIC, MAGIC);
+        header.putInt(H_VERSION, VERSION);
+        header.putInt(H_PAGE_SIZE, PAGE_SIZE);
+        header.putInt(H_ROOT, root);
+        header.putInt(H_HEIGHT, height);
+        header.putInt(H_SIZE, size);
+        header.putInt(H_PAGES, pageCount);
+        header.put(H_CLEAN, (byte) (clean ? 1 : 0));
+        header.putLong(H_FINGERPRINT, fingerprint);
+        try {
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the header of " + path, e);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+// Runnable checks of the on-disk B+tree (DiskTitleIndex) against a sorted reference
+// Inserts, deletes and a rebuild are done on both, with a page cache so small that
+// pages are written out and read back all the time, and every entry is compared.
+// Run it in an empty directory (it writes one index file):
+//   java DiskTitleIndexCheck
+// Prints PASS or FAIL for every check and exits with status 1 if any failed.
+public class DiskTitleIndexCheck {
+    private static final String FILE = "titles-check.idx";
+    private static final long MEMORY_BUDGET = 8 * DiskTitleIndex.PAGE_SIZE; // Tiny on purpose
+    private static final int BOOKS = 20_000;
+    private static final String[] WORDS = {"the", "war", "peace", "Night", "SEA", "old", "man", "dune",
+            "\u00e9mile", "stra\u00dfe", "a", "of"};
+
+    // One (title, book ID) entry of the reference, ordered the way the index orders them
+    private static final class Entry {
+        final String title;
+        final int bookId;
+
+        Entry(String title, int bookId) {
+            this.title = title;
+            this.bookId = bookId;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        int c = DiskTitleIndex.keyOf(a.title).compareTo(DiskTitleIndex.keyOf(b.title));
+        return c != 0 ? c : Integer.compare(a.bookId, b.bookId);
+    };
+
+    private static PrintStream console;
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        if (new File(FILE).exists()) {
+            System.out.println(FILE + " already exists here - run this in an empty directory.");
+            System.exit(2);
+        }
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Keep the output to the results
+        try {
+            checkAgainstReference();
+        } finally {
+            System.setOut(console);
+            new File(FILE).delete();
+        }
+        console.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // Random inserts, deletes, seeks, a reopen and a rebuild, compared entry by entry
+    // Time Complexity: O(n log n) for n = BOOKS
+    private static void checkAgainstReference() throws IOException {
+        Random random = new Random(42);
+        TreeSet<Entry> reference = new TreeSet<>(ORDER);
+        DiskTitleIndex index = DiskTitleIndex.open(FILE, MEMORY_BUDGET);
+
+        for (int id = 1; id <= BOOKS; id++) {
+            String title = randomTitle(random);
+            index.insert(title, id);
+            reference.add(new Entry(title, id));
+            if (id % 7 == 0) {
+                index.insert(title, id); // Already there - must not be added twice
+            }
+        }
+        check(sameEntries(index, reference) && index.getHeight() > 2, "inserts (with page splits) match the reference");
+
+        boolean deletesAgree = true;
+        Entry[] all = reference.toArray(new Entry[0]);
+        for (int i = 0; i < all.length; i++) {
+            if (random.nextInt(3) != 0) {
+                continue;
+            }
+            Entry entry = all[i];
+            boolean removed = index.delete(entry.title, entry.bookId);
+            deletesAgree &= removed == reference.remove(entry);
+            deletesAgree &= !index.delete(entry.title, entry.bookId); // Gone now
+        }
+        deletesAgree &= !index.delete("no such title", BOOKS + 1);
+        check(deletesAgree && sameEntries(index, reference), "deletes match the reference");
+        check(seeksAgree(index, reference, random), "seek finds the first entry with a title, or the next one");
+
+        index.close();
+        index = DiskTitleIndex.open(FILE, MEMORY_BUDGET);
+        check(index.wasClosedCleanly() && sameEntries(index, reference), "a reopened index has the same entries");
+
+        int pagesBefore = index.getPageCount();
+        DynamicArray<Book> books = new DynamicArray<>();
+        for (Entry entry : reference) {
+            books.add(new Book(entry.bookId, entry.title, "Author"));
+        }
+        index.rebuild(books);
+        check(sameEntries(index, reference) && index.getPageCount() < pagesBefore,
+                "a rebuild keeps every entry in fewer pages");
+        for (int id = BOOKS + 1; id <= BOOKS + 2000; id++) {
+            String title = randomTitle(random);
+            index.insert(title, id);
+            reference.add(new Entry(title, id));
+        }
+        check(sameEntries(index, reference) && seeksAgree(index, reference, random),
+                "inserts after a rebuild match the reference");
+
+        // Opened again as if we crashed right now (not closed - that would write its own header)
+        DiskTitleIndex afterCrash = DiskTitleIndex.open(FILE, MEMORY_BUDGET);
+        check(!afterCrash.wasClosedCleanly(), "an index changed since its last flush is not clean");
+        index.close();
+    }
+
+    // Do the index's entries (walked leaf by leaf), size and fingerprint match the reference?
+    // Time Complexity: O(n)
+    private static boolean sameEntries(DiskTitleIndex index, TreeSet<Entry> reference) {
+        long fingerprint = 0;
+        DiskTitleIndex.Cursor cursor = index.first();
+        Iterator<Entry> expected = reference.iterator();
+        while (expected.hasNext()) {
+            Entry entry = expected.next();
+            if (!cursor.next() || !DiskTitleIndex.matches(cursor.key(), entry.title) || cursor.bookId() != entry.bookId) {
+                return false;
+            }
+            fingerprint += DiskTitleIndex.entryHash(entry.title, entry.bookId);
+        }
+        return !cursor.next() && index.getSize() == reference.size() && index.getFingerprint() == fingerprint;
+    }
+
+    // Does seek(title) land where the reference's ceiling of (title, lowest ID) is?
+    // Time Complexity: O(queries * log n)
+    private static boolean seeksAgree(DiskTitleIndex index, TreeSet<Entry> reference, Random random) {
+        Entry[] all = reference.toArray(new Entry[0]);
+        for (int q = 0; q < 500; q++) {
+            // Half the time a title that is there, half the time one that may not be
+            String title = q % 2 == 0 ? all[random.nextInt(all.length)].title : randomTitle(random);
+            Entry expected = reference.ceiling(new Entry(title, Integer.MIN_VALUE));
+            DiskTitleIndex.Cursor cursor = index.seek(title);
+            boolean found = cursor.next();
+            if (found != (expected != null)) {
+                return false;
+            }
+            if (found && (cursor.bookId() != expected.bookId || !DiskTitleIndex.matches(cursor.key(), expected.title))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A title of a few words; some repeat, some differ only in case, a few are longer
+    // than the index keeps
+    // Time Complexity: O(title length)
+    private static String randomTitle(Random random) {
+        StringBuilder title = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+        int words = 1 + random.nextInt(random.nextInt(50) == 0 ? 60 : 4);
+        for (int i = 0; i < words; i++) {
+            title.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (random.nextBoolean()) {
+            title.append(' ').append(random.nextInt(5000));
+        }
+        return title.toString();
+    }
+
+    // Print one result
+    // Time Complexity: O(1)
+    private static void check(boolean ok, String what) {
+        console.println((ok ? "PASS " : "FAIL ") + what);
+        if (!ok) {
+            failures++;
+        }
+    }
+}
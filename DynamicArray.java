@@ -1,6 +1,13 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 // This is our custom array that can grow automatically
 // Unlike normal arrays, this one gets bigger when we add too many items
-public class DynamicArray<T> {
+public class DynamicArray<T> implements Iterable<T> {
     private Object[] array;
     private int size; // How many items we currently have
     private int capacity; // How many items we can hold
@@ -14,6 +21,14 @@ public class DynamicArray<T> {
         this.size = 0;
     }
 
+    // Start with room for a known number of items (avoids resizing)
+    // Time Complexity: O(capacity)
+    public DynamicArray(int initialCapacity) {
+        this.capacity = Math.max(1, initialCapacity);
+        this.array = new Object[capacity];
+        this.size = 0;
+    }
+
     // Add a new item to the array
     // If array is full, we make it bigger first
     // Time Complexity: O(1) amortized, O(n) worst case when resizing
@@ -65,12 +80,33 @@ public class DynamicArray<T> {
         return size;
     }
 
+    // How many items can we hold before growing?
+    // Time Complexity: O(1)
+    public int capacity() {
+        return capacity;
+    }
+
     // Is the array empty?
     // Time Complexity: O(1)
     public boolean isEmpty() {
         return size == 0;
     }
 
+    // Make sure the array can hold at least minCapacity items without growing again
+    // (use before adding many items at once)
+    // Time Complexity: O(n) if it has to grow, O(1) otherwise
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity <= capacity) {
+            return;
+        }
+        capacity = minCapacity;
+        Object[] newArray = new Object[capacity];
+        for (int i = 0; i < size; i++) {
+            newArray[i] = array[i];
+        }
+        array = newArray;
+    }
+
     // Make the array bigger (double the size)
     // Time Complexity: O(n) - need to copy all elements
     private void resize() {
@@ -117,5 +153,99 @@ public class DynamicArray<T> {
         size = 0;
         capacity = INITIAL_CAPACITY;
     }
-}
 
+    // Go through the items from first to last (for-each loops use this)
+    // Time Complexity: O(1) to create, O(n) to walk
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return (T) array[index++];
+            }
+        };
+    }
+
+    // Spliterator that splits by index range, so parallel streams get even halves
+    // Time Complexity: O(1) to create
+    @Override
+    public Spliterator<T> spliterator() {
+        return new RangeSpliterator(0, size);
+    }
+
+    // Stream over the items (lazy - nothing is copied)
+    // Time Complexity: O(1) to create
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    // Parallel stream over the items
+    // Time Complexity: O(1) to create
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    // Covers the positions from..to-1 of the array
+    private class RangeSpliterator implements Spliterator<T> {
+        private int from; // Next position to hand out
+        private final int to; // One past the last position
+
+        RangeSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept((T) array[from++]);
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+            Object[] items = array; // Read the field once
+            for (int i = from; i < to; i++) {
+                action.accept((T) items[i]);
+            }
+            from = to;
+        }
+
+        // Give away the first half of what is left
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (from + to) >>> 1;
+            if (middle <= from) {
+                return null; // Too small to split
+            }
+            Spliterator<T> prefix = new RangeSpliterator(from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+// BK-tree over book titles for typo-tolerant search ("Harry Poter" -> "Harry Potter")
+// Every child is stored under its edit distance from the parent, so when searching
+// with distance limit k we only need to visit children between d-k and d+k
+// (triangle inequality) instead of comparing against every title
+// Nodes keep book IDs, not books, so compact catalogs (which have no Book objects)
+// use the same tree; matches are looked up by ID when a search returns them.
+// A deleted title's node stays in the tree (BK-trees can't easily unlink nodes), so
+// once more than half the nodes are empty the tree is rebuilt from the live ones.
+public class FuzzyTitleIndex {
+    private static final int MIN_NODES_TO_REBUILD = 64; // Small trees aren't worth it
+
+    // Each node holds one distinct title (lowercase) and the IDs of the books with it
+    private class Node {
+        String key;
+        int[] ids; // More than one when titles are duplicated
+        int count; // IDs in use (0 = no book has this title any more)
+        Node[] children; // children[d] = subtree at edit distance d from this node
+
+        Node(String key, int id) {
+            this.key = key;
+            this.ids = new int[] {id};
+            this.count = 1;
+            this.children = new Node[key.length() + 1];
+        }
+
+        void add(int id) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+        }
+    }
+
+    // A candidate found during a search
+    private static class Match {
+        Book book;
+        int distance;
+
+        Match(Book book, int distance) {
+            this.book = book;
+            this.distance = distance;
+        }
+    }
+
+    private final IntFunction<Book> lookup; // Book ID -> book (null if it is gone)
+    private Node root;
+    private int size; // Number of books (not nodes)
+    private int nodes; // Nodes in the tree, empty ones included
+    private int emptyNodes; // Nodes whose books were all deleted
+
+    // Start with an empty index that finds books through lookup
+    // Time Complexity: O(1)
+    public FuzzyTitleIndex(IntFunction<Book> lookup) {
+        this.lookup = lookup;
+        this.root = null;
+        this.size = 0;
+        this.nodes = 0;
+        this.emptyNodes = 0;
+    }
+
+    // Add a book to the index
+    // Time Complexity: O(depth * L^2) where L is the title length
+    public void insert(Book book) {
+        insert(book.getTitle().toLowerCase(), book.getId());
+    }
+
+    // Add a book ID under a lowercase title
+    // Time Complexity: O(depth * L^2)
+    private void insert(String key, int id) {
+        size++;
+
+        if (root == null) {
+            root = new Node(key, id);
+            nodes++;
+            return;
+        }
+
+        Node node = root;
+        while (true) {
+            int distance = editDistance(key, node.key);
+            if (distance == 0) {
+                // Same title - just add the book to this node
+                if (node.count == 0) {
+                    emptyNodes--;
+                }
+                node.add(id);
+                return;
+            }
+            if (distance >= node.children.length) {
+                node.children = Arrays.copyOf(node.children, distance + 1);
+            }
+            if (node.children[distance] == null) {
+                node.children[distance] = new Node(key, id);
+                nodes++;
+                return;
+            }
+            node = node.children[distance];
+        }
+    }
+
+    // Remove a book from the index
+    // Its node stays in the tree until empty nodes make up more than half of it
+    // Time Complexity: O(depth * L^2), O(n * depth * L^2) when it triggers a rebuild
+    // (at most once per n/2 deletes, so O(depth * L^2) amortized)
+    public boolean delete(Book book) {
+        String key = book.getTitle().toLowerCase();
+        Node node = root;
+        while (node != null) {
+            int distance = editDistance(key, node.key);
+            if (distance == 0) {
+                for (int i = 0; i < node.count; i++) {
+                    if (node.ids[i] == book.getId()) {
+                        node.ids[i] = node.ids[--node.count];
+                        size--;
+                        if (node.count == 0) {
+                            emptyNodes++;
+                            rebuildIfMostlyEmpty();
+                        }
+                        return true;
+                    }
+                }
+                return false;
+            }
+            node = distance < node.children.length ? node.children[distance] : null;
+        }
+        return false;
+    }
+
+    // Build the tree again from its live nodes once empty ones are the majority,
+    // so searches stop walking (and comparing against) titles nobody has any more
+    // Time Complexity: O(n * depth * L^2) when it rebuilds, O(1) otherwise
+    private void rebuildIfMostlyEmpty() {
+        if (nodes < MIN_NODES_TO_REBUILD || emptyNodes * 2 <= nodes) {
+            return;
+        }
+        DynamicArray<Node> live = new DynamicArray<>(nodes - emptyNodes);
+        Stack<Node> toVisit = new Stack<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            if (node.count > 0) {
+                live.add(node);
+            }
+            for (Node child : node.children) {
+                if (child != null) {
+                    toVisit.push(child);
+                }
+            }
+        }
+
+        clear();
+        for (int i = 0; i < live.size(); i++) {
+            Node node = live.get(i);
+            for (int j = 0; j < node.count; j++) {
+                insert(node.key, node.ids[j]);
+            }
+        }
+    }
+
+    // Find up to limit books whose title is within maxDistance edits of the query
+    // Closest titles come first, ties are broken alphabetically
+    // Time Complexity: O(visited nodes * L^2) - only a small part of the tree for small maxDistance
+    public DynamicArray<Book> search(String query, int maxDistance, int limit) {
+        DynamicArray<Book> result = new DynamicArray<>();
+        if (root == null || limit <= 0 || maxDistance < 0) {
+            return result;
+        }
+
+        String key = query.toLowerCase();
+        Match[] best = new Match[limit]; // Sorted best matches so far
+        int found = 0;
+
+        // Walk the tree with our own stack instead of recursion
+        Stack<Node> toVisit = new Stack<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            int distance = editDistance(key, node.key);
+
+            // Once we have enough results, only closer titles are interesting
+            int radius = maxDistance;
+            if (found == limit) {
+                radius = Math.min(radius, best[limit - 1].distance);
+            }
+
+            if (distance <= radius) {
+                for (int i = 0; i < node.count; i++) {
+                    Book book = lookup.apply(node.ids[i]);
+                    if (book != null) {
+                        found = addMatch(best, found, new Match(book, distance));
+                    }
+                }
+                if (found == limit) {
+                    radius = Math.min(radius, best[limit - 1].distance);
+                }
+            }
+
+            int low = Math.max(1, distance - radius);
+            int high = Math.min(node.children.length - 1, distance + radius);
+            for (int d = low; d <= high; d++) {
+                if (node.children[d] != null) {
+                    toVisit.push(node.children[d]);
+                }
+            }
+        }
+
+        for (int i = 0; i < found; i++) {
+            result.add(best[i].book);
+        }
+        return result;
+    }
+
+    // Put a match into the sorted best list, dropping the worst one if full
+    // Time Complexity: O(limit)
+    private int addMatch(Match[] best, int found, Match match) {
+        if (found == best.length) {
+            if (compare(match, best[found - 1]) >= 0) {
+                return found; // Not better than anything we already have
+            }
+            found--; // Drop the worst
+        }
+
+        int i = found;
+        while (i > 0 && compare(match, best[i - 1]) < 0) {
+            best[i] = best[i - 1];
+            i--;
+        }
+        best[i] = match;
+        return found + 1;
+    }
+
+    // Order matches by distance, then title, then ID
+    // Time Complexity: O(L)
+    private int compare(Match a, Match b) {
+        if (a.distance != b.distance) {
+            return Integer.compare(a.distance, b.distance);
+        }
+        int byTitle = a.book.getTitle().compareToIgnoreCase(b.book.getTitle());
+        if (byTitle != 0) {
+            return byTitle;
+        }
+        return Integer.compare(a.book.getId(), b.book.getId());
+    }
+
+    // Levenshtein distance: fewest inserts, deletes and replacements to turn a into b
+    // Time Complexity: O(|a| * |b|), O(|b|) memory
+    public static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    // How many books are in the index?
+    // Time Complexity: O(1)
+    public int size() {
+        return size;
+    }
+
+    // How many nodes the tree has, empty ones included (for statistics)
+    // Time Complexity: O(1)
+    public int nodeCount() {
+        return nodes;
+    }
+
+    // Remove everything
+    // Time Complexity: O(1)
+    public void clear() {
+        root = null;
+        size = 0;
+        nodes = 0;
+        emptyNodes = 0;
+    }
+}
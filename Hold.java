@@ -0,0 +1,64 @@
+// A returned book kept on the hold shelf for the next person waiting for it
+// Nobody else can borrow it until the hold is picked up or runs out
+public class Hold {
+    private int bookId; // Which book is on the shelf
+    private String userName; // Who it is kept for
+    private long placedAt; // Milliseconds since 1970 (System.currentTimeMillis)
+    private long expiresAt;
+    TimingWheel.Timeout<Hold> timeout; // Expiry timer on the library's timing wheel
+
+    // Create a new hold
+    // Time Complexity: O(1)
+    public Hold(int bookId, String userName, long placedAt, long expiresAt) {
+        this.bookId = bookId;
+        this.userName = userName;
+        this.placedAt = placedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    // Which book is held
+    // Time Complexity: O(1)
+    public int getBookId() {
+        return bookId;
+    }
+
+    // Who the book is held for
+    // Time Complexity: O(1)
+    public String getUserName() {
+        return userName;
+    }
+
+    // When the hold started
+    // Time Complexity: O(1)
+    public long getPlacedAt() {
+        return placedAt;
+    }
+
+    // When the hold runs out
+    // Time Complexity: O(1)
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    // Format the hold for saving ("bookId,placedAt,expiresAt,userName" - the name
+    // goes last so a comma in it doesn't break the line)
+    // Time Complexity: O(1)
+    public String toFileString() {
+        return bookId + "," + placedAt + "," + expiresAt + "," + userName;
+    }
+
+    // Create a hold from a line read from the file
+    // Time Complexity: O(length)
+    public static Hold fromFileString(String line) {
+        String[] parts = line.split(",", 4);
+        return new Hold(Integer.parseInt(parts[0].trim()), parts[3],
+                Long.parseLong(parts[1].trim()), Long.parseLong(parts[2].trim()));
+    }
+
+    // Show the hold in a readable way
+    // Time Complexity: O(1)
+    @Override
+    public String toString() {
+        return "Book ID: " + bookId + " | Held for: " + userName + " | Until: " + Loan.formatTime(expiresAt);
+    }
+}
@@ -0,0 +1,145 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// How many copies of one title the library owns, and how many are on the shelf
+// A title with several copies is one Book (one catalog slot, one index entry) plus
+// one of these, instead of one Book per copy. Borrowing takes a copy off the shelf
+// and returning puts one back - both O(1), no search for "a copy that is free".
+// Both counts live in one long (total in the high half, on the shelf in the low half)
+// and change together with compare-and-set, so a reader on another thread (metrics,
+// replication) never sees a half-done change such as more copies on the shelf than owned.
+// Copies kept on the hold shelf or out on loan are simply not on the shelf.
+public class Holdings {
+    private final AtomicLong counts; // total << 32 | on the shelf
+
+    // Create the record for a title: 'total' copies owned, 'available' of them on the shelf
+    // Time Complexity: O(1)
+    public Holdings(int total, int available) {
+        if (total < 1 || available < 0 || available > total) {
+            throw new IllegalArgumentException("Bad copy counts: " + available + " of " + total);
+        }
+        this.counts = new AtomicLong(pack(total, available));
+    }
+
+    // Take one copy off the shelf; returns how many are left there, or -1 if there was none
+    // Time Complexity: O(1) (retries only if another thread changed the counts meanwhile)
+    public int take() {
+        while (true) {
+            long current = counts.get();
+            int available = available(current);
+            if (available == 0) {
+                return -1;
+            }
+            if (counts.compareAndSet(current, pack(total(current), available - 1))) {
+                return available - 1;
+            }
+        }
+    }
+
+    // Put one copy back on the shelf; returns how many are there now, or -1 if every
+    // copy was already on the shelf (nothing can be returned)
+    // Time Complexity: O(1)
+    public int giveBack() {
+        while (true) {
+            long current = counts.get();
+            int total = total(current);
+            int available = available(current);
+            if (available == total) {
+                return -1;
+            }
+            if (counts.compareAndSet(current, pack(total, available + 1))) {
+                return available + 1;
+            }
+        }
+    }
+
+    // The library bought more copies; they go straight on the shelf
+    // Time Complexity: O(1)
+    public void addCopies(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Number of copies to add must be positive: " + count);
+        }
+        while (true) {
+            long current = counts.get();
+            long total = (long) total(current) + count;
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many copies: " + total);
+            }
+            if (counts.compareAndSet(current, pack((int) total, available(current) + count))) {
+                return;
+            }
+        }
+    }
+
+    // Withdraw copies from the shelf (lost, damaged, sold). Only copies on the shelf
+    // can go, and at least one copy is always kept - removing the title is removeBook.
+    // Returns false (and changes nothing) if that isn't possible
+    // Time Complexity: O(1)
+    public boolean removeCopies(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Number of copies to remove must be positive: " + count);
+        }
+        while (true) {
+            long current = counts.get();
+            int total = total(current);
+            int available = available(current);
+            if (count > available || count >= total) {
+                return false;
+            }
+            if (counts.compareAndSet(current, pack(total - count, available - count))) {
+                return true;
+            }
+        }
+    }
+
+    // How many copies the library owns
+    // Time Complexity: O(1)
+    public int getTotal() {
+        return total(counts.get());
+    }
+
+    // How many copies are on the shelf right now
+    // Time Complexity: O(1)
+    public int getAvailable() {
+        return available(counts.get());
+    }
+
+    // Format the counts for saving ("total,available")
+    // Time Complexity: O(1)
+    public String toFileString() {
+        long current = counts.get();
+        return total(current) + "," + available(current);
+    }
+
+    // Read the copy counts that follow the book fields on a books.txt line
+    // ("id,title,author,available,total,onShelf"); null for a single-copy book
+    // Time Complexity: O(length)
+    public static Holdings fromFileString(String line) {
+        String[] parts = line.split(",");
+        if (parts.length < 6) {
+            return null;
+        }
+        return new Holdings(Integer.parseInt(parts[4].trim()), Integer.parseInt(parts[5].trim()));
+    }
+
+    // Show the counts in a readable way
+    // Time Complexity: O(1)
+    @Override
+    public String toString() {
+        long current = counts.get();
+        return available(current) + " of " + total(current) + " copies on the shelf";
+    }
+
+    // Helper methods to put the two counts into one long and back
+    // Time Complexity: O(1)
+    private static long pack(int total, int available) {
+        return ((long) total << 32) | (available & 0xFFFFFFFFL);
+    }
+
+    private static int total(long counts) {
+        return (int) (counts >>> 32);
+    }
+
+    private static int available(long counts) {
+        return (int) counts;
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histogram with log2-sized buckets
+// Bucket i counts latencies between 2^i and 2^(i+1) nanoseconds
+// Recording never locks, so it is cheap enough to call on every operation
+public class LatencyHistogram {
+    private static final int BUCKETS = 64; // One bucket per bit of a long
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder totalNanos;
+    private final AtomicLong maxNanos;
+
+    // Create an empty histogram
+    // Time Complexity: O(1)
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new AtomicLong();
+    }
+
+    // Record one latency sample
+    // Time Complexity: O(1)
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucketFor(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+
+        // Only update the max when this sample is bigger
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    // Which bucket does this latency belong to?
+    // Time Complexity: O(1)
+    private static int bucketFor(long nanos) {
+        return 63 - Long.numberOfLeadingZeros(nanos | 1);
+    }
+
+    // How many samples have been recorded?
+    // Time Complexity: O(1) amortized
+    public long getCount() {
+        return count.sum();
+    }
+
+    // Average latency in nanoseconds
+    // Time Complexity: O(1) amortized
+    public double getMeanNanos() {
+        long samples = count.sum();
+        return samples == 0 ? 0.0 : (double) totalNanos.sum() / samples;
+    }
+
+    // Slowest latency seen so far in nanoseconds
+    // Time Complexity: O(1)
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    // Estimate a percentile (0-100) in nanoseconds
+    // The answer is the upper edge of the bucket, so it is off by at most 2x
+    // Time Complexity: O(1) - always 64 buckets
+    public long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long samples = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            samples += snapshot[i];
+        }
+        if (samples == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(samples * (percentile / 100.0));
+        if (target < 1) {
+            target = 1;
+        }
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                long upperEdge = i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                return Math.min(upperEdge, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+}
@@ -1,292 +1,2350 @@
 import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 // This is the main library system
 // It uses 4 different data structures for different tasks
 public class Library {
     private DynamicArray<Book> catalog; // All books (keeps order we added them)
-    private BST bst; // All books (organized by title for fast search)
+    private final CompactCatalog compact; // Same as catalog when books are kept in rows (null otherwise)
+    private final CatalogLayout layout;
+    private final PersistentTitleTree titles; // All books by title (readers never see a half-done change)
+    private volatile DiskTitleIndex diskTitles; // If set, used instead of 'titles' (B+tree file, bounded memory)
     private Queue<BorrowRequest> borrowQueue; // People waiting to borrow books
+    private final HashMap<Integer, Queue<BorrowRequest>> waitlists; // Book ID -> its requests still waiting, oldest first
+    private int servedRequests; // Requests still in borrowQueue that a waitlist already served (skipped)
     private Stack<Action> actionStack; // Remember actions so we can undo them
     private int nextBookId;
+    private final LibraryMetrics metrics; // Counters and timings for every operation
+    private final TitleCache titleCache; // Remembers recent title searches
+    private FuzzyTitleIndex fuzzyIndex; // Finds titles even when they are misspelled
+    private final TitleAutocomplete autocomplete; // Title prefix -> most borrowed books
+    private final HashMap<Integer, Integer> pendingBorrows; // Borrows counted while the trie is still being built
+    private final HashMap<Integer, Book> booksById; // Book ID -> book, for O(1) lookups
+    private final AvailabilityIndex availability; // Bit per book ID, set when available
+    private final HashMap<String, DynamicArray<Book>> booksByAuthor; // Lowercase author -> books, in order added
+    private final QueryEngine queryEngine; // Runs BookQuery searches against the indexes above
+    private MappedCatalogFile storage; // If set, books live in this mapped file instead of books.txt
+    private final DynamicArray<MutationListener> listeners; // Told about every change
+    private final LoanHeap loans; // Books out on loan, earliest due date first
+    private long loanPeriodMillis; // How long a loan (or a renewal) lasts
+    private ScheduledExecutorService reminderScheduler;
+    private final HashMap<Integer, DynamicArray<Hold>> holds; // Book ID -> its copies on the hold shelf
+    private volatile int holdCount; // Copies on the hold shelf, all books - read by the metrics threads
+    private final HashMap<Integer, Holdings> holdings; // Book ID -> copy counts, only for titles with 2+ copies
+    private final AtomicLong extraCopies; // Copies beyond the first, all books - read by the metrics threads
+    private volatile int multiCopyTitles; // holdings.size(), for the metrics threads
+    private final TimingWheel<Hold> holdExpiry; // Runs out holds that weren't picked up
+    private long holdWindowMillis; // How long a returned book is kept for the next person
+    private BorrowAnalytics analytics; // Top books/authors/users over the last week, constant memory
+    private volatile boolean titleIndexesReady = true; // False while a staged startup is still building them
+    private CountDownLatch titleIndexesBuilt = new CountDownLatch(0); // Opens when they are ready
+    private UnbuiltIndexPolicy unbuiltIndexPolicy = UnbuiltIndexPolicy.WAIT;
+    private volatile String startupReport; // How long each startup stage took (null if not staged)
+
+    // How the catalog keeps its books
+    public enum CatalogLayout {
+        OBJECTS, // One Book object per book, plus the ID map, title tree, author and fuzzy indexes
+        COLUMNAR, // Primitive columns (ColumnarCatalog) that answer ID, title and author lookups
+                  // themselves - no per-book objects at all; the fuzzy index keeps IDs, autocomplete scans
+        OFF_HEAP // Same lookups, with the books in direct buffers outside the heap (OffHeapCatalog)
+    }
+
+    // What title and author searches do while a staged startup is still building the title indexes
+    public enum UnbuiltIndexPolicy {
+        WAIT, // Block until the indexes are ready
+        SCAN // Answer right away by scanning the catalog (O(n))
+    }
 
     private static final String BOOKS_FILE = "books.txt";
+    private static final String REMINDERS_FILE = "reminders.log";
+    private static final String COPIES_SUFFIX = ".copies"; // Where older mapped catalogs kept copy counts
+    private static final String LOANS_SUFFIX = ".loans"; // Loans and due dates, next to the catalog file
+    private static final String HOLDS_SUFFIX = ".holds"; // Copies on the hold shelf, next to the catalog file
+    private static final int DEFAULT_TITLE_CACHE_SIZE = 256;
+    private static final int AUTOCOMPLETE_TOP_K = 10; // Suggestions remembered per prefix
+    private static final int DEFAULT_LOAN_DAYS = 14;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int DEFAULT_HOLD_HOURS = 48;
+    private static final long HOLD_TICK_MILLIS = 1000; // Holds expire to the second
+    private static final int HOLD_WHEEL_SLOTS = 4096; // One turn of the wheel is about 68 minutes
 
     // Set up a new library
     // Time Complexity: O(n) where n is number of books loaded from file
     public Library() {
-        this.catalog = new DynamicArray<>();
-        this.bst = new BST();
-        this.borrowQueue = new Queue<>();
+        this(DEFAULT_TITLE_CACHE_SIZE);
+    }
+
+    // Set up a new library with a title cache of the given size (0 turns it off)
+    // Time Complexity: O(n) where n is number of books loaded from file
+    public Library(int titleCacheSize) {
+        this(titleCacheSize, true);
+    }
+
+    // Set up a new library, optionally without reading books.txt
+    // (shards of a ShardedLibrary start empty and get their books from it)
+    // Time Complexity: O(n) where n is number of books loaded from file
+    public Library(int titleCacheSize, boolean loadFromFile) {
+        this(titleCacheSize, loadFromFile, CatalogLayout.OBJECTS);
+    }
+
+    // Set up a new library whose catalog keeps its books in the given layout
+    // Time Complexity: O(n) where n is number of books loaded from file
+    public Library(int titleCacheSize, boolean loadFromFile, CatalogLayout layout) {
+        this.titleCache = new TitleCache(titleCacheSize);
+        this.layout = layout;
+        this.compact = layout == CatalogLayout.COLUMNAR ? new ColumnarCatalog()
+                : layout == CatalogLayout.OFF_HEAP ? new OffHeapCatalog() : null;
+        this.catalog = compact != null ? compact : new DynamicArray<>();
+        this.titles = new PersistentTitleTree();
+        this.fuzzyIndex = new FuzzyTitleIndex(this::findBookById);
+        this.autocomplete = new TitleAutocomplete(AUTOCOMPLETE_TOP_K);
+        this.pendingBorrows = new HashMap<>();
+        this.booksById = new HashMap<>();
+        this.availability = new AvailabilityIndex();
+        this.booksByAuthor = new HashMap<>();
+        this.listeners = new DynamicArray<>();
+        this.loans = new LoanHeap();
+        this.loanPeriodMillis = DEFAULT_LOAN_DAYS * DAY_MILLIS;
+        this.holds = new HashMap<>();
+        this.holdings = new HashMap<>();
+        this.extraCopies = new AtomicLong();
+        this.holdExpiry = new TimingWheel<>(HOLD_TICK_MILLIS, HOLD_WHEEL_SLOTS, System.currentTimeMillis());
+        this.holdWindowMillis = DEFAULT_HOLD_HOURS * 60L * 60 * 1000;
+        this.analytics = new BorrowAnalytics(System.currentTimeMillis());
+        this.borrowQueue = new Queue<>(16, true); // A burst of requests doesn't keep its memory
+        this.waitlists = new HashMap<>();
         this.actionStack = new Stack<>();
         this.nextBookId = 1;
-        loadBooksFromFile(); // Load books from file if it exists
+        this.metrics = new LibraryMetrics(this);
+        this.queryEngine = new QueryEngine(catalog, this::findBookById, titles, booksByAuthor, availability);
+        if (loadFromFile) {
+            loadBooksFromFile(); // Load books from file if it exists
+        }
+        metrics.refreshGauges();
+    }
+
+    // Start a library from books.txt in two stages, so the desk can open right away:
+    //   1. books go into the catalog, ID map and availability bitmap only - search by ID,
+    //      borrow and return work as soon as this returns
+    //   2. a background thread builds the title tree, author index and fuzzy index
+    // Until stage 2 is done, title and author searches wait or scan the catalog
+    // (see UnbuiltIndexPolicy); fuzzy search, alphabetical lists and adding or
+    // removing books always wait.
+    // Time Complexity: O(n) before returning + O(n log n) in the background
+    public static Library startStaged(UnbuiltIndexPolicy policy) {
+        return startStaged(policy, CatalogLayout.OBJECTS);
+    }
+
+    // Same as startStaged(policy), with the catalog in the given layout (for COLUMNAR
+    // and OFF_HEAP, stage 2 sorts the title order and builds only the fuzzy index)
+    // Time Complexity: O(n) before returning + O(n log n) in the background
+    public static Library startStaged(UnbuiltIndexPolicy policy, CatalogLayout layout) {
+        Library library = new Library(DEFAULT_TITLE_CACHE_SIZE, false, layout);
+        library.unbuiltIndexPolicy = policy;
+        library.loadBooksStaged();
+        library.metrics.refreshGauges();
+        return library;
+    }
+
+    // Start a library whose books live in a memory-mapped catalog file, in the same
+    // two stages: the records go into the catalog, ID map and availability bitmap
+    // (no text is decoded), and the title indexes are built in the background.
+    // Borrow/return then only change a few bytes in the file instead of rewriting books.txt.
+    // If the mapped file is still empty, books.txt is copied into it once.
+    // Time Complexity: O(n) before returning + O(n log n) in the background
+    public static Library startStaged(MappedCatalogFile storage, UnbuiltIndexPolicy policy) {
+        Library library = new Library(DEFAULT_TITLE_CACHE_SIZE, false);
+        library.storage = storage;
+        library.unbuiltIndexPolicy = policy;
+        if (storage.recordCount() == 0) {
+            library.loadBooksStaged(); // First run - move books.txt into the mapped file
+        } else {
+            library.openMappedStaged();
+        }
+        library.metrics.refreshGauges();
+        return library;
     }
 
     // Add a new book to the library
-    // Time Complexity: O(log n) for BST insertion + O(1) amortized for DynamicArray
+    // Time Complexity: O(log n) for the title tree + O(1) amortized for DynamicArray
     public void addBook(String title, String author) {
-        Book book = new Book(nextBookId++, title, author);
-        catalog.add(book); // Add to array
-        bst.insert(book); // Also add to tree
-        System.out.println("Book added successfully: " + book);
+        long start = System.nanoTime();
+        try {
+            Book book = indexBook(new Book(nextBookId++, title, author));
+            fireMutation(MutationListener.Type.ADD, book, null);
+            System.out.println("Book added successfully: " + book);
+        } finally {
+            metrics.record(LibraryMetrics.Operation.ADD_BOOK, start);
+        }
     }
 
-    // Remove a book from the library
-    // Time Complexity: O(n) for searching + removing from array + O(log n) for BST
-    // deletion
-    public void removeBook(int bookId) {
-        Book bookToRemove = null;
-        int indexToRemove = -1;
+    // Add a book that already has an ID (e.g. handed out by a ShardedLibrary)
+    // Time Complexity: O(log n) for the title tree + O(1) amortized for DynamicArray
+    public void addBook(Book book) {
+        long start = System.nanoTime();
+        try {
+            book = indexBook(book);
+            // Make sure we don't reuse book IDs
+            if (book.getId() >= nextBookId) {
+                nextBookId = book.getId() + 1;
+            }
+            fireMutation(MutationListener.Type.ADD, book, null);
+            System.out.println("Book added successfully: " + book);
+        } finally {
+            metrics.record(LibraryMetrics.Operation.ADD_BOOK, start);
+        }
+    }
 
-        // Look for the book
-        for (int i = 0; i < catalog.size(); i++) {
-            if (catalog.get(i).getId() == bookId) {
-                bookToRemove = catalog.get(i);
-                indexToRemove = i;
-                break;
+    // Add many books at once (e.g. an acquisition feed)
+    // The books get new IDs in one block (the IDs they come with are ignored).
+    // The catalog is grown once, the title tree is rebuilt once for the whole batch,
+    // and only a summary line is printed.
+    // Time Complexity: O(m log m + n) for m new books and n existing ones
+    public int addBooks(Iterable<Book> books) {
+        long start = System.nanoTime();
+        try {
+            awaitTitleIndexes();
+            DynamicArray<Book> batch = new DynamicArray<>();
+            int firstId = nextBookId;
+            for (Book book : books) {
+                Book copy = new Book(nextBookId++, book.getTitle(), book.getAuthor());
+                copy.setAvailable(book.isAvailable());
+                batch.add(copy);
             }
+            if (batch.isEmpty()) {
+                System.out.println("No books to import.");
+                return 0;
+            }
+
+            catalog.ensureCapacity(catalog.size() + batch.size());
+            if (compact != null) {
+                compact.suspendTitleOrder(); // Sorted once below instead of m inserts
+            }
+            DynamicArray<Book> stored = new DynamicArray<>(batch.size()); // What the catalog keeps
+            for (int i = 0; i < batch.size(); i++) {
+                Book book = batch.get(i);
+                if (storage != null) {
+                    book = storage.append(book);
+                }
+                catalog.add(book);
+                book = catalog.get(catalog.size() - 1); // A compact catalog keeps its own copy
+                availability.set(book.getId(), book.isAvailable());
+                if (compact == null) {
+                    booksById.put(book.getId(), book);
+                    addToAuthorIndex(book);
+                    autocomplete.insert(book);
+                }
+                fuzzyIndex.insert(book); // Keeps the ID, so compact catalogs have one too
+                stored.add(book);
+            }
+            if (compact != null) {
+                compact.rebuildTitleOrder(); // O((n + m) log(n + m)) - the whole title order is sorted again
+            } else if (diskTitles != null) {
+                insertIntoDiskIndex(stored);
+            } else {
+                titles.insertAll(stored);
+            }
+            titleCache.clear(); // Cheaper than one invalidate per book
+
+            for (int i = 0; i < stored.size(); i++) {
+                fireMutation(MutationListener.Type.ADD, stored.get(i), null);
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Imported " + batch.size() + " books (IDs " + firstId + " to " + (nextBookId - 1)
+                    + ") in " + millis + " ms.");
+            return batch.size();
+        } finally {
+            metrics.record(LibraryMetrics.Operation.BULK_IMPORT, start);
         }
+    }
 
-        if (bookToRemove == null) {
-            System.out.println("Book with ID " + bookId + " not found.");
-            return;
+    // Add many books at once from a stream
+    // Time Complexity: O(m log m + n)
+    public int addBooks(Stream<Book> books) {
+        return addBooks((Iterable<Book>) books::iterator);
+    }
+
+    // Import books from a CSV file with one "Title,Author" line per book
+    // (an optional third column is true/false for availability; a first line
+    // starting with "title" is taken as a header; fields may be "quoted")
+    // Returns how many books were added
+    // Time Complexity: O(m log m + n)
+    public int importBooksFromCsv(String path) {
+        DynamicArray<Book> books = new DynamicArray<>();
+        int skipped = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                boolean header = first && line.trim().toLowerCase().startsWith("title");
+                first = false;
+                if (header || line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = parseCsvLine(line);
+                if (fields.length < 2 || fields[0].isEmpty()) {
+                    skipped++;
+                    continue;
+                }
+                Book book = new Book(0, fields[0], fields[1]);
+                if (fields.length > 2) {
+                    book.setAvailable(!fields[2].trim().equalsIgnoreCase("false"));
+                }
+                books.add(book);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading " + path + ": " + e.getMessage());
+            return 0;
         }
 
-        // Remove from both places
-        catalog.remove(indexToRemove);
-        bst.delete(bookToRemove.getTitle());
-        System.out.println("Book removed successfully: " + bookToRemove);
+        if (skipped > 0) {
+            System.out.println("Skipped " + skipped + " line(s) that could not be read.");
+        }
+        return addBooks(books);
     }
 
-    // Search for a book by its ID number (looks through the array)
-    // Time Complexity: O(n) - linear search through array
-    public void searchBookById(int bookId) {
-        for (int i = 0; i < catalog.size(); i++) {
-            Book book = catalog.get(i);
-            if (book.getId() == bookId) {
-                System.out.println("Book found: " + book);
+    // Helper method to split one CSV line into fields ("" inside quotes is a quote)
+    // Commas inside the title or author are not allowed in books.txt, so they become spaces
+    // Time Complexity: O(length)
+    private static String[] parseCsvLine(String line) {
+        DynamicArray<String> fields = new DynamicArray<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c == ',' ? ' ' : c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+
+        String[] result = new String[fields.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = fields.get(i);
+        }
+        return result;
+    }
+
+    // Remove a book from the library
+    // Time Complexity: O(n) for searching + removing from array + O(log n) for the title tree
+    public void removeBook(int bookId) {
+        long start = System.nanoTime();
+        try {
+            Book bookToRemove = unindexBook(bookId);
+            if (bookToRemove == null) {
+                System.out.println("Book with ID " + bookId + " not found.");
                 return;
             }
+            fireMutation(MutationListener.Type.REMOVE, bookToRemove, null);
+            System.out.println("Book removed successfully: " + bookToRemove);
+        } finally {
+            metrics.record(LibraryMetrics.Operation.REMOVE_BOOK, start);
+        }
+    }
+
+    // Search for a book by its ID number (uses the ID map)
+    // Time Complexity: O(1) average
+    public void searchBookById(int bookId) {
+        long start = System.nanoTime();
+        try {
+            Book book = findBookById(bookId);
+            if (book != null) {
+                System.out.println("Book found: " + describe(book));
+            } else {
+                System.out.println("Book with ID " + bookId + " not found.");
+            }
+        } finally {
+            metrics.record(LibraryMetrics.Operation.SEARCH_BY_ID, start);
         }
-        System.out.println("Book with ID " + bookId + " not found.");
     }
 
     // Search for a book by title (uses the tree for faster search)
-    // Time Complexity: O(log n) average case for BST search
+    // Time Complexity: O(log n) - the title tree is balanced
     public void searchBookByTitle(String title) {
-        Book book = bst.search(title);
-        if (book != null) {
-            System.out.println("Book found: " + book);
-        } else {
-            System.out.println("Book with title '" + title + "' not found.");
+        long start = System.nanoTime();
+        try {
+            Book book = findBookByTitle(title);
+            if (book != null) {
+                System.out.println("Book found: " + describe(book));
+            } else {
+                System.out.println("Book with title '" + title + "' not found.");
+            }
+        } finally {
+            metrics.record(LibraryMetrics.Operation.SEARCH_BY_TITLE, start);
+        }
+    }
+
+    // Search for books with a title close to the query (allows typos)
+    // Returns the best matches, closest first, and prints them
+    // Time Complexity: only visits the part of the BK-tree within maxDistance, not all n books
+    public DynamicArray<Book> searchBooksFuzzy(String query, int maxDistance, int limit) {
+        long start = System.nanoTime();
+        try {
+            awaitTitleIndexes();
+            DynamicArray<Book> matches = fuzzyIndex.search(query, maxDistance, limit);
+            if (matches.isEmpty()) {
+                System.out.println("No books with a title similar to '" + query + "' found.");
+            } else {
+                System.out.println("\n=== Closest Matches for '" + query + "' ===");
+                for (int i = 0; i < matches.size(); i++) {
+                    System.out.println(matches.get(i));
+                }
+            }
+            return matches;
+        } finally {
+            metrics.record(LibraryMetrics.Operation.SEARCH_FUZZY, start);
         }
     }
 
+    // Type-ahead: up to k books whose title starts with the prefix, most borrowed first
+    // Every trie node keeps its best 10, so this doesn't depend on the catalog size
+    // Time Complexity: O(prefix length + k) for k <= 10 (with a compact catalog,
+    // O(log n + r * k) for the r titles that start with the prefix)
+    public DynamicArray<Book> autocompleteTitles(String prefix, int k) {
+        long start = System.nanoTime();
+        try {
+            awaitTitleIndexes();
+            replayPendingBorrows();
+            if (compact != null) {
+                return completeFromTitleOrder(prefix, k);
+            }
+            return autocomplete.complete(prefix, k);
+        } finally {
+            metrics.record(LibraryMetrics.Operation.AUTOCOMPLETE, start);
+        }
+    }
+
+    // Show the trends of the last week: most borrowed books, authors and users, books
+    // most wanted while unavailable, most late returns (approximate, constant memory)
+    // Time Complexity: O(buckets^2 * k * depth) - doesn't depend on the catalog size
+    public void showTrends() {
+        long start = System.nanoTime();
+        try {
+            System.out.println(analytics.report(System.currentTimeMillis()));
+        } finally {
+            metrics.record(LibraryMetrics.Operation.TRENDS, start);
+        }
+    }
+
+    // Start the trends over with another window and error bounds: top k over the
+    // last windowMillis in 'buckets' steps, counts at most epsilon * (events in the
+    // window) too high with probability 1 - delta
+    // Time Complexity: O(counters)
+    public void configureTrends(int k, long windowMillis, int buckets, double epsilon, double delta) {
+        this.analytics = new BorrowAnalytics(k, windowMillis, buckets, epsilon, delta, System.currentTimeMillis());
+    }
+
+    // Get the trends (for the top lists themselves)
+    // Time Complexity: O(1)
+    public BorrowAnalytics getTrends() {
+        return analytics;
+    }
+
+    // How many times a book has been borrowed since the library started
+    // (borrowBook and processed requests; undone borrows don't count)
+    // Time Complexity: O(1) average
+    public int getBorrowCount(int bookId) {
+        if (!titleIndexesReady) {
+            return pendingBorrows.getOrDefault(bookId, 0);
+        }
+        replayPendingBorrows();
+        return autocomplete.getBorrowCount(bookId);
+    }
+
     // Show all books in the order we added them
     // Time Complexity: O(n)
     public void listAllBooks() {
-        if (catalog.isEmpty()) {
-            System.out.println("No books in the catalog.");
-            return;
-        }
+        long start = System.nanoTime();
+        try {
+            if (catalog.isEmpty()) {
+                System.out.println("No books in the catalog.");
+                return;
+            }
 
-        System.out.println("\n=== All Books (Order of Addition) ===");
-        for (int i = 0; i < catalog.size(); i++) {
-            System.out.println(catalog.get(i));
+            System.out.println("\n=== All Books (Order of Addition) ===");
+            for (int i = 0; i < catalog.size(); i++) {
+                System.out.println(describe(catalog.get(i)));
+            }
+        } finally {
+            metrics.record(LibraryMetrics.Operation.LIST_ALL, start);
         }
     }
 
     // Show all books sorted alphabetically by title
     // Time Complexity: O(n)
     public void listBooksAlphabetically() {
-        bst.inOrderTraversal();
+        long start = System.nanoTime();
+        try {
+            awaitTitleIndexes();
+            if (diskTitles == null && compact == null) {
+                titles.inOrderTraversal();
+                return;
+            }
+            // One pass over the title order, or over the disk index's leaves (which lie
+            // one after another in the file)
+            Iterator<Book> books = compact != null ? compact.titleOrderIterator(0, compact.size())
+                    : diskTitles.books(diskTitles.first(), this::findBookById);
+            if (!books.hasNext()) {
+                System.out.println("No books in the catalog.");
+                return;
+            }
+            System.out.println("\n=== Books in Alphabetical Order ===");
+            while (books.hasNext()) {
+                System.out.println(books.next());
+            }
+        } finally {
+            metrics.record(LibraryMetrics.Operation.LIST_ALPHABETICALLY, start);
+        }
     }
 
     // Someone wants to borrow a book - add them to the waiting list
-    // Time Complexity: O(n) for finding book + O(1) for enqueue
+    // The request goes to the back of the queue and to the book's own waitlist,
+    // which is where a returned copy looks for the next person
+    // Time Complexity: O(1) for finding book + O(1) for enqueue
     public void requestBorrow(String userName, int bookId) {
-        // Make sure the book exists
-        Book book = findBookById(bookId);
-        if (book == null) {
-            System.out.println("Book with ID " + bookId + " not found.");
-            return;
-        }
+        long start = System.nanoTime();
+        try {
+            expireHolds(System.currentTimeMillis());
 
-        BorrowRequest request = new BorrowRequest(userName, bookId);
-        borrowQueue.enqueue(request);
-        System.out.println("Borrow request added to queue: " + request);
+            // Make sure the book exists
+            Book book = findBookById(bookId);
+            if (book == null) {
+                System.out.println("Book with ID " + bookId + " not found.");
+                return;
+            }
+
+            if (!book.isAvailable()) {
+                analytics.recordUnavailableRequest(book, System.currentTimeMillis());
+            }
+            BorrowRequest request = new BorrowRequest(userName, bookId);
+            enqueueRequest(request);
+            System.out.println("Borrow request added to queue: " + request);
+        } finally {
+            metrics.record(LibraryMetrics.Operation.REQUEST_BORROW, start);
+        }
     }
 
     // Process the next person in the waiting list
-    // Time Complexity: O(n) for finding book + O(1) for queue operations
+    // Time Complexity: O(1) for finding book + O(log n) for the availability bitmap
+    // + O(w) to take the request off the book's waitlist of w people
     public void processBorrowRequest() {
-        if (borrowQueue.isEmpty()) {
-            System.out.println("No borrow requests in queue.");
-            return;
-        }
+        long start = System.nanoTime();
+        try {
+            expireHolds(System.currentTimeMillis()); // May hand a book to someone in the queue
+            BorrowRequest request = nextRequest();
+            if (request == null) {
+                System.out.println("No borrow requests in queue.");
+                return;
+            }
 
-        BorrowRequest request = borrowQueue.dequeue();
-        Book book = findBookById(request.getBookId());
+            Book book = findBookById(request.getBookId());
 
-        if (book == null) {
-            System.out.println("Book no longer exists.");
-            return;
-        }
+            if (book == null) {
+                System.out.println("Book no longer exists.");
+                return;
+            }
 
-        if (!book.isAvailable()) {
-            System.out.println("Book is currently borrowed. Request cannot be processed.");
-            System.out.println("Adding request back to queue...");
-            borrowQueue.enqueue(request);
-            return;
-        }
+            Hold hold = findHold(book.getId(), request.getUserName());
+            if (getCopies(book.getId()) > 1 && loans.get(book.getId(), request.getUserName()) != null) {
+                removeFromWaitlist(request);
+                System.out.println(request.getUserName() + " already has a copy of '" + book.getTitle()
+                        + "'. Request dropped.");
+                return;
+            } else if (hold != null) {
+                releaseHold(hold); // It was being kept for them anyway
+            } else if (!takeCopy(book)) {
+                System.out.println("Book is currently borrowed. Request cannot be processed.");
+                System.out.println("Adding request back to queue...");
+                borrowQueue.enqueue(request); // Keeps its place on the book's waitlist
+                return;
+            }
+            removeFromWaitlist(request);
 
-        // Let them borrow it
-        book.setAvailable(false);
-        Action action = new Action("BORROW", book.getId(), request.getUserName());
-        actionStack.push(action);
-        System.out.println("Processed: " + request.getUserName() + " borrowed '" + book.getTitle() + "'");
+            // Let them borrow it
+            Loan loan = startLoan(book, request.getUserName());
+            recordBorrow(book, 1);
+            analytics.recordBorrow(book, request.getUserName(), System.currentTimeMillis());
+            Action action = new Action("BORROW", book.getId(), request.getUserName(), null, hold);
+            actionStack.push(action);
+            fireMutation(MutationListener.Type.PROCESS_REQUEST, book, request.getUserName());
+            System.out.println("Processed: " + request.getUserName() + " borrowed '" + book.getTitle() + "'"
+                    + " (due " + Loan.formatTime(loan.getDueAt()) + ")");
+        } finally {
+            metrics.record(LibraryMetrics.Operation.PROCESS_REQUEST, start);
+        }
     }
 
     // Show who's waiting to borrow books
     // Time Complexity: O(n)
     public void displayBorrowQueue() {
-        if (borrowQueue.isEmpty()) {
-            System.out.println("No pending borrow requests.");
-            return;
-        }
+        long start = System.nanoTime();
+        try {
+            compactBorrowQueue();
+            if (borrowQueue.isEmpty()) {
+                System.out.println("No pending borrow requests.");
+                return;
+            }
 
-        System.out.println("\n=== Pending Borrow Requests ===");
-        System.out.println("Queue size: " + borrowQueue.size());
-        borrowQueue.display();
+            System.out.println("\n=== Pending Borrow Requests ===");
+            System.out.println("Queue size: " + borrowQueue.size());
+            borrowQueue.display();
+        } finally {
+            metrics.record(LibraryMetrics.Operation.DISPLAY_QUEUE, start);
+        }
     }
 
     // Let someone borrow a book right now (skip the queue)
-    // Time Complexity: O(n) for finding book + O(1) for stack push
+    // For a title with several copies this just takes one off the shelf - no search
+    // for a free copy
+    // Time Complexity: O(1) for finding book + O(log n) for the availability bitmap
     public void borrowBook(String userName, int bookId) {
-        Book book = findBookById(bookId);
+        long start = System.nanoTime();
+        try {
+            Book book = findBookById(bookId);
 
-        if (book == null) {
-            System.out.println("Book with ID " + bookId + " not found.");
-            return;
-        }
+            if (book == null) {
+                System.out.println("Book with ID " + bookId + " not found.");
+                return;
+            }
 
-        if (!book.isAvailable()) {
-            System.out.println("Book is currently borrowed.");
-            return;
-        }
+            expireHolds(System.currentTimeMillis());
+            Hold hold = findHold(bookId, userName);
+            if (getCopies(bookId) > 1 && loans.get(bookId, userName) != null) {
+                System.out.println(userName + " already has a copy of '" + book.getTitle() + "'.");
+                return;
+            } else if (hold != null) {
+                releaseHold(hold); // Picking up their hold
+            } else if (!takeCopy(book)) {
+                analytics.recordUnavailableRequest(book, System.currentTimeMillis());
+                DynamicArray<Hold> held = holds.get(bookId);
+                if (getCopies(bookId) > 1) {
+                    System.out.println("All " + getCopies(bookId) + " copies are borrowed or on hold.");
+                } else if (held != null) {
+                    Hold other = held.get(0);
+                    System.out.println("Book is on hold for " + other.getUserName() + " until "
+                            + Loan.formatTime(other.getExpiresAt()) + ".");
+                } else {
+                    System.out.println("Book is currently borrowed.");
+                }
+                return;
+            }
 
-        book.setAvailable(false);
-        Action action = new Action("BORROW", bookId, userName);
-        actionStack.push(action);
-        System.out.println(userName + " borrowed '" + book.getTitle() + "' successfully.");
+            Loan loan = startLoan(book, userName);
+            recordBorrow(book, 1);
+            analytics.recordBorrow(book, userName, System.currentTimeMillis());
+            Action action = new Action("BORROW", bookId, userName, null, hold);
+            actionStack.push(action);
+            fireMutation(MutationListener.Type.BORROW, book, userName);
+            System.out.println(userName + " borrowed '" + book.getTitle() + "' successfully. Due back on "
+                    + Loan.formatTime(loan.getDueAt()) + ".");
+        } finally {
+            metrics.record(LibraryMetrics.Operation.BORROW_BOOK, start);
+        }
     }
 
-    // Someone is returning a book
-    // Time Complexity: O(n) for finding book + O(1) for stack push
+    // Someone is returning a book (one copy of it)
+    // Time Complexity: O(1) for finding book + O(log n) for the availability bitmap
     public void returnBook(String userName, int bookId) {
-        Book book = findBookById(bookId);
+        long start = System.nanoTime();
+        try {
+            Book book = findBookById(bookId);
 
-        if (book == null) {
-            System.out.println("Book with ID " + bookId + " not found.");
-            return;
-        }
+            if (book == null) {
+                System.out.println("Book with ID " + bookId + " not found.");
+                return;
+            }
 
-        if (book.isAvailable()) {
-            System.out.println("Book is not currently borrowed.");
-            return;
-        }
+            expireHolds(System.currentTimeMillis());
+            if (copiesOut(book) == 0) {
+                System.out.println("Book is not currently borrowed.");
+                return;
+            }
+
+            // Their own loan; for a single copy anyone may bring it back
+            Loan loan = loans.get(bookId, userName);
+            if (loan == null && getCopies(bookId) == 1) {
+                loan = loans.get(bookId);
+            } else if (loan == null && loans.get(bookId) != null) {
+                System.out.println(userName + " doesn't have a copy of '" + book.getTitle() + "' on loan.");
+                return;
+            }
 
-        book.setAvailable(true);
-        Action action = new Action("RETURN", bookId, userName);
-        actionStack.push(action);
-        System.out.println(userName + " returned '" + book.getTitle() + "' successfully.");
+            if (loan != null) {
+                loans.remove(bookId, loan.getUserName());
+            }
+            // If someone is waiting for it, keep it on the hold shelf for them
+            Hold hold = placeHold(book, System.currentTimeMillis());
+            if (hold == null) {
+                putBackCopy(book);
+            }
+            long now = System.currentTimeMillis();
+            analytics.recordReturn(loan != null ? loan.getUserName() : userName, loan != null && loan.isOverdue(now), now);
+            Action action = new Action("RETURN", bookId, userName, loan);
+            actionStack.push(action);
+            fireMutation(MutationListener.Type.RETURN, book, userName);
+            System.out.println(userName + " returned '" + book.getTitle() + "' successfully.");
+            if (hold != null) {
+                System.out.println("'" + book.getTitle() + "' is on the hold shelf for " + hold.getUserName()
+                        + " until " + Loan.formatTime(hold.getExpiresAt()) + ".");
+            }
+            if (loan != null && loan.isOverdue(System.currentTimeMillis())) {
+                long daysLate = (System.currentTimeMillis() - loan.getDueAt()) / DAY_MILLIS + 1;
+                System.out.println("This book was returned " + daysLate + " day(s) late.");
+            }
+        } finally {
+            metrics.record(LibraryMetrics.Operation.RETURN_BOOK, start);
+        }
     }
 
     // Undo the last thing that happened (borrow or return)
-    // Time Complexity: O(n) for finding book + O(1) for stack pop
+    // Time Complexity: O(1) for finding book + O(log n) for the availability bitmap
     public void undoLastAction() {
-        if (actionStack.isEmpty()) {
-            System.out.println("No actions to undo.");
-            return;
+        long start = System.nanoTime();
+        try {
+            if (actionStack.isEmpty()) {
+                System.out.println("No actions to undo.");
+                return;
+            }
+
+            Action action = actionStack.pop();
+            Book book = findBookById(action.getBookId());
+
+            if (book == null) {
+                System.out.println("Book no longer exists. Cannot undo.");
+                return;
+            }
+
+            if (action.getType().equals("BORROW")) {
+                // They borrowed it, so undo = return it - to the hold shelf if it was
+                // their hold they picked up, else to the open shelf
+                Hold hold = action.getHold();
+                loans.remove(book.getId(), action.getUserName());
+                if (hold != null) {
+                    shelveHold(hold); // Same hold, same expiry
+                } else {
+                    putBackCopy(book);
+                }
+                recordBorrow(book, -1); // It doesn't count as borrowed any more
+                fireMutation(MutationListener.Type.UNDO_BORROW, book, action.getUserName());
+                System.out.println("Undone: " + action.getUserName() + "'s borrow of '" + book.getTitle() + "'"
+                        + (hold != null ? " (back on the hold shelf until " + Loan.formatTime(hold.getExpiresAt()) + ")" : ""));
+            } else if (action.getType().equals("RETURN")) {
+                // They returned it, so undo = borrow it again (with the same due date)
+                // A copy kept for them on the hold shelf is theirs again; else a copy on the
+                // shelf is taken; else the newest hold goes back to the borrower and the
+                // holder goes back to the front of the line, where they were
+                Hold own = findHold(book.getId(), action.getUserName());
+                if (own != null) {
+                    releaseHold(own);
+                } else if (!takeCopy(book)) {
+                    DynamicArray<Hold> held = holds.get(book.getId());
+                    if (held == null) {
+                        System.out.println("Cannot undo the return of '" + book.getTitle()
+                                + "': every copy is out again.");
+                        return;
+                    }
+                    Hold hold = held.get(held.size() - 1); // The newest one
+                    releaseHold(hold);
+                    requeueFirst(new BorrowRequest(hold.getUserName(), book.getId()));
+                    System.out.println("Hold for " + hold.getUserName() + " cancelled; request put back at the front of the queue.");
+                }
+                if (action.getLoan() != null) {
+                    loans.add(action.getLoan());
+                } else {
+                    startLoan(book, action.getUserName());
+                }
+                fireMutation(MutationListener.Type.UNDO_RETURN, book, action.getUserName());
+                System.out.println("Undone: " + action.getUserName() + "'s return of '" + book.getTitle() + "'");
+            }
+        } finally {
+            metrics.record(LibraryMetrics.Operation.UNDO, start);
         }
+    }
 
-        Action action = actionStack.pop();
-        Book book = findBookById(action.getBookId());
+    // Give a borrower more time: the loan runs for another loan period
+    // (counted from the old due date, or from now if it is already overdue)
+    // Time Complexity: O(log n) - the loan moves to its new place in the heap
+    public void renewLoan(String userName, int bookId) {
+        long start = System.nanoTime();
+        try {
+            Loan loan = loans.get(bookId, userName);
+            if (loan == null) {
+                if (loans.get(bookId) != null) {
+                    System.out.println("Book with ID " + bookId + " is on loan to someone else.");
+                } else {
+                    System.out.println("Book with ID " + bookId + " is not on loan.");
+                }
+                return;
+            }
 
-        if (book == null) {
-            System.out.println("Book no longer exists. Cannot undo.");
-            return;
+            long newDueAt = Math.max(loan.getDueAt(), System.currentTimeMillis()) + loanPeriodMillis;
+            loans.changeDueDate(bookId, userName, newDueAt);
+            System.out.println("Loan renewed. Book ID " + bookId + " is now due on " + Loan.formatTime(newDueAt) + ".");
+        } finally {
+            metrics.record(LibraryMetrics.Operation.RENEW_LOAN, start);
         }
+    }
 
-        if (action.getType().equals("BORROW")) {
-            // They borrowed it, so undo = return it
-            book.setAvailable(true);
-            System.out.println("Undone: " + action.getUserName() + "'s borrow of '" + book.getTitle() + "'");
-        } else if (action.getType().equals("RETURN")) {
-            // They returned it, so undo = borrow it again
-            book.setAvailable(false);
-            System.out.println("Undone: " + action.getUserName() + "'s return of '" + book.getTitle() + "'");
+    // All loans that are overdue at this time, most overdue first
+    // Only looks at overdue loans, not at every book
+    // Time Complexity: O(k log k) for k overdue loans
+    public DynamicArray<Loan> listOverdue(long now) {
+        long start = System.nanoTime();
+        try {
+            return loans.overdue(now);
+        } finally {
+            metrics.record(LibraryMetrics.Operation.LIST_OVERDUE, start);
         }
     }
 
-    // Helper method to find a book by its ID
-    // Time Complexity: O(n)
-    private Book findBookById(int bookId) {
-        for (int i = 0; i < catalog.size(); i++) {
-            Book book = catalog.get(i);
-            if (book.getId() == bookId) {
-                return book;
+    // Write a reminder to reminders.log for every overdue loan that hasn't had one yet
+    // Returns how many reminders were written
+    // Time Complexity: O(k log k) for k overdue loans
+    public int sendOverdueReminders(long now) {
+        DynamicArray<Loan> overdue = listOverdue(now);
+        int sent = 0;
+        try (PrintWriter writer = new PrintWriter(new FileWriter(REMINDERS_FILE, true))) {
+            for (Loan loan : overdue) {
+                if (loan.isReminded()) {
+                    continue;
+                }
+                writer.println(Loan.formatTime(now) + " Reminder to " + loan.getUserName() + ": book ID "
+                        + loan.getBookId() + " was due on " + Loan.formatTime(loan.getDueAt()));
+                loan.setReminded(true);
+                sent++;
             }
+        } catch (IOException e) {
+            System.out.println("Error writing reminders: " + e.getMessage());
         }
-        return null;
+        return sent;
     }
 
-    // Load books from the file when we start
-    // Time Complexity: O(n * log n) where n is number of books
-    private void loadBooksFromFile() {
-        File file = new File(BOOKS_FILE);
-        if (!file.exists()) {
-            System.out.println("Books file not found. Starting with empty catalog.");
+    // Check for overdue loans every few seconds on a background thread
+    // Time Complexity: O(1) to start
+    public synchronized void startOverdueReminders(long periodSeconds) {
+        if (reminderScheduler != null) {
             return;
         }
+        reminderScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "library-overdue-reminders");
+            thread.setDaemon(true); // Don't keep the program alive just for this
+            return thread;
+        });
+        reminderScheduler.scheduleAtFixedRate(() -> sendOverdueReminders(System.currentTimeMillis()),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty())
-                    continue;
+    // Stop the overdue reminder thread
+    // Time Complexity: O(1)
+    public synchronized void stopOverdueReminders() {
+        if (reminderScheduler != null) {
+            reminderScheduler.shutdown();
+            reminderScheduler = null;
+        }
+    }
 
-                Book book = Book.fromFileString(line);
-                catalog.add(book);
-                bst.insert(book);
+    // Change how many days a loan (or a renewal) lasts; existing loans keep their due dates
+    // Time Complexity: O(1)
+    public void setLoanPeriodDays(int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("Loan period must be at least one day: " + days);
+        }
+        this.loanPeriodMillis = days * DAY_MILLIS;
+    }
 
-                // Make sure we don't reuse book IDs
-                if (book.getId() >= nextBookId) {
-                    nextBookId = book.getId() + 1;
-                }
+    // Get a loan of a book - any copy (null if no copy is on loan)
+    // Time Complexity: O(1) average
+    public Loan getLoan(int bookId) {
+        return loans.get(bookId);
+    }
+
+    // Get one person's loan of a book (null if they don't have a copy)
+    // Time Complexity: O(copies)
+    public Loan getLoan(int bookId, String userName) {
+        return loans.get(bookId, userName);
+    }
+
+    // Run out every hold that has expired by 'now' (desk operations call this first)
+    // Returns how many holds expired
+    // Time Complexity: O(seconds since the last call + expired holds), not O(books)
+    public int expireHolds(long now) {
+        return holdExpiry.advance(now, hold -> holdExpired(hold, now));
+    }
+
+    // Show every book on the hold shelf
+    // Time Complexity: O(h) for h holds
+    public void listHolds() {
+        expireHolds(System.currentTimeMillis());
+        if (holds.isEmpty()) {
+            System.out.println("The hold shelf is empty.");
+            return;
+        }
+        System.out.println("\n=== Hold Shelf ===");
+        for (DynamicArray<Hold> held : holds.values()) {
+            for (int i = 0; i < held.size(); i++) {
+                System.out.println(held.get(i));
             }
-            System.out.println("Loaded " + catalog.size() + " books from file.");
-        } catch (IOException e) {
-            System.out.println("Error loading books from file: " + e.getMessage());
         }
     }
 
-    // Save all books to the file
-    // Time Complexity: O(n)
-    public void saveBooksToFile() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(BOOKS_FILE))) {
-            for (int i = 0; i < catalog.size(); i++) {
-                writer.println(catalog.get(i).toFileString());
+    // Change how long a returned book is kept for the next person; existing holds keep their times
+    // Time Complexity: O(1)
+    public void setHoldWindowMinutes(int minutes) {
+        if (minutes <= 0) {
+            throw new IllegalArgumentException("Hold window must be at least one minute: " + minutes);
+        }
+        this.holdWindowMillis = minutes * 60L * 1000;
+    }
+
+    // Get the oldest hold on a book (null if no copy is on the hold shelf)
+    // Time Complexity: O(1) average
+    public Hold getHold(int bookId) {
+        DynamicArray<Hold> held = holds.get(bookId);
+        return held == null ? null : held.get(0);
+    }
+
+    // How many copies are on the hold shelf
+    // Time Complexity: O(1)
+    public int getHoldCount() {
+        return holdCount;
+    }
+
+    // The library got more copies of a book. They go to people on its waitlist
+    // first (on the hold shelf), the rest on the shelf.
+    // Time Complexity: O(1) for the counts + O(1) per copy put on hold
+    public void addCopies(int bookId, int count) {
+        long start = System.nanoTime();
+        try {
+            Book book = findBookById(bookId);
+            if (book == null) {
+                System.out.println("Book with ID " + bookId + " not found.");
+                return;
             }
-            System.out.println("Books saved to file successfully.");
-        } catch (IOException e) {
-            System.out.println("Error saving books to file: " + e.getMessage());
+            if (count <= 0) {
+                System.out.println("Number of copies must be positive.");
+                return;
+            }
+
+            expireHolds(System.currentTimeMillis());
+            Holdings copies = holdings.get(bookId);
+            if (copies == null) {
+                copies = new Holdings(1, book.isAvailable() ? 1 : 0); // Until now the book was its only copy
+                holdings.put(bookId, copies);
+                multiCopyTitles++;
+            }
+            copies.addCopies(count);
+            extraCopies.addAndGet(count);
+            int held = 0;
+            long now = System.currentTimeMillis();
+            while (hasWaiters(bookId) && copies.take() >= 0) {
+                if (placeHold(book, now) == null) {
+                    copies.giveBack(); // Nobody was really left
+                    break;
+                }
+                held++;
+            }
+            storeCopies(book, copies);
+            setAvailable(book, copies.getAvailable() > 0);
+            fireMutation(MutationListener.Type.COPIES, book, null);
+            System.out.println("Added " + count + " copies of '" + book.getTitle() + "': " + copies + "."
+                    + (held > 0 ? " " + held + " went to the hold shelf for people waiting." : ""));
+        } finally {
+            metrics.record(LibraryMetrics.Operation.CHANGE_COPIES, start);
         }
     }
 
-    // How many books do we have?
+    // Withdraw copies of a book (lost, damaged, sold). Only copies on the shelf can
+    // go, and at least one is kept - use removeBook to remove the title.
+    // Time Complexity: O(1)
+    public void removeCopies(int bookId, int count) {
+        long start = System.nanoTime();
+        try {
+            Book book = findBookById(bookId);
+            if (book == null) {
+                System.out.println("Book with ID " + bookId + " not found.");
+                return;
+            }
+            if (count <= 0) {
+                System.out.println("Number of copies must be positive.");
+                return;
+            }
+
+            Holdings copies = holdings.get(bookId);
+            if (copies == null || !copies.removeCopies(count)) {
+                int onShelf = copies == null ? 0 : copies.getAvailable();
+                System.out.println("Cannot withdraw " + count + " copies of '" + book.getTitle() + "': "
+                        + (copies == null ? "it is the only copy" : copies.toString())
+                        + (onShelf >= count ? " and one must stay (remove the book instead)." : "."));
+                return;
+            }
+            extraCopies.addAndGet(-count);
+            if (copies.getTotal() == 1) {
+                holdings.remove(bookId); // Back to a single copy: the book's own status says it all
+                multiCopyTitles--;
+            }
+            storeCopies(book, copies.getTotal() == 1 ? null : copies);
+            setAvailable(book, copies.getAvailable() > 0);
+            fireMutation(MutationListener.Type.COPIES, book, null);
+            System.out.println("Withdrew " + count + " copies of '" + book.getTitle() + "': " + copies + ".");
+        } finally {
+            metrics.record(LibraryMetrics.Operation.CHANGE_COPIES, start);
+        }
+    }
+
+    // How many copies of a book the library owns (0 if there is no such book)
+    // Time Complexity: O(1) average
+    public int getCopies(int bookId) {
+        Holdings copies = holdings.get(bookId);
+        if (copies != null) {
+            return copies.getTotal();
+        }
+        return findBookById(bookId) == null ? 0 : 1;
+    }
+
+    // How many copies of a book are on the shelf (not on loan, not on the hold shelf)
+    // Time Complexity: O(1) average
+    public int getAvailableCopies(int bookId) {
+        Holdings copies = holdings.get(bookId);
+        if (copies != null) {
+            return copies.getAvailable();
+        }
+        Book book = findBookById(bookId);
+        return book != null && book.isAvailable() ? 1 : 0;
+    }
+
+    // Get the copy counts of a book (null for a single-copy book)
+    // Time Complexity: O(1) average
+    public Holdings getHoldings(int bookId) {
+        return holdings.get(bookId);
+    }
+
+    // Add a book read from storage (no message, so big loads stay quiet)
+    // Time Complexity: O(log n) average
+    public void loadBook(Book book) {
+        loadBook(book, null);
+    }
+
+    // Same, with the copy counts that were saved after it (null = a single copy)
+    // Time Complexity: O(log n) average
+    public void loadBook(Book book, Holdings copies) {
+        loadHoldings(indexBook(book), copies);
+        if (book.getId() >= nextBookId) {
+            nextBookId = book.getId() + 1;
+        }
+    }
+
+    // Helper method to put a book into the array and every index
+    // Returns the copy the catalog keeps (a view for compact or mapped catalogs)
+    // Time Complexity: O(log n) average
+    private Book indexBook(Book book) {
+        awaitTitleIndexes();
+        book = indexBookById(book);
+        if (compact == null) { // A compact catalog put it into its own title order and author counts
+            if (diskTitles != null) {
+                diskTitles.insert(book.getTitle(), book.getId());
+            } else {
+                titles.insert(book); // Also add to tree
+            }
+            autocomplete.insert(book);
+            addToAuthorIndex(book);
+        }
+        fuzzyIndex.insert(book);
+        titleCache.invalidate(TitleCache.keyOf(book.getTitle())); // A cached "not found" is now wrong
+        return book;
+    }
+
+    // Helper method to put a book into the array, the ID map and the availability bitmap
+    // (everything search by ID, borrow and return need)
+    // Time Complexity: O(1) amortized + O(log n) for the bitmap
+    private Book indexBookById(Book book) {
+        if (storage != null && !storage.owns(book)) {
+            book = storage.append(book); // Write it to the mapped file and use the file's view
+        }
+        catalog.add(book); // Add to array
+        book = catalog.get(catalog.size() - 1); // A compact catalog keeps its own copy
+        if (compact == null) {
+            booksById.put(book.getId(), book); // A compact catalog finds IDs itself
+        }
+        availability.set(book.getId(), book.isAvailable());
+        return book;
+    }
+
+    // Helper method to take a book out of the array and every index (null if missing)
+    // Time Complexity: O(n) for removing from array + O(log n) for the title tree
+    private Book unindexBook(int bookId) {
+        awaitTitleIndexes();
+        int indexToRemove = indexOfBookId(bookId);
+        if (indexToRemove < 0) {
+            return null;
+        }
+        Book bookToRemove = catalog.remove(indexToRemove); // A compact catalog hands back a copy
+        booksById.remove(bookId);
+        loans.removeAll(bookId);
+        DynamicArray<Hold> held = holds.get(bookId);
+        while (held != null && !held.isEmpty()) {
+            releaseHold(held.get(held.size() - 1));
+        }
+        forgetHoldings(holdings.remove(bookId));
+        waitlists.remove(bookId); // Their requests are told the book is gone when they come up
+        if (storage != null) {
+            storage.remove(bookToRemove);
+        }
+        availability.set(bookId, false);
+        if (compact == null) {
+            removeFromAuthorIndex(bookToRemove);
+            if (diskTitles != null) {
+                diskTitles.delete(bookToRemove.getTitle(), bookId);
+            } else {
+                titles.delete(bookToRemove); // Exactly this book, even if others share its title
+            }
+        }
+        fuzzyIndex.delete(bookToRemove);
+        autocomplete.remove(bookToRemove); // Also forgets its borrow count
+        titleCache.invalidate(TitleCache.keyOf(bookToRemove.getTitle()));
+        return bookToRemove;
+    }
+
+    // Helper method to record a new loan that starts now
+    // Time Complexity: O(log n)
+    private Loan startLoan(Book book, String userName) {
+        long now = System.currentTimeMillis();
+        Loan loan = new Loan(book.getId(), userName, now, now + loanPeriodMillis);
+        loans.add(loan);
+        return loan;
+    }
+
+    // Helper method to keep a returned copy for the first person waiting for it
+    // (people who already have a copy, on loan or on the hold shelf, are passed over)
+    // Returns the new hold, or null if nobody is waiting for this book
+    // Time Complexity: O(1) - the book's own waitlist says who is next
+    private Hold placeHold(Book book, long now) {
+        BorrowRequest next = null;
+        while (next == null) {
+            Queue<BorrowRequest> waiting = waitlists.get(book.getId());
+            if (waiting == null) {
+                return null;
+            }
+            BorrowRequest request = waiting.dequeue();
+            if (waiting.isEmpty()) {
+                waitlists.remove(book.getId());
+            }
+            request.served = true; // Still in borrowQueue - skipped when it gets to the front
+            servedRequests++;
+            if (loans.get(book.getId(), request.getUserName()) == null
+                    && findHold(book.getId(), request.getUserName()) == null) {
+                next = request;
+            }
+        }
+        if (servedRequests > 64 && servedRequests > borrowQueue.size() / 2) {
+            compactBorrowQueue(); // Mostly skipped requests - clean up now (amortized O(1))
+        }
+
+        Hold hold = new Hold(book.getId(), next.getUserName(), now, now + holdWindowMillis);
+        shelveHold(hold);
+        return hold;
+    }
+
+    // Helper method to put a hold on the hold shelf and start its expiry timer
+    // (a hold whose time has already passed runs out at the next expireHolds)
+    // Time Complexity: O(1) amortized
+    private void shelveHold(Hold hold) {
+        hold.timeout = holdExpiry.schedule(hold, hold.getExpiresAt());
+        DynamicArray<Hold> held = holds.get(hold.getBookId());
+        if (held == null) {
+            held = new DynamicArray<>(1);
+            holds.put(hold.getBookId(), held);
+        }
+        held.add(hold);
+        holdCount++;
+    }
+
+    // Helper method to take a hold off the shelf (picked up or cancelled)
+    // Time Complexity: O(copies of the book)
+    private void releaseHold(Hold hold) {
+        holdExpiry.cancel(hold.timeout);
+        removeHold(hold);
+    }
+
+    // Helper method to take a hold out of its book's list (its timer is done or cancelled)
+    // Time Complexity: O(copies of the book)
+    private void removeHold(Hold hold) {
+        DynamicArray<Hold> held = holds.get(hold.getBookId());
+        if (held == null) {
+            return;
+        }
+        for (int i = 0; i < held.size(); i++) {
+            if (held.get(i) == hold) {
+                held.remove(i);
+                holdCount--;
+                break;
+            }
+        }
+        if (held.isEmpty()) {
+            holds.remove(hold.getBookId());
+        }
+    }
+
+    // Helper method to find the copy on the hold shelf kept for one person (null if none)
+    // Time Complexity: O(copies of the book)
+    private Hold findHold(int bookId, String userName) {
+        DynamicArray<Hold> held = holds.get(bookId);
+        if (held == null) {
+            return null;
+        }
+        for (int i = 0; i < held.size(); i++) {
+            if (held.get(i).getUserName().equalsIgnoreCase(userName)) {
+                return held.get(i);
+            }
+        }
+        return null;
+    }
+
+    // Helper method called by the timing wheel when a hold runs out:
+    // the copy goes to the next person waiting, or back on the shelf
+    // Time Complexity: O(1) to find the next person on the book's waitlist
+    private void holdExpired(Hold hold, long now) {
+        removeHold(hold);
+        Book book = findBookById(hold.getBookId());
+        if (book == null) {
+            return;
+        }
+        Hold next = placeHold(book, now);
+        if (next != null) {
+            System.out.println("Hold for " + hold.getUserName() + " on '" + book.getTitle() + "' expired; now held for "
+                    + next.getUserName() + " until " + Loan.formatTime(next.getExpiresAt()) + ".");
+        } else {
+            putBackCopy(book);
+            fireMutation(MutationListener.Type.HOLD_EXPIRED, book, hold.getUserName());
+            System.out.println("Hold for " + hold.getUserName() + " on '" + book.getTitle() + "' expired; it is available again.");
+        }
+    }
+
+    // Helper method to take one copy of a book off the shelf (false if none is there)
+    // Keeps the book's own status (and the availability bitmap) at "any copy on the shelf"
+    // Time Complexity: O(1), O(log n) when the bitmap changes
+    private boolean takeCopy(Book book) {
+        Holdings copies = holdings.get(book.getId());
+        if (copies == null) {
+            if (!book.isAvailable()) {
+                return false;
+            }
+            setAvailable(book, false);
+            return true;
+        }
+        int left = copies.take();
+        if (left < 0) {
+            return false;
+        }
+        storeCopies(book, copies);
+        if (left == 0) {
+            setAvailable(book, false);
+        }
+        return true;
+    }
+
+    // Helper method to put one copy of a book back on the shelf
+    // Time Complexity: O(1), O(log n) when the bitmap changes
+    private void putBackCopy(Book book) {
+        Holdings copies = holdings.get(book.getId());
+        if (copies != null) {
+            copies.giveBack();
+            storeCopies(book, copies);
+        }
+        if (!book.isAvailable()) {
+            setAvailable(book, true);
+        }
+    }
+
+    // Helper method: how many copies of a book are out on loan (owned, minus the ones
+    // on the shelf and on the hold shelf)
+    // Time Complexity: O(1) average
+    private int copiesOut(Book book) {
+        DynamicArray<Hold> held = holds.get(book.getId());
+        int onHold = held == null ? 0 : held.size();
+        Holdings copies = holdings.get(book.getId());
+        if (copies == null) {
+            return book.isAvailable() || onHold > 0 ? 0 : 1;
+        }
+        return copies.getTotal() - copies.getAvailable() - onHold;
+    }
+
+    // Helper method to put a request at the back of the queue and of its book's waitlist
+    // Time Complexity: O(1) amortized
+    private void enqueueRequest(BorrowRequest request) {
+        borrowQueue.enqueue(request);
+        Queue<BorrowRequest> waiting = waitlists.get(request.getBookId());
+        if (waiting == null) {
+            waiting = new Queue<>(2, false);
+            waitlists.put(request.getBookId(), waiting);
+        }
+        waiting.enqueue(request);
+    }
+
+    // Helper method to put a request back at the front of the queue and of its book's
+    // waitlist (someone who was already served and lost their copy again)
+    // Time Complexity: O(1) amortized
+    private void requeueFirst(BorrowRequest request) {
+        borrowQueue.enqueueFront(request);
+        Queue<BorrowRequest> waiting = waitlists.get(request.getBookId());
+        if (waiting == null) {
+            waiting = new Queue<>(2, false);
+            waitlists.put(request.getBookId(), waiting);
+        }
+        waiting.enqueueFront(request);
+    }
+
+    // Helper method to take the next request that is still waiting off the queue
+    // (null if there is none); requests a waitlist already served are dropped on the way
+    // Time Complexity: O(1) amortized
+    private BorrowRequest nextRequest() {
+        while (!borrowQueue.isEmpty()) {
+            BorrowRequest request = borrowQueue.dequeue();
+            if (!request.served) {
+                return request;
+            }
+            servedRequests--;
+        }
+        return null;
+    }
+
+    // Helper method to take a request that is being served off its book's waitlist
+    // Time Complexity: O(w) for w people waiting for the same book
+    private void removeFromWaitlist(BorrowRequest request) {
+        Queue<BorrowRequest> waiting = waitlists.get(request.getBookId());
+        if (waiting == null) {
+            return;
+        }
+        waiting.removeFirstMatch(r -> r == request);
+        if (waiting.isEmpty()) {
+            waitlists.remove(request.getBookId());
+        }
+    }
+
+    // Helper method: is anyone on the book's waitlist?
+    // Time Complexity: O(1) average
+    private boolean hasWaiters(int bookId) {
+        return waitlists.containsKey(bookId);
+    }
+
+    // Helper method to drop the requests a waitlist already served from the queue
+    // Time Complexity: O(q)
+    private void compactBorrowQueue() {
+        if (servedRequests == 0) {
+            return;
+        }
+        DynamicArray<BorrowRequest> pending = new DynamicArray<>(borrowQueue.size());
+        borrowQueue.drainTo(pending);
+        for (int i = 0; i < pending.size(); i++) {
+            if (!pending.get(i).served) {
+                borrowQueue.enqueue(pending.get(i));
+            }
+        }
+        servedRequests = 0;
+    }
+
+    // Helper method to add a book to its author's list
+    // Time Complexity: O(1) amortized
+    private void addToAuthorIndex(Book book) {
+        String key = book.getAuthor().toLowerCase();
+        DynamicArray<Book> books = booksByAuthor.get(key);
+        if (books == null) {
+            books = new DynamicArray<>(1);
+            booksByAuthor.put(key, books);
+        }
+        books.add(book);
+    }
+
+    // Helper method to take a book out of its author's list
+    // Time Complexity: O(k) for k books by the same author
+    private void removeFromAuthorIndex(Book book) {
+        String key = book.getAuthor().toLowerCase();
+        DynamicArray<Book> books = booksByAuthor.get(key);
+        if (books == null) {
+            return;
+        }
+        for (int i = 0; i < books.size(); i++) {
+            if (books.get(i).getId() == book.getId()) {
+                books.remove(i);
+                break;
+            }
+        }
+        if (books.isEmpty()) {
+            booksByAuthor.remove(key);
+        }
+    }
+
+    // Tell every listener about a change
+    // Time Complexity: O(number of listeners)
+    private void fireMutation(MutationListener.Type type, Book book, String userName) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onMutation(type, book, userName);
+        }
+    }
+
+    // Helper method to find a book by its ID
+    // Time Complexity: O(1) average using the ID map (or the compact catalog's ID table)
+    private Book findBookById(int bookId) {
+        return compact != null ? compact.findById(bookId) : booksById.get(bookId);
+    }
+
+    // Helper method for how a book is shown, with its copy counts if it has several
+    // Time Complexity: O(1) average
+    private String describe(Book book) {
+        Holdings copies = holdings.get(book.getId());
+        return copies == null ? book.toString() : book + " | Copies: " + copies.getAvailable() + " of " + copies.getTotal();
+    }
+
+    // Helper method to change a book's status and keep the availability bitmap in sync
+    // Time Complexity: O(log n)
+    private void setAvailable(Book book, boolean available) {
+        book.setAvailable(available);
+        availability.set(book.getId(), available);
+    }
+
+    // Helper method to write a book's copy counts into its mapped record (null = a
+    // single copy), right where its status byte is - nothing waits for a save
+    // Time Complexity: O(1)
+    private void storeCopies(Book book, Holdings copies) {
+        if (storage != null) {
+            storage.writeCopies(book, copies);
+        }
+    }
+
+    // Helper method to find where a book ID is in the catalog (-1 if missing)
+    // Time Complexity: O(n) - a compact catalog only scans its int array
+    private int indexOfBookId(int bookId) {
+        if (compact != null) {
+            return compact.indexOfId(bookId);
+        }
+        for (int i = 0; i < catalog.size(); i++) {
+            if (catalog.get(i).getId() == bookId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Helper method to find a book by its title (checks the cache before the tree)
+    // Time Complexity: O(1) on a cache hit, O(log n) average on a miss
+    private Book findBookByTitle(String title) {
+        if (scanInsteadOfWaiting()) {
+            return scanForTitle(title);
+        }
+        String key = TitleCache.keyOf(title);
+        if (titleCache.contains(key)) {
+            return titleCache.get(key);
+        }
+        Book book = compact != null ? compact.findByTitle(title)
+                : diskTitles != null ? searchDiskTitles(title) : titles.search(title);
+        titleCache.put(key, book); // Also remembers misses (book == null)
+        return book;
+    }
+
+    // Helper method to find a book by title in the disk index (lowest ID wins, like the tree)
+    // Keys are cut after DiskTitleIndex.MAX_KEY_CHARS, so the book's real title is checked too
+    // Time Complexity: O(log n) page reads
+    private Book searchDiskTitles(String title) {
+        DiskTitleIndex.Cursor cursor = diskTitles.seek(title);
+        while (cursor.next() && DiskTitleIndex.matches(cursor.key(), title)) {
+            Book book = findBookById(cursor.bookId());
+            if (book != null && book.getTitle().equalsIgnoreCase(title)) {
+                return book;
+            }
+        }
+        return null;
+    }
+
+    // Helper method to add a batch to the disk index in key order, so neighbouring
+    // entries land in pages that are still cached
+    // Time Complexity: O(m log m) to sort + O(m log n) page visits, mostly cache hits
+    private void insertIntoDiskIndex(DynamicArray<Book> books) {
+        Book[] sorted = new Book[books.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = books.get(i);
+        }
+        Arrays.sort(sorted, (a, b) -> {
+            int c = DiskTitleIndex.keyOf(a.getTitle()).compareTo(DiskTitleIndex.keyOf(b.getTitle()));
+            return c != 0 ? c : Integer.compare(a.getId(), b.getId());
+        });
+        for (Book book : sorted) {
+            diskTitles.insert(book.getTitle(), book.getId());
+        }
+    }
+
+    // Helper method to find a book by title without the tree (lowest ID wins, like the tree)
+    // Time Complexity: O(n)
+    private Book scanForTitle(String title) {
+        String key = TitleCache.keyOf(title);
+        Book found = null;
+        for (int i = 0; i < catalog.size(); i++) {
+            Book book = catalog.get(i);
+            if (TitleCache.keyOf(book.getTitle()).equals(key) && (found == null || book.getId() < found.getId())) {
+                found = book;
+            }
+        }
+        return found;
+    }
+
+    // Helper method for autocomplete with a compact catalog, which keeps no trie: the
+    // titles that start with the prefix are one range of its title order, and the k
+    // most borrowed of them are picked with the trie's borrow counts and ranked the
+    // way the trie ranks them (more borrows, then title ignoring case, then ID)
+    // Time Complexity: O(log n + r * k) for the r titles that start with the prefix
+    private DynamicArray<Book> completeFromTitleOrder(String prefix, int k) {
+        int from = compact.countTitlesBefore(prefix);
+        int to = compact.countTitlesThroughPrefix(prefix);
+        int wanted = Math.max(0, Math.min(k, to - from));
+        int[] ranks = new int[wanted]; // Best so far, best first
+        int[] counts = new int[wanted];
+        int found = 0;
+        for (int rank = from; rank < to && wanted > 0; rank++) {
+            int count = autocomplete.getBorrowCount(compact.idAtTitleRank(rank));
+            if (found == wanted && !completesBefore(rank, count, ranks[wanted - 1], counts[wanted - 1])) {
+                continue;
+            }
+            int at = Math.min(found, wanted - 1); // A full list drops its last one
+            while (at > 0 && completesBefore(rank, count, ranks[at - 1], counts[at - 1])) {
+                ranks[at] = ranks[at - 1];
+                counts[at] = counts[at - 1];
+                at--;
+            }
+            ranks[at] = rank;
+            counts[at] = count;
+            found = Math.min(found + 1, wanted);
+        }
+
+        DynamicArray<Book> result = new DynamicArray<>(Math.max(1, found));
+        for (int i = 0; i < found; i++) {
+            result.add(compact.bookAtTitleRank(ranks[i]));
+        }
+        return result;
+    }
+
+    // Helper method: does the book at title rank a complete before the one at rank b?
+    // Titles are only read on a tie in borrow counts
+    // Time Complexity: O(1), O(title length) on a tie
+    private boolean completesBefore(int rankA, int countA, int rankB, int countB) {
+        if (countA != countB) {
+            return countA > countB;
+        }
+        int c = compact.bookAtTitleRank(rankA).getTitle().compareToIgnoreCase(compact.bookAtTitleRank(rankB).getTitle());
+        if (c != 0) {
+            return c < 0;
+        }
+        return compact.idAtTitleRank(rankA) < compact.idAtTitleRank(rankB);
+    }
+
+    // Helper method to count a borrow (or an undone one) for autocomplete ranking
+    // While a staged startup is still building the trie on another thread it must not
+    // be touched, so the count is kept aside and added once the trie is ready
+    // Time Complexity: O(title length + depth * topK), O(1) while the trie is being built
+    private void recordBorrow(Book book, int delta) {
+        if (!titleIndexesReady) {
+            pendingBorrows.merge(book.getId(), delta, Integer::sum);
+            return;
+        }
+        replayPendingBorrows();
+        autocomplete.recordBorrow(book, delta);
+    }
+
+    // Helper method to add the borrows counted during a staged startup to the trie
+    // (desk thread only, after the title indexes are ready)
+    // Time Complexity: O(1) if there are none, O(b * (title length + depth * topK)) for b books once
+    private void replayPendingBorrows() {
+        if (pendingBorrows.isEmpty()) {
+            return;
+        }
+        for (Integer bookId : pendingBorrows.keySet()) {
+            Book book = findBookById(bookId);
+            int delta = pendingBorrows.get(bookId);
+            if (book != null && delta != 0) {
+                autocomplete.recordBorrow(book, delta);
+            }
+        }
+        pendingBorrows.clear();
+    }
+
+    // Helper method to block until a staged startup has built the title indexes
+    // Time Complexity: O(1) once they are built
+    private void awaitTitleIndexes() {
+        if (titleIndexesReady) {
+            return;
+        }
+        System.out.println("Title indexes are still being built - waiting...");
+        boolean interrupted = false;
+        while (true) {
+            try {
+                titleIndexesBuilt.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true; // Finish waiting, then keep the interrupt for the caller
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Helper method for searches that can also be answered by a scan: true if the
+    // title indexes aren't built yet and the policy says scan (otherwise waits for them)
+    // Time Complexity: O(1) once they are built
+    private boolean scanInsteadOfWaiting() {
+        if (titleIndexesReady) {
+            return false;
+        }
+        if (unbuiltIndexPolicy == UnbuiltIndexPolicy.SCAN) {
+            return true;
+        }
+        awaitTitleIndexes();
+        return false;
+    }
+
+    // Stage 1 of a staged startup: read books.txt into the catalog, ID map and
+    // availability bitmap, then start stage 2 on a background thread
+    // Time Complexity: O(n)
+    private void loadBooksStaged() {
+        File file = new File(BOOKS_FILE);
+        if (!file.exists()) {
+            System.out.println("Books file not found. Starting with empty catalog.");
+            return;
+        }
+
+        long start = System.nanoTime();
+        DynamicArray<Book> loaded = null; // What stage 2 indexes (a compact catalog sorts its own rows)
+        if (compact != null) {
+            compact.suspendTitleOrder();
+        } else {
+            loaded = new DynamicArray<>();
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+
+                Book book = indexBookById(Book.fromFileString(line));
+                loadHoldings(book, Holdings.fromFileString(line));
+                if (loaded != null) {
+                    loaded.add(book);
+                }
+
+                // Make sure we don't reuse book IDs
+                if (book.getId() >= nextBookId) {
+                    nextBookId = book.getId() + 1;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error loading books from file: " + e.getMessage());
+        }
+        loadCirculation();
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Loaded " + catalog.size() + " books from file in " + loadMillis
+                + " ms (search by ID, borrow and return are ready; title indexes are being built).");
+        startTitleIndexBuilder(loaded, loadMillis);
+    }
+
+    // Stage 1 of a staged startup from a mapped catalog file: put every record that
+    // isn't deleted into the catalog, ID map and availability bitmap, then start stage 2
+    // Time Complexity: O(n)
+    private void openMappedStaged() {
+        long start = System.nanoTime();
+        DynamicArray<Book> loaded = new DynamicArray<>(storage.recordCount());
+        for (int i = 0; i < storage.recordCount(); i++) {
+            Book book = storage.get(i);
+            if (book == null) {
+                continue;
+            }
+            book = indexBookById(book);
+            loadHoldings(book, storage.readCopies(book));
+            loaded.add(book);
+            if (book.getId() >= nextBookId) {
+                nextBookId = book.getId() + 1;
+            }
+        }
+        loadCopyCounts(storage.getPath() + COPIES_SUFFIX); // Moves counts from an older file into the records
+        loadCirculation();
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Opened " + catalog.size() + " books from " + storage.getPath() + " in " + loadMillis
+                + " ms (search by ID, borrow and return are ready; title indexes are being built).");
+        startTitleIndexBuilder(loaded, loadMillis);
+    }
+
+    // Helper method to start stage 2 of a staged startup on a background thread
+    // Time Complexity: O(1) here, O(n log n) on the builder thread
+    private void startTitleIndexBuilder(DynamicArray<Book> loaded, long loadMillis) {
+        // The builder only reads its own list of the loaded books, and the desk thread
+        // doesn't touch the title indexes until titleIndexesReady says they are done
+        CountDownLatch built = new CountDownLatch(1);
+        titleIndexesBuilt = built;
+        titleIndexesReady = false;
+        Thread builder = new Thread(() -> buildTitleIndexes(loaded, loadMillis, built), "library-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    // Stage 2 of a staged startup (background thread): build the title tree, author
+    // index and fuzzy index for the books loaded in stage 1 (or, for a compact catalog,
+    // sort its title order and build the fuzzy index - 'books' is null then)
+    // Time Complexity: O(n log n)
+    private void buildTitleIndexes(DynamicArray<Book> books, long loadMillis, CountDownLatch built) {
+        try {
+            long start = System.nanoTime();
+            if (compact != null) {
+                compact.rebuildTitleOrder();
+                long orderMillis = (System.nanoTime() - start) / 1_000_000;
+                long stageStart = System.nanoTime();
+                for (int i = 0; i < compact.size(); i++) {
+                    fuzzyIndex.insert(compact.get(i)); // Only its ID and title are kept
+                }
+                long fuzzyMillis = (System.nanoTime() - stageStart) / 1_000_000;
+                startupReport = String.format("catalog + ID table %d ms, then in the background: title order %d ms, "
+                        + "fuzzy index %d ms", loadMillis, orderMillis, fuzzyMillis);
+                System.out.println("Title order ready in " + orderMillis + " ms, fuzzy index in " + fuzzyMillis + " ms.");
+                return;
+            }
+            titles.insertAll(books);
+            long treeMillis = (System.nanoTime() - start) / 1_000_000;
+
+            long stageStart = System.nanoTime();
+            for (int i = 0; i < books.size(); i++) {
+                addToAuthorIndex(books.get(i));
+            }
+            long authorMillis = (System.nanoTime() - stageStart) / 1_000_000;
+
+            stageStart = System.nanoTime();
+            for (int i = 0; i < books.size(); i++) {
+                fuzzyIndex.insert(books.get(i));
+            }
+            long fuzzyMillis = (System.nanoTime() - stageStart) / 1_000_000;
+
+            stageStart = System.nanoTime();
+            for (int i = 0; i < books.size(); i++) {
+                autocomplete.insert(books.get(i));
+            }
+            long autocompleteMillis = (System.nanoTime() - stageStart) / 1_000_000;
+
+            long totalMillis = (System.nanoTime() - start) / 1_000_000;
+            startupReport = String.format("catalog + ID map %d ms, then in the background: title tree %d ms, "
+                    + "author index %d ms, fuzzy index %d ms, autocomplete %d ms", loadMillis, treeMillis,
+                    authorMillis, fuzzyMillis, autocompleteMillis);
+            System.out.println("Title indexes ready in " + totalMillis + " ms (title tree " + treeMillis
+                    + " ms, author index " + authorMillis + " ms, fuzzy index " + fuzzyMillis
+                    + " ms, autocomplete " + autocompleteMillis + " ms).");
+        } catch (RuntimeException e) {
+            System.out.println("Error building title indexes: " + e.getMessage());
+        } finally {
+            titleIndexesReady = true; // Publishes everything built above to the desk thread
+            built.countDown();
+        }
+    }
+
+    // Load books from the file when we start
+    // Time Complexity: O(n * log n) where n is number of books
+    private void loadBooksFromFile() {
+        File file = new File(BOOKS_FILE);
+        if (!file.exists()) {
+            System.out.println("Books file not found. Starting with empty catalog.");
+            return;
+        }
+
+        if (compact != null) {
+            compact.suspendTitleOrder(); // Sorted once at the end
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+
+                Book book = Book.fromFileString(line);
+                book = indexBook(book);
+                loadHoldings(book, Holdings.fromFileString(line));
+
+                // Make sure we don't reuse book IDs
+                if (book.getId() >= nextBookId) {
+                    nextBookId = book.getId() + 1;
+                }
+            }
+            System.out.println("Loaded " + catalog.size() + " books from file.");
+        } catch (IOException e) {
+            System.out.println("Error loading books from file: " + e.getMessage());
+        } finally {
+            if (compact != null) {
+                compact.rebuildTitleOrder();
+            }
+        }
+        loadCirculation();
+    }
+
+    // Helper method to read back what is out of the catalog after loading it: the
+    // loans, then the copies on the hold shelf
+    // Time Complexity: O(m log m + h) for m loans and h holds
+    private void loadCirculation() {
+        loadLoans();
+        loadHolds();
+    }
+
+    // Helper method to read back the loans saved next to the catalog, so due dates,
+    // overdue lists and reminders carry on after a restart. A loan is only taken if
+    // its book is still here and has a copy out for it (a file from another run
+    // can't make a book look borrowed twice).
+    // Time Complexity: O(m log m) for m loans
+    private void loadLoans() {
+        File file = new File(catalogPath() + LOANS_SUFFIX);
+        if (!file.exists()) {
+            return;
+        }
+        int loaded = 0;
+        int skipped = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+
+                Loan loan = Loan.fromFileString(line);
+                Book book = findBookById(loan.getBookId());
+                if (book == null || loans.get(loan.getBookId(), loan.getUserName()) != null
+                        || copiesOut(book) <= loans.count(loan.getBookId())) {
+                    skipped++;
+                    continue;
+                }
+                loans.add(loan);
+                loaded++;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error loading loans: " + e.getMessage());
+        }
+        System.out.println("Loaded " + loaded + " loans from " + file.getPath()
+                + (skipped > 0 ? " (" + skipped + " skipped: their book is gone or not out)." : "."));
+    }
+
+    // Helper method to put the saved holds back on the hold shelf. A held copy is saved
+    // as not on the shelf (a single copy as not available), so without its hold nobody
+    // could ever borrow it again. Holds that ran out while the library was closed run
+    // out at the next desk operation, and the copy goes back on the shelf.
+    // Time Complexity: O(h) for h holds
+    private void loadHolds() {
+        File file = new File(catalogPath() + HOLDS_SUFFIX);
+        if (!file.exists()) {
+            return;
+        }
+        int loaded = 0;
+        int skipped = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+
+                Hold hold = Hold.fromFileString(line);
+                Book book = findBookById(hold.getBookId());
+                // Only a copy that is out and not on loan can be on the hold shelf
+                if (book == null || findHold(hold.getBookId(), hold.getUserName()) != null
+                        || copiesOut(book) <= loans.count(hold.getBookId())) {
+                    skipped++;
+                    continue;
+                }
+                shelveHold(hold);
+                loaded++;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error loading holds: " + e.getMessage());
+        }
+        System.out.println("Loaded " + loaded + " holds from " + file.getPath()
+                + (skipped > 0 ? " (" + skipped + " skipped: their book is gone or not out)." : "."));
+    }
+
+    // Helper method to save every hold next to the catalog (removed when there are none)
+    // Time Complexity: O(h) for h holds
+    private void saveHolds() {
+        File file = new File(catalogPath() + HOLDS_SUFFIX);
+        if (holds.isEmpty()) {
+            file.delete();
+            return;
+        }
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            for (DynamicArray<Hold> held : holds.values()) {
+                for (Hold hold : held) {
+                    writer.println(hold.toFileString());
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error saving holds: " + e.getMessage());
+        }
+    }
+
+    // Helper method to save every loan next to the catalog (the file is removed when
+    // nothing is on loan, so an old one can't come back)
+    // Time Complexity: O(m) for m loans
+    private void saveLoans() {
+        File file = new File(catalogPath() + LOANS_SUFFIX);
+        DynamicArray<Loan> all = loans.all();
+        if (all.isEmpty()) {
+            file.delete();
+            return;
+        }
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            for (Loan loan : all) {
+                writer.println(loan.toFileString());
+            }
+        } catch (IOException e) {
+            System.out.println("Error saving loans: " + e.getMessage());
+        }
+    }
+
+    // Helper method: the file the catalog is kept in (side files are named after it)
+    // Time Complexity: O(1)
+    private String catalogPath() {
+        return storage != null ? storage.getPath() : BOOKS_FILE;
+    }
+
+    // Helper method to give a loaded book its saved copy counts (null = a single copy)
+    // Time Complexity: O(1) average
+    private void loadHoldings(Book book, Holdings copies) {
+        if (copies == null || copies.getTotal() < 2) {
+            return;
+        }
+        forgetHoldings(holdings.put(book.getId(), copies));
+        multiCopyTitles++;
+        extraCopies.addAndGet(copies.getTotal() - 1);
+        storeCopies(book, copies); // A first run or an older file: the record doesn't have them yet
+        if (book.isAvailable() != copies.getAvailable() > 0) {
+            setAvailable(book, copies.getAvailable() > 0);
+        }
+    }
+
+    // Helper method to take copy counts that were dropped from 'holdings' off the totals
+    // Time Complexity: O(1)
+    private void forgetHoldings(Holdings copies) {
+        if (copies != null) {
+            multiCopyTitles--;
+            extraCopies.addAndGet(-(copies.getTotal() - 1));
+        }
+    }
+
+    // Helper method to read the copy counts an older mapped catalog kept next to it
+    // ("id,total,onShelf" per line). loadHoldings writes them into the records, so
+    // the file is deleted afterwards.
+    // Time Complexity: O(t)
+    private void loadCopyCounts(String path) {
+        File file = new File(path);
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length < 3) {
+                    continue;
+                }
+                Book book = findBookById(Integer.parseInt(parts[0].trim()));
+                if (book != null) {
+                    loadHoldings(book, new Holdings(Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim())));
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error loading copy counts: " + e.getMessage());
+            return; // Keep the file so nothing is lost
+        }
+        storage.flush();
+        file.delete();
+    }
+
+    // Save all books to the file, and the loans and holds next to it
+    // (books.txt.loans, books.txt.holds)
+    // Time Complexity: O(n + m + h) for m loans and h holds
+    public void saveBooksToFile() {
+        long start = System.nanoTime();
+        try {
+            if (diskTitles != null) {
+                diskTitles.flush();
+            }
+            saveLoans();
+            saveHolds();
+            if (storage != null) {
+                // Every change is already in the mapped file - just make sure it's on disk
+                storage.flush();
+                System.out.println("Books saved to " + storage.getPath() + " successfully.");
+                return;
+            }
+            try (PrintWriter writer = new PrintWriter(new FileWriter(BOOKS_FILE))) {
+                for (int i = 0; i < catalog.size(); i++) {
+                    Book book = catalog.get(i);
+                    Holdings copies = holdings.get(book.getId());
+                    writer.println(copies == null ? book.toFileString() : book.toFileString() + "," + copies.toFileString());
+                }
+                System.out.println("Books saved to file successfully.");
+            } catch (IOException e) {
+                System.out.println("Error saving books to file: " + e.getMessage());
+            }
+        } finally {
+            metrics.record(LibraryMetrics.Operation.SAVE_TO_FILE, start);
+        }
+    }
+
+    // How many books do we have?
     // Time Complexity: O(1)
     public int getCatalogSize() {
         return catalog.size();
     }
+
+    // Get told about every add, remove, borrow, return and undo from now on
+    // Time Complexity: O(1) amortized
+    public void addMutationListener(MutationListener listener) {
+        listeners.add(listener);
+    }
+
+    // Apply a change that happened on another library (replication), without messages
+    // Time Complexity: O(1) for status changes, O(n) for removals, O(log n) for adds
+    public void applyReplicated(MutationListener.Type type, Book book) {
+        switch (type) {
+            case ADD:
+                if (findBookById(book.getId()) == null) {
+                    loadBook(book);
+                }
+                break;
+            case REMOVE:
+                unindexBook(book.getId());
+                break;
+            default:
+                // Every other change just sets the availability
+                Book existing = findBookById(book.getId());
+                if (existing != null) {
+                    setAvailable(existing, book.isAvailable());
+                }
+                break;
+        }
+        fireMutation(type, book, null);
+    }
+
+    // Find a book by ID without printing anything (null if missing)
+    // Time Complexity: O(1) average
+    public Book getBookById(int bookId) {
+        return findBookById(bookId);
+    }
+
+    // Find a book by title without printing anything (null if missing)
+    // Time Complexity: O(1) on a cache hit, O(log n) average otherwise
+    public Book getBookByTitle(String title) {
+        return findBookByTitle(title);
+    }
+
+    // All books by an author (ignoring uppercase/lowercase), in order of addition
+    // Time Complexity: O(k) for k books by the author (uses the author index),
+    // O(n) while a staged startup is still building it and the policy is SCAN
+    // (a compact catalog checks its author column, O(n) ints, and needs no stage 2)
+    public DynamicArray<Book> getBooksByAuthor(String author) {
+        if (compact != null) {
+            return compact.findByAuthor(author);
+        }
+        DynamicArray<Book> books = new DynamicArray<>();
+        if (scanInsteadOfWaiting()) {
+            String key = author.toLowerCase();
+            for (int i = 0; i < catalog.size(); i++) {
+                if (catalog.get(i).getAuthor().toLowerCase().equals(key)) {
+                    books.add(catalog.get(i));
+                }
+            }
+            return books;
+        }
+        DynamicArray<Book> indexed = booksByAuthor.get(author.toLowerCase());
+        if (indexed != null) {
+            for (int i = 0; i < indexed.size(); i++) {
+                books.add(indexed.get(i));
+            }
+        }
+        return books;
+    }
+
+    // Search with several conditions at once (ID, title exact/prefix/range, author,
+    // availability, offset, limit); the most selective index is used first
+    // (while a staged startup is still building the title indexes, only the ID map
+    // and availability bitmap are used if the policy is SCAN)
+    // Time Complexity: O(log n) to plan + O(books read from the chosen index)
+    public DynamicArray<Book> query(BookQuery query) {
+        long start = System.nanoTime();
+        try {
+            DynamicArray<Book> results = new DynamicArray<>();
+            queryEngine.run(query, !scanInsteadOfWaiting()).forEach(results::add);
+            return results;
+        } finally {
+            metrics.record(LibraryMetrics.Operation.QUERY, start);
+        }
+    }
+
+    // Same as query(), but lazy: books are only looked at as the stream is used
+    // Don't change the library while the stream is being used
+    // Time Complexity: O(log n) to create
+    public Stream<Book> queryStream(BookQuery query) {
+        return queryEngine.run(query, !scanInsteadOfWaiting());
+    }
+
+    // Describe how a query would run (which index, how many books it reads)
+    // Time Complexity: O(log n)
+    public String explainQuery(BookQuery query) {
+        return queryEngine.explain(query, !scanInsteadOfWaiting());
+    }
+
+    // All books sorted by title
+    // Time Complexity: O(n)
+    public DynamicArray<Book> getBooksAlphabetically() {
+        awaitTitleIndexes();
+        if (diskTitles != null || compact != null) {
+            DynamicArray<Book> books = new DynamicArray<>(Math.max(1, catalog.size()));
+            Iterator<Book> inOrder = compact != null ? compact.titleOrderIterator(0, compact.size())
+                    : diskTitles.books(diskTitles.first(), this::findBookById);
+            inOrder.forEachRemaining(books::add);
+            return books;
+        }
+        return titles.getBooksInOrder();
+    }
+
+    // All books in order of addition (a copy, so callers can't change the catalog)
+    // Time Complexity: O(n)
+    public DynamicArray<Book> getAllBooks() {
+        DynamicArray<Book> books = new DynamicArray<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            books.add(catalog.get(i));
+        }
+        return books;
+    }
+
+    // How many books are available right now
+    // Time Complexity: O(1)
+    public int countAvailable() {
+        return availability.count();
+    }
+
+    // A page of available books in ID order: skip 'offset' of them, return up to 'limit'
+    // select() jumps straight to the first one, so deep pages cost the same as the first
+    // Time Complexity: O(log n + limit)
+    public DynamicArray<Book> listAvailable(int offset, int limit) {
+        long start = System.nanoTime();
+        try {
+            DynamicArray<Book> page = new DynamicArray<>();
+            int bookId = availability.select(offset);
+            while (bookId >= 0 && page.size() < limit) {
+                page.add(findBookById(bookId));
+                bookId = availability.nextAvailable(bookId + 1);
+            }
+            return page;
+        } finally {
+            metrics.record(LibraryMetrics.Operation.LIST_AVAILABLE, start);
+        }
+    }
+
+    // Keep only the books that are available (e.g. after an author or title search)
+    // Time Complexity: O(k) for k books, one bit check each
+    public DynamicArray<Book> filterAvailable(DynamicArray<Book> books) {
+        DynamicArray<Book> result = new DynamicArray<>();
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            if (availability.get(book.getId())) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    // Stream over all books in order of addition (lazy, no copy)
+    // Don't change the library while the stream is being used
+    // Time Complexity: O(1) to create
+    public Stream<Book> streamBooks() {
+        return catalog.stream();
+    }
+
+    // Stream over all books sorted by title (lazy, no copy)
+    // It reads the version of the tree from when it was created, so changes made
+    // while it runs don't show up half-done (with a disk index or a compact catalog:
+    // don't change the library while the stream is being used)
+    // Time Complexity: O(1) to create
+    public Stream<Book> streamBooksAlphabetically() {
+        awaitTitleIndexes();
+        if (compact != null) {
+            return StreamSupport.stream(Spliterators.spliterator(compact.titleOrderIterator(0, compact.size()),
+                    compact.size(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+        }
+        if (diskTitles != null) {
+            Iterator<Book> books = diskTitles.books(diskTitles.first(), this::findBookById);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(books,
+                    Spliterator.ORDERED | Spliterator.NONNULL), false);
+        }
+        return titles.stream();
+    }
+
+    // Available books by an author, sorted by title
+    // The tree is already sorted, so this is just a filter - no sorting or copying
+    // Time Complexity: O(n) when fully consumed, stops early with limit()/findFirst()
+    public Stream<Book> availableBooksByAuthor(String author) {
+        return streamBooksAlphabetically()
+                .filter(book -> availability.get(book.getId()))
+                .filter(book -> book.getAuthor().equalsIgnoreCase(author));
+    }
+
+    // Get the metrics (counters, latencies and gauges) of this library
+    // Time Complexity: O(1)
+    public LibraryMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Get the title cache (for hit/miss/eviction statistics)
+    // Time Complexity: O(1)
+    public TitleCache getTitleCache() {
+        return titleCache;
+    }
+
+    // How many books fit in the catalog array before it has to grow
+    // Time Complexity: O(1)
+    public int getCatalogCapacity() {
+        return catalog.capacity();
+    }
+
+    // How many copies the library owns, all books (at least one per book)
+    // Safe to call from the metrics and JMX threads: it only reads two counters
+    // Time Complexity: O(1)
+    public long getTotalCopies() {
+        return catalog.size() + extraCopies.get();
+    }
+
+    // How many books have more than one copy
+    // Time Complexity: O(1)
+    public int getMultiCopyTitleCount() {
+        return multiCopyTitles;
+    }
+
+    // How many people are waiting in the borrow queue
+    // Time Complexity: O(1)
+    public int getBorrowQueueSize() {
+        return borrowQueue.size() - servedRequests;
+    }
+
+    // How many books are out on loan
+    // Time Complexity: O(1)
+    public int getLoanCount() {
+        return loans.size();
+    }
+
+    // How many loans are overdue right now (not counted as a LIST_OVERDUE operation)
+    // Time Complexity: O(k log k) for k overdue loans
+    public int getOverdueCount() {
+        return loans.overdue(System.currentTimeMillis()).size();
+    }
+
+    // How many actions can be undone
+    // Time Complexity: O(1)
+    public int getActionStackSize() {
+        return actionStack.size();
+    }
+
+    // How tall the title tree is (stays close to log2(n) because it is balanced)
+    // For a compact catalog: how many compares a binary search of its title order takes
+    // Time Complexity: O(1)
+    public int getTitleTreeHeight() {
+        if (compact != null) {
+            return compact.getTitleSearchDepth();
+        }
+        DiskTitleIndex disk = diskTitles;
+        return disk != null ? disk.getHeight() : titles.getHeight();
+    }
+
+    // A frozen copy of the title index for export or backup
+    // Costs nothing up front: it just keeps the current version of the tree
+    // Time Complexity: O(1)
+    public PersistentTitleTree.Snapshot snapshotTitles() {
+        awaitTitleIndexes();
+        if (compact != null) {
+            throw new IllegalStateException("Titles are kept in the catalog's title order, not in a tree");
+        }
+        if (diskTitles != null) {
+            throw new IllegalStateException("Titles are in " + diskTitles.getPath() + ", not in a tree");
+        }
+        return titles.snapshot();
+    }
+
+    // Keep the title index on disk from now on, in a B+tree with a bounded page cache,
+    // instead of in memory. The file is rebuilt from the catalog if it doesn't match
+    // it (other books, or the program stopped without saving), then the in-memory
+    // tree is dropped. Waits for a staged startup to finish first.
+    // Not for a compact catalog, which keeps its own title order instead of a tree.
+    // Time Complexity: O(n) to check the file, O(n log n) if it has to be rebuilt
+    public void useDiskTitleIndex(DiskTitleIndex index) {
+        if (compact != null) {
+            throw new IllegalStateException("The " + layout + " catalog keeps its own title order");
+        }
+        awaitTitleIndexes();
+        long fingerprint = 0;
+        for (int i = 0; i < catalog.size(); i++) {
+            Book book = catalog.get(i);
+            fingerprint += DiskTitleIndex.entryHash(book.getTitle(), book.getId());
+        }
+        if (!index.wasClosedCleanly() || index.getSize() != catalog.size() || index.getFingerprint() != fingerprint) {
+            long start = System.nanoTime();
+            index.rebuild(catalog);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Built title index " + index.getPath() + " for " + index.getSize() + " books in "
+                    + millis + " ms (" + index.getPageCount() + " pages, height " + index.getHeight() + ").");
+        }
+        diskTitles = index;
+        titles.clear();
+        titleCache.clear();
+        queryEngine.useDiskTitleIndex(index);
+    }
+
+    // How the catalog keeps its books
+    // Time Complexity: O(1)
+    public CatalogLayout getCatalogLayout() {
+        return layout;
+    }
+
+    // What each book really costs in a compact catalog, counting every array at its
+    // allocated size (0 for the OBJECTS layout, which isn't measured)
+    // Time Complexity: O(distinct authors)
+    public double getCatalogBytesPerBook() {
+        return compact != null ? compact.bytesPerBook() : 0;
+    }
+
+    // The on-disk title index (null if titles are kept in memory)
+    // Time Complexity: O(1)
+    public DiskTitleIndex getDiskTitleIndex() {
+        return diskTitles;
+    }
+
+    // Are the title tree, author index and fuzzy index built? (false only during a staged startup)
+    // Time Complexity: O(1)
+    public boolean areTitleIndexesReady() {
+        return titleIndexesReady;
+    }
+
+    // How long each stage of a staged startup took (null if it wasn't staged or isn't finished)
+    // Time Complexity: O(1)
+    public String getStartupReport() {
+        return startupReport;
+    }
 }
@@ -0,0 +1,298 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Keeps counters and latency histograms for every Library operation
+// plus gauges that show how big each data structure has grown
+// The library's queue, stack and catalog are only safe to read on the thread that
+// runs its operations, so the gauges are copied there after every operation and the
+// periodic dump and JMX threads only read the copies.
+public class LibraryMetrics implements LibraryMetricsMBean {
+
+    // Every public Library operation we measure
+    public enum Operation {
+        ADD_BOOK,
+        BULK_IMPORT,
+        REMOVE_BOOK,
+        CHANGE_COPIES,
+        SEARCH_BY_ID,
+        SEARCH_BY_TITLE,
+        SEARCH_FUZZY,
+        AUTOCOMPLETE,
+        QUERY,
+        LIST_ALL,
+        LIST_ALPHABETICALLY,
+        LIST_AVAILABLE,
+        REQUEST_BORROW,
+        PROCESS_REQUEST,
+        BORROW_BOOK,
+        RETURN_BOOK,
+        UNDO,
+        RENEW_LOAN,
+        LIST_OVERDUE,
+        DISPLAY_QUEUE,
+        TRENDS,
+        SAVE_TO_FILE
+    }
+
+    private static final String LOG_FILE = "metrics.log";
+
+    private final Library library; // Where the gauges read their values from
+    private final LongAdder[] counters;
+    private final LatencyHistogram[] latencies;
+    private ScheduledExecutorService dumpScheduler;
+
+    // Gauges as of the end of the last operation (written on the library's thread)
+    private volatile int catalogSize;
+    private volatile int catalogCapacity;
+    private volatile int borrowQueueSize;
+    private volatile int actionStackSize;
+    private volatile int titleTreeHeight;
+    private volatile int availableBooks;
+    private volatile int holdCount;
+    private volatile double catalogBytesPerBook; // Only after adds and removes - it adds up every array
+
+    // Create metrics for one library
+    // Time Complexity: O(1) - fixed number of operations
+    public LibraryMetrics(Library library) {
+        this.library = library;
+        Operation[] operations = Operation.values();
+        this.counters = new LongAdder[operations.length];
+        this.latencies = new LatencyHistogram[operations.length];
+        for (int i = 0; i < operations.length; i++) {
+            counters[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    // Record that an operation finished; startNanos comes from System.nanoTime()
+    // Called on the library's thread, so the gauges are copied here too
+    // Time Complexity: O(1), plus the catalog's byte count after adds and removes
+    public void record(Operation operation, long startNanos) {
+        int i = operation.ordinal();
+        counters[i].increment();
+        latencies[i].record(System.nanoTime() - startNanos);
+        refreshGauges(operation == Operation.ADD_BOOK || operation == Operation.BULK_IMPORT
+                || operation == Operation.REMOVE_BOOK);
+    }
+
+    // Copy every gauge from the library (call on the library's thread, e.g. after loading)
+    // Time Complexity: O(1) + the catalog's byte count
+    public void refreshGauges() {
+        refreshGauges(true);
+    }
+
+    // Copy the gauges; the catalog's byte count only if books were added or removed
+    // Time Complexity: O(1), + O(cached decoded titles) for the byte count
+    private void refreshGauges(boolean catalogChanged) {
+        catalogSize = library.getCatalogSize();
+        catalogCapacity = library.getCatalogCapacity();
+        borrowQueueSize = library.getBorrowQueueSize();
+        actionStackSize = library.getActionStackSize();
+        titleTreeHeight = library.getTitleTreeHeight();
+        availableBooks = library.countAvailable();
+        holdCount = library.getHoldCount();
+        if (catalogChanged) {
+            catalogBytesPerBook = library.getCatalogBytesPerBook();
+        }
+    }
+
+    // Get the latency histogram of one operation
+    // Time Complexity: O(1)
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    // How many times an operation has run
+    // Time Complexity: O(1) amortized
+    public long getCount(Operation operation) {
+        return counters[operation.ordinal()].sum();
+    }
+
+    @Override
+    public int getCatalogSize() {
+        return catalogSize;
+    }
+
+    @Override
+    public int getCatalogCapacity() {
+        return catalogCapacity;
+    }
+
+    @Override
+    public int getBorrowQueueSize() {
+        return borrowQueueSize;
+    }
+
+    @Override
+    public int getActionStackSize() {
+        return actionStackSize;
+    }
+
+    @Override
+    public int getLoanCount() {
+        return library.getLoanCount();
+    }
+
+    @Override
+    public int getTitleTreeHeight() {
+        return titleTreeHeight;
+    }
+
+    @Override
+    public long getTitleCacheHits() {
+        return library.getTitleCache().getHits();
+    }
+
+    @Override
+    public long getTitleCacheMisses() {
+        return library.getTitleCache().getMisses();
+    }
+
+    @Override
+    public long getTitleCacheEvictions() {
+        return library.getTitleCache().getEvictions();
+    }
+
+    @Override
+    public long getTotalOperations() {
+        long total = 0;
+        for (LongAdder counter : counters) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getOperationCount(String operation) {
+        return getCount(Operation.valueOf(operation));
+    }
+
+    @Override
+    public double getMeanLatencyMicros(String operation) {
+        return getLatency(Operation.valueOf(operation)).getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public double getPercentileLatencyMicros(String operation, double percentile) {
+        return getLatency(Operation.valueOf(operation)).getPercentileNanos(percentile) / 1000.0;
+    }
+
+    // Build a readable report of all gauges and operations
+    // Time Complexity: O(operations + overdue loans)
+    @Override
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        int catalogSize = getCatalogSize();
+        int treeHeight = getTitleTreeHeight();
+        // A balanced tree of n nodes has height about log2(n) + 1
+        int idealHeight = catalogSize == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(catalogSize);
+
+        sb.append("=== Library Statistics ===\n");
+        sb.append(String.format("Catalog size:        %d (capacity %d)%n", catalogSize, getCatalogCapacity()));
+        if (library.getCatalogLayout() != Library.CatalogLayout.OBJECTS) {
+            sb.append(String.format("Catalog storage:     %s, %.1f bytes per book (everything allocated)%n",
+                    library.getCatalogLayout(), catalogBytesPerBook));
+            sb.append(String.format("Title order height:  %d (binary search of the sorted rows)%n", treeHeight));
+        } else if (library.getDiskTitleIndex() != null) {
+            sb.append(String.format("Title tree height:   %d (B+tree on disk - pages read per search)%n", treeHeight));
+        } else {
+            sb.append(String.format("Title tree height:   %d (balanced would be %d)%n", treeHeight, idealHeight));
+        }
+        if (!library.areTitleIndexesReady()) {
+            sb.append("Title indexes:       still being built (staged startup)\n");
+        } else if (library.getStartupReport() != null) {
+            sb.append(String.format("Startup stages:      %s%n", library.getStartupReport()));
+        }
+        sb.append(String.format("Available books:     %d (plus %d on the hold shelf)%n", availableBooks, holdCount));
+        sb.append(String.format("Copies owned:        %d (%d titles with more than one)%n", library.getTotalCopies(),
+                library.getMultiCopyTitleCount()));
+        sb.append(String.format("Borrow queue size:   %d%n", getBorrowQueueSize()));
+        sb.append(String.format("Undo stack size:     %d%n", getActionStackSize()));
+        sb.append(String.format("Books on loan:       %d (%d overdue)%n", getLoanCount(),
+                library.getOverdueCount()));
+        DiskTitleIndex disk = library.getDiskTitleIndex();
+        if (disk != null) {
+            PageCache pages = disk.getCache();
+            sb.append(String.format("Disk title index:    %d pages, page cache %d/%d, %d hits, %d misses, %d read, %d written%n",
+                    disk.getPageCount(), pages.getCachedPages(), pages.getFrameCount(), pages.getHits(),
+                    pages.getMisses(), pages.getPagesRead(), pages.getPagesWritten()));
+        }
+        TitleCache cache = library.getTitleCache();
+        long lookups = cache.getHits() + cache.getMisses();
+        sb.append(String.format("Title cache:         %d/%d entries, %d hits, %d misses, %d evictions (%.1f%% hit rate)%n",
+                cache.size(), cache.getMaxSize(), cache.getHits(), cache.getMisses(), cache.getEvictions(),
+                lookups == 0 ? 0.0 : 100.0 * cache.getHits() / lookups));
+        sb.append(String.format("%n%-20s %10s %12s %12s %12s%n", "Operation", "Count", "Mean (us)", "p99 (us)",
+                "Max (us)"));
+
+        for (Operation operation : Operation.values()) {
+            long count = getCount(operation);
+            if (count == 0) {
+                continue;
+            }
+            LatencyHistogram histogram = getLatency(operation);
+            sb.append(String.format("%-20s %10d %12.1f %12.1f %12.1f%n", operation, count,
+                    histogram.getMeanNanos() / 1000.0,
+                    histogram.getPercentileNanos(99) / 1000.0,
+                    histogram.getMaxNanos() / 1000.0));
+        }
+        return sb.toString();
+    }
+
+    // Make the metrics visible to JMX tools
+    // Time Complexity: O(1)
+    public void registerMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("library:type=LibraryMetrics,name=" + name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            System.out.println("Could not register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // Append the report to metrics.log every few seconds (background thread)
+    // Time Complexity: O(1) to start
+    public synchronized void startPeriodicDump(long periodSeconds) {
+        if (dumpScheduler != null) {
+            return;
+        }
+        dumpScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "library-metrics-dump");
+            thread.setDaemon(true); // Don't keep the program alive just for this
+            return thread;
+        });
+        dumpScheduler.scheduleAtFixedRate(this::dumpToLog, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    // Stop the periodic dump
+    // Time Complexity: O(1)
+    public synchronized void stopPeriodicDump() {
+        if (dumpScheduler != null) {
+            dumpScheduler.shutdown();
+            dumpScheduler = null;
+        }
+    }
+
+    // Write one report to the log file
+    // Time Complexity: same as report()
+    private void dumpToLog() {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(LOG_FILE, true))) {
+            writer.println("[" + java.time.LocalDateTime.now() + "]");
+            writer.println(report());
+        } catch (IOException e) {
+            System.out.println("Error writing metrics log: " + e.getMessage());
+        }
+    }
+}
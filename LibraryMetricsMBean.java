@@ -0,0 +1,35 @@
+// What the library metrics look like from JMX (jconsole, VisualVM, etc.)
+// Getters show up as attributes, the other methods as operations
+public interface LibraryMetricsMBean {
+    // Gauges - how big the data structures are right now
+    int getCatalogSize();
+
+    int getCatalogCapacity();
+
+    int getBorrowQueueSize();
+
+    int getActionStackSize();
+
+    int getLoanCount();
+
+    int getTitleTreeHeight();
+
+    // Title cache statistics (to help pick a cache size)
+    long getTitleCacheHits();
+
+    long getTitleCacheMisses();
+
+    long getTitleCacheEvictions();
+
+    // Counters and latencies for one operation (e.g. "BORROW_BOOK")
+    long getTotalOperations();
+
+    long getOperationCount(String operation);
+
+    double getMeanLatencyMicros(String operation);
+
+    double getPercentileLatencyMicros(String operation, double percentile);
+
+    // Everything as one readable text block
+    String report();
+}
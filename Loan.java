@@ -0,0 +1,108 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+// One copy of a book that is out on loan: who has it, when they took it and when it is due
+public class Loan {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private int bookId;
+    private String userName;
+    private long borrowedAt; // Milliseconds since 1970 (System.currentTimeMillis)
+    private long dueAt;
+    private boolean reminded; // Have we already sent an overdue reminder?
+    int heapIndex; // Where this loan sits in the LoanHeap (-1 when not in one)
+    Loan nextCopy; // Next loan of another copy of the same book (LoanHeap keeps the list)
+
+    // Create a new loan
+    // Time Complexity: O(1)
+    public Loan(int bookId, String userName, long borrowedAt, long dueAt) {
+        this.bookId = bookId;
+        this.userName = userName;
+        this.borrowedAt = borrowedAt;
+        this.dueAt = dueAt;
+        this.reminded = false;
+        this.heapIndex = -1;
+    }
+
+    // Which book is on loan
+    // Time Complexity: O(1)
+    public int getBookId() {
+        return bookId;
+    }
+
+    // Who has the book
+    // Time Complexity: O(1)
+    public String getUserName() {
+        return userName;
+    }
+
+    // When the book was borrowed
+    // Time Complexity: O(1)
+    public long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    // When the book has to be back
+    // Time Complexity: O(1)
+    public long getDueAt() {
+        return dueAt;
+    }
+
+    // Change the due date (only LoanHeap does this, so the heap stays in order)
+    // Time Complexity: O(1)
+    void setDueAt(long dueAt) {
+        this.dueAt = dueAt;
+        this.reminded = false;
+    }
+
+    // Is the book late at this time?
+    // Time Complexity: O(1)
+    public boolean isOverdue(long now) {
+        return now > dueAt;
+    }
+
+    // Has a reminder been sent for this loan?
+    // Time Complexity: O(1)
+    public boolean isReminded() {
+        return reminded;
+    }
+
+    // Remember that a reminder was sent
+    // Time Complexity: O(1)
+    public void setReminded(boolean reminded) {
+        this.reminded = reminded;
+    }
+
+    // Turn a time into a readable date
+    // Time Complexity: O(1)
+    public static String formatTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).format(DATE_FORMAT);
+    }
+
+    // Format the loan for saving ("bookId,borrowedAt,dueAt,reminded,userName" - the
+    // name goes last so a comma in it doesn't break the line)
+    // Time Complexity: O(1)
+    public String toFileString() {
+        return bookId + "," + borrowedAt + "," + dueAt + "," + reminded + "," + userName;
+    }
+
+    // Create a loan from a line read from the file
+    // Time Complexity: O(length)
+    public static Loan fromFileString(String line) {
+        String[] parts = line.split(",", 5);
+        Loan loan = new Loan(Integer.parseInt(parts[0].trim()), parts[4],
+                Long.parseLong(parts[1].trim()), Long.parseLong(parts[2].trim()));
+        loan.reminded = Boolean.parseBoolean(parts[3].trim());
+        return loan;
+    }
+
+    // Show the loan in a readable way
+    // Time Complexity: O(1)
+    @Override
+    public String toString() {
+        return "Book ID: " + bookId + " | User: " + userName + " | Borrowed: " + formatTime(borrowedAt)
+                + " | Due: " + formatTime(dueAt);
+    }
+}
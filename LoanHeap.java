@@ -0,0 +1,273 @@
+import java.util.HashMap;
+
+// Min-heap of loans ordered by due date (earliest due at the top)
+// Each loan remembers its position in the heap, and a map finds the loans of a book
+// by its ID, so returning or renewing a loan is O(log n) instead of a scan.
+// A book with several copies can be on loan to several people at once: its loans
+// are linked through Loan.nextCopy, one per borrower, so finding one person's loan
+// is O(copies of that book).
+// Overdue loans are found by walking down from the top and stopping at the
+// first loan that is not due yet - O(k log k) for k overdue loans, whatever n is.
+// Methods are synchronized so a reminder thread can read while the desk works.
+public class LoanHeap {
+    private Loan[] heap;
+    private int size;
+    private final HashMap<Integer, Loan> byBookId; // First loan of each book; the rest follow nextCopy
+
+    // Start with no loans
+    // Time Complexity: O(1)
+    public LoanHeap() {
+        this.heap = new Loan[16];
+        this.size = 0;
+        this.byBookId = new HashMap<>();
+    }
+
+    // Add a loan (replaces any loan the same person already has on the same book)
+    // Time Complexity: O(log n + copies)
+    public synchronized void add(Loan loan) {
+        remove(loan.getBookId(), loan.getUserName());
+        if (size == heap.length) {
+            Loan[] bigger = new Loan[heap.length * 2];
+            System.arraycopy(heap, 0, bigger, 0, size);
+            heap = bigger;
+        }
+        heap[size] = loan;
+        loan.heapIndex = size;
+        size++;
+        siftUp(loan.heapIndex);
+        loan.nextCopy = byBookId.get(loan.getBookId());
+        byBookId.put(loan.getBookId(), loan);
+    }
+
+    // Remove one person's loan of a book (null if they don't have it)
+    // Time Complexity: O(log n + copies)
+    public synchronized Loan remove(int bookId, String userName) {
+        Loan previous = null;
+        Loan loan = byBookId.get(bookId);
+        while (loan != null && !loan.getUserName().equalsIgnoreCase(userName)) {
+            previous = loan;
+            loan = loan.nextCopy;
+        }
+        if (loan == null) {
+            return null;
+        }
+        if (previous == null) {
+            if (loan.nextCopy == null) {
+                byBookId.remove(bookId);
+            } else {
+                byBookId.put(bookId, loan.nextCopy);
+            }
+        } else {
+            previous.nextCopy = loan.nextCopy;
+        }
+        loan.nextCopy = null;
+        removeFromHeap(loan);
+        return loan;
+    }
+
+    // Remove every loan of a book (it left the catalog); returns how many there were
+    // Time Complexity: O(copies * log n)
+    public synchronized int removeAll(int bookId) {
+        Loan loan = byBookId.remove(bookId);
+        int removed = 0;
+        while (loan != null) {
+            Loan next = loan.nextCopy;
+            loan.nextCopy = null;
+            removeFromHeap(loan);
+            removed++;
+            loan = next;
+        }
+        return removed;
+    }
+
+    // Get a loan of a book - any copy (null if no copy is on loan)
+    // Time Complexity: O(1) average
+    public synchronized Loan get(int bookId) {
+        return byBookId.get(bookId);
+    }
+
+    // Get one person's loan of a book (null if they don't have it)
+    // Time Complexity: O(copies)
+    public synchronized Loan get(int bookId, String userName) {
+        Loan loan = byBookId.get(bookId);
+        while (loan != null && !loan.getUserName().equalsIgnoreCase(userName)) {
+            loan = loan.nextCopy;
+        }
+        return loan;
+    }
+
+    // How many copies of a book are on loan
+    // Time Complexity: O(copies)
+    public synchronized int count(int bookId) {
+        int count = 0;
+        for (Loan loan = byBookId.get(bookId); loan != null; loan = loan.nextCopy) {
+            count++;
+        }
+        return count;
+    }
+
+    // Give one person's loan a new due date and move it to its new place
+    // Time Complexity: O(log n + copies)
+    public synchronized boolean changeDueDate(int bookId, String userName, long newDueAt) {
+        Loan loan = get(bookId, userName);
+        if (loan == null) {
+            return false;
+        }
+        loan.setDueAt(newDueAt);
+        siftUp(loan.heapIndex);
+        siftDown(loan.heapIndex);
+        return true;
+    }
+
+    // The loan that is due first (null if there are none)
+    // Time Complexity: O(1)
+    public synchronized Loan peek() {
+        return size == 0 ? null : heap[0];
+    }
+
+    // All loans that are overdue at this time, earliest due first
+    // Only visits overdue loans (and their direct children): a second, small binary
+    // min-heap holds the positions that may come next, keyed by due date
+    // Time Complexity: O(k log k) for k overdue loans
+    public synchronized DynamicArray<Loan> overdue(long now) {
+        DynamicArray<Loan> result = new DynamicArray<>();
+        int[] candidates = new int[16]; // Positions in 'heap', earliest due at candidates[0]
+        int count = 0;
+        if (size > 0 && heap[0].isOverdue(now)) {
+            candidates[count++] = 0;
+        }
+        while (count > 0) {
+            // Pop the candidate with the earliest due date
+            int i = candidates[0];
+            candidates[0] = candidates[--count];
+            siftDownCandidate(candidates, count);
+            result.add(heap[i]);
+
+            // Its children are the only new loans that can be overdue next
+            for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                if (heap[child].isOverdue(now)) {
+                    if (count == candidates.length) {
+                        int[] bigger = new int[candidates.length * 2];
+                        System.arraycopy(candidates, 0, bigger, 0, count);
+                        candidates = bigger;
+                    }
+                    candidates[count] = child;
+                    siftUpCandidate(candidates, count++);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Every loan, in no particular order (a copy, so it can be saved while the desk works)
+    // Time Complexity: O(n)
+    public synchronized DynamicArray<Loan> all() {
+        DynamicArray<Loan> loans = new DynamicArray<>(Math.max(1, size));
+        for (int i = 0; i < size; i++) {
+            loans.add(heap[i]);
+        }
+        return loans;
+    }
+
+    // How many copies are on loan (all books)
+    // Time Complexity: O(1)
+    public synchronized int size() {
+        return size;
+    }
+
+    // Take a loan out of the heap array and fix the order around the hole
+    // Time Complexity: O(log n)
+    private void removeFromHeap(Loan loan) {
+        int i = loan.heapIndex;
+        size--;
+        if (i != size) {
+            // Move the last loan into the hole and fix the order around it
+            heap[i] = heap[size];
+            heap[i].heapIndex = i;
+            siftDown(i);
+            siftUp(i);
+        }
+        heap[size] = null;
+        loan.heapIndex = -1;
+    }
+
+    // Move a candidate position up the small heap of overdue()
+    // Time Complexity: O(log k)
+    private void siftUpCandidate(int[] candidates, int c) {
+        int position = candidates[c];
+        while (c > 0) {
+            int parent = (c - 1) / 2;
+            if (heap[candidates[parent]].getDueAt() <= heap[position].getDueAt()) {
+                break;
+            }
+            candidates[c] = candidates[parent];
+            c = parent;
+        }
+        candidates[c] = position;
+    }
+
+    // Move the top candidate of overdue()'s small heap down to its place
+    // Time Complexity: O(log k)
+    private void siftDownCandidate(int[] candidates, int count) {
+        if (count == 0) {
+            return;
+        }
+        int c = 0;
+        int position = candidates[0];
+        while (true) {
+            int child = 2 * c + 1;
+            if (child >= count) {
+                break;
+            }
+            if (child + 1 < count && heap[candidates[child + 1]].getDueAt() < heap[candidates[child]].getDueAt()) {
+                child++;
+            }
+            if (heap[candidates[child]].getDueAt() >= heap[position].getDueAt()) {
+                break;
+            }
+            candidates[c] = candidates[child];
+            c = child;
+        }
+        candidates[c] = position;
+    }
+
+    // Move a loan up while it is due earlier than its parent
+    // Time Complexity: O(log n)
+    private void siftUp(int i) {
+        Loan loan = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heap[parent].getDueAt() <= loan.getDueAt()) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heap[i].heapIndex = i;
+            i = parent;
+        }
+        heap[i] = loan;
+        loan.heapIndex = i;
+    }
+
+    // Move a loan down while a child is due earlier
+    // Time Complexity: O(log n)
+    private void siftDown(int i) {
+        Loan loan = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].getDueAt() < heap[child].getDueAt()) {
+                child++;
+            }
+            if (heap[child].getDueAt() >= loan.getDueAt()) {
+                break;
+            }
+            heap[i] = heap[child];
+            heap[i].heapIndex = i;
+            i = child;
+        }
+        heap[i] = loan;
+        loan.heapIndex = i;
+    }
+}
@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.util.Scanner;
 
 // This is where the program starts
@@ -5,10 +6,95 @@ import java.util.Scanner;
 public class Main {
     private static Library library;
     private static Scanner scanner;
+    private static ChangeEventBus changeEvents; // Only set with --changelog
+    private static ChangeLogWriter changeLog;
 
     public static void main(String[] args) {
-        library = new Library();
+        // Command line options:
+        //   --mapped             keep the catalog in books.dat (memory-mapped) instead of books.txt
+        //   --columnar           keep the catalog in primitive columns, no object per book
+        //   --off-heap           keep the catalog in direct buffers outside the Java heap
+        //   --primary PORT       let read-only replicas follow this library over TCP
+        //   --replica HOST:PORT  run a read-only search terminal that follows a primary
+        //   --changelog          append every change to changes.log (change event stream)
+        //   --disk-index MB      keep the title index in titles.idx with an MB-sized page cache
+        boolean mapped = false;
+        Library.CatalogLayout layout = Library.CatalogLayout.OBJECTS;
+        int diskIndexMegabytes = -1;
+        boolean changelog = false;
+        int primaryPort = -1;
+        String replicaOf = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--mapped")) {
+                mapped = true;
+            } else if (args[i].equals("--columnar")) {
+                layout = Library.CatalogLayout.COLUMNAR;
+            } else if (args[i].equals("--off-heap")) {
+                layout = Library.CatalogLayout.OFF_HEAP;
+            } else if (args[i].equals("--primary") && i + 1 < args.length) {
+                primaryPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--replica") && i + 1 < args.length) {
+                replicaOf = args[++i];
+            } else if (args[i].equals("--changelog")) {
+                changelog = true;
+            } else if (args[i].equals("--disk-index") && i + 1 < args.length) {
+                diskIndexMegabytes = Integer.parseInt(args[++i]);
+            }
+        }
+
         scanner = new Scanner(System.in);
+        if (replicaOf != null) {
+            int colon = replicaOf.lastIndexOf(':');
+            runReplica(replicaOf.substring(0, colon), Integer.parseInt(replicaOf.substring(colon + 1)));
+            scanner.close();
+            return;
+        }
+
+        // Search by ID, borrow and return work right away; title searches scan the
+        // catalog until the title indexes are built in the background
+        if (mapped && layout != Library.CatalogLayout.OBJECTS) {
+            System.out.println("--mapped keeps the books in books.dat; ignoring --" + layout.name().toLowerCase().replace('_', '-') + ".");
+        }
+        if (mapped) {
+            try {
+                library = Library.startStaged(MappedCatalogFile.open("books.dat", MappedCatalogFile.ForcePolicy.EVERY_WRITE),
+                        Library.UnbuiltIndexPolicy.SCAN);
+            } catch (IOException e) {
+                System.out.println("Could not open books.dat: " + e.getMessage());
+                return;
+            }
+        } else {
+            library = Library.startStaged(Library.UnbuiltIndexPolicy.SCAN, layout);
+        }
+        if (diskIndexMegabytes >= 0 && library.getCatalogLayout() != Library.CatalogLayout.OBJECTS) {
+            System.out.println("The " + library.getCatalogLayout() + " catalog keeps its own title order; ignoring --disk-index.");
+        } else if (diskIndexMegabytes >= 0) {
+            try {
+                library.useDiskTitleIndex(DiskTitleIndex.open("titles.idx", diskIndexMegabytes * 1024L * 1024));
+            } catch (IOException e) {
+                System.out.println("Could not open titles.idx, keeping titles in memory: " + e.getMessage());
+            }
+        }
+        library.getMetrics().registerMBean("main");
+        library.getMetrics().startPeriodicDump(60); // Write stats to metrics.log every minute
+        library.startOverdueReminders(3600); // Write overdue reminders to reminders.log every hour
+        if (changelog) {
+            try {
+                changeLog = new ChangeLogWriter("changes.log");
+                changeEvents = new ChangeEventBus();
+                changeEvents.subscribe("changelog", changeLog);
+                library.addMutationListener(changeEvents);
+            } catch (IOException e) {
+                System.out.println("Could not open changes.log: " + e.getMessage());
+            }
+        }
+        if (primaryPort >= 0) {
+            try {
+                new ReplicationPrimary(library).start(primaryPort);
+            } catch (IOException e) {
+                System.out.println("Could not start replication: " + e.getMessage());
+            }
+        }
 
         System.out.println("====================================");
         System.out.println("  LIBRARY MANAGEMENT SYSTEM");
@@ -62,6 +148,39 @@ public class Main {
                     case 12:
                         displayBorrowQueue();
                         break;
+                    case 13:
+                        showStatistics();
+                        break;
+                    case 14:
+                        searchBooksFuzzy();
+                        break;
+                    case 15:
+                        listAvailableBooks();
+                        break;
+                    case 16:
+                        listOverdueLoans();
+                        break;
+                    case 17:
+                        renewLoan();
+                        break;
+                    case 18:
+                        listHolds();
+                        break;
+                    case 19:
+                        importBooks();
+                        break;
+                    case 20:
+                        advancedSearch();
+                        break;
+                    case 21:
+                        autocompleteTitles();
+                        break;
+                    case 22:
+                        library.showTrends();
+                        break;
+                    case 23:
+                        changeCopies();
+                        break;
                     case 0:
                         exitSystem();
                         running = false;
@@ -85,6 +204,59 @@ public class Main {
         scanner.close();
     }
 
+    // Read-only search terminal that follows a primary library
+    private static void runReplica(String host, int port) {
+        ReplicaLibrary replica = new ReplicaLibrary(host, port, 5000);
+        replica.start();
+
+        boolean running = true;
+        while (running) {
+            System.out.println("\n====================================");
+            System.out.println("    LIBRARY SEARCH TERMINAL (REPLICA)");
+            System.out.println("====================================");
+            System.out.println("1. Search book by ID");
+            System.out.println("2. Search book by title");
+            System.out.println("3. List all books");
+            System.out.println("4. List all books alphabetically");
+            System.out.println("5. Replication status");
+            System.out.println("0. Exit");
+            System.out.println("====================================");
+            System.out.print("Enter your choice: ");
+
+            try {
+                int choice = Integer.parseInt(scanner.nextLine());
+                System.out.println();
+                switch (choice) {
+                    case 1:
+                        System.out.print("Enter book ID: ");
+                        replica.searchBookById(Integer.parseInt(scanner.nextLine()));
+                        break;
+                    case 2:
+                        System.out.print("Enter book title: ");
+                        replica.searchBookByTitle(scanner.nextLine());
+                        break;
+                    case 3:
+                        replica.listAllBooks();
+                        break;
+                    case 4:
+                        replica.listBooksAlphabetically();
+                        break;
+                    case 5:
+                        replica.printStatus();
+                        break;
+                    case 0:
+                        replica.stop();
+                        running = false;
+                        break;
+                    default:
+                        System.out.println("Invalid choice. Please try again.");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input. Please enter a number.");
+            }
+        }
+    }
+
     // Show the menu options
     private static void displayMenu() {
         System.out.println("\n====================================");
@@ -93,15 +265,26 @@ public class Main {
         System.out.println("1.  Add a new book");
         System.out.println("2.  Remove a book");
         System.out.println("3.  Search book by ID (Dynamic Array)");
-        System.out.println("4.  Search book by title (BST)");
+        System.out.println("4.  Search book by title (balanced tree)");
         System.out.println("5.  List all books (Dynamic Array)");
-        System.out.println("6.  List all books alphabetically (BST)");
+        System.out.println("6.  List all books alphabetically (balanced tree)");
         System.out.println("7.  Request to borrow a book (Queue)");
         System.out.println("8.  Process borrow requests (Queue)");
         System.out.println("9.  Borrow a book");
         System.out.println("10. Return a book");
         System.out.println("11. Undo last action (Stack)");
         System.out.println("12. Display borrow queue");
+        System.out.println("13. Show library statistics");
+        System.out.println("14. Fuzzy search by title (allows typos)");
+        System.out.println("15. List available books");
+        System.out.println("16. List overdue loans");
+        System.out.println("17. Renew a loan");
+        System.out.println("18. Show hold shelf");
+        System.out.println("19. Import books from a CSV file");
+        System.out.println("20. Advanced search (author, title prefix, availability)");
+        System.out.println("21. Autocomplete titles (most borrowed first)");
+        System.out.println("22. Show trends (most borrowed this week, most wanted)");
+        System.out.println("23. Add or withdraw copies of a book");
         System.out.println("0.  Exit");
         System.out.println("====================================");
         System.out.print("Enter your choice: ");
@@ -120,6 +303,16 @@ public class Main {
         library.addBook(title, author);
     }
 
+    // Add every book listed in a CSV file (Title,Author per line)
+    private static void importBooks() {
+        System.out.println("=== Import Books from CSV ===");
+
+        System.out.print("Enter file name: ");
+        String path = scanner.nextLine().trim();
+
+        library.importBooksFromCsv(path);
+    }
+
     // Ask for book ID and remove it
     private static void removeBook() {
         System.out.println("=== Remove Book ===");
@@ -130,6 +323,23 @@ public class Main {
         library.removeBook(bookId);
     }
 
+    // Add copies of a book (positive number) or withdraw them (negative number)
+    private static void changeCopies() {
+        System.out.println("=== Add or Withdraw Copies ===");
+
+        System.out.print("Enter book ID: ");
+        int bookId = Integer.parseInt(scanner.nextLine());
+
+        System.out.print("Copies to add (negative to withdraw): ");
+        int change = Integer.parseInt(scanner.nextLine().trim());
+
+        if (change < 0) {
+            library.removeCopies(bookId, -change);
+        } else {
+            library.addCopies(bookId, change);
+        }
+    }
+
     // Search for a book using its ID number
     private static void searchBookById() {
         System.out.println("=== Search Book by ID ===");
@@ -150,11 +360,99 @@ public class Main {
         library.searchBookByTitle(title);
     }
 
+    // Search for a title that may be misspelled
+    private static void searchBooksFuzzy() {
+        System.out.println("=== Fuzzy Search by Title ===");
+
+        System.out.print("Enter book title: ");
+        String title = scanner.nextLine();
+
+        System.out.print("Max typos allowed (e.g. 2): ");
+        int maxDistance = Integer.parseInt(scanner.nextLine());
+
+        library.searchBooksFuzzy(title, maxDistance, 10);
+    }
+
+    // Search with several conditions; leave a question blank to skip it
+    private static void advancedSearch() {
+        System.out.println("=== Advanced Search ===");
+        BookQuery query = new BookQuery();
+
+        System.out.print("Author (blank for any): ");
+        String author = scanner.nextLine().trim();
+        if (!author.isEmpty()) {
+            query.authorIs(author);
+        }
+
+        System.out.print("Title starts with (blank for any): ");
+        String prefix = scanner.nextLine().trim();
+        if (!prefix.isEmpty()) {
+            query.titleStartsWith(prefix);
+        }
+
+        System.out.print("Only available books? (y/n, blank for any): ");
+        String available = scanner.nextLine().trim().toLowerCase();
+        if (available.startsWith("y")) {
+            query.available(true);
+        } else if (available.startsWith("n")) {
+            query.available(false);
+        }
+
+        System.out.print("How many results (blank for 20): ");
+        String limit = scanner.nextLine().trim();
+        query.limit(limit.isEmpty() ? 20 : Integer.parseInt(limit));
+
+        System.out.println(library.explainQuery(query));
+        DynamicArray<Book> results = library.query(query);
+        if (results.isEmpty()) {
+            System.out.println("No books match.");
+            return;
+        }
+        for (Book book : results) {
+            System.out.println(book);
+        }
+    }
+
+    // Suggest titles for the first few letters, most borrowed first
+    private static void autocompleteTitles() {
+        System.out.println("=== Autocomplete Titles ===");
+
+        System.out.print("Start of the title: ");
+        String prefix = scanner.nextLine();
+
+        DynamicArray<Book> suggestions = library.autocompleteTitles(prefix, 10);
+        if (suggestions.isEmpty()) {
+            System.out.println("No titles start with '" + prefix + "'.");
+            return;
+        }
+        for (Book book : suggestions) {
+            System.out.println(book + " (borrowed " + library.getBorrowCount(book.getId()) + " times)");
+        }
+    }
+
     // Show all books (in the order they were added)
     private static void listAllBooks() {
         library.listAllBooks();
     }
 
+    // Show available books one page at a time
+    private static void listAvailableBooks() {
+        System.out.println("=== Available Books ===");
+        System.out.println("Available: " + library.countAvailable() + " of " + library.getCatalogSize());
+
+        System.out.print("Start from (0 for the first page): ");
+        int offset = Integer.parseInt(scanner.nextLine());
+
+        DynamicArray<Book> page = library.listAvailable(offset, 20);
+        if (page.isEmpty()) {
+            System.out.println("No available books on this page.");
+            return;
+        }
+        for (Book book : page) {
+            System.out.println(book);
+        }
+    }
+
     // Show all books sorted A to Z by title
     private static void listBooksAlphabetically() {
         library.listBooksAlphabetically();
@@ -205,6 +503,37 @@ public class Main {
         library.returnBook(userName, bookId);
     }
 
+    // Show every loan that is past its due date
+    private static void listOverdueLoans() {
+        System.out.println("=== Overdue Loans ===");
+        DynamicArray<Loan> overdue = library.listOverdue(System.currentTimeMillis());
+        if (overdue.isEmpty()) {
+            System.out.println("No overdue loans.");
+            return;
+        }
+        for (Loan loan : overdue) {
+            System.out.println(loan);
+        }
+    }
+
+    // Give a borrower more time
+    private static void renewLoan() {
+        System.out.println("=== Renew Loan ===");
+
+        System.out.print("Enter your name: ");
+        String userName = scanner.nextLine();
+
+        System.out.print("Enter book ID: ");
+        int bookId = Integer.parseInt(scanner.nextLine());
+
+        library.renewLoan(userName, bookId);
+    }
+
+    // Show returned books being kept for the next person in line
+    private static void listHolds() {
+        library.listHolds();
+    }
+
     // Undo the last thing that happened
     private static void undoLastAction() {
         System.out.println("=== Undo Last Action ===");
@@ -216,10 +545,19 @@ public class Main {
         library.displayBorrowQueue();
     }
 
+    // Show operation counts, latencies and data structure sizes
+    private static void showStatistics() {
+        System.out.println(library.getMetrics().report());
+    }
+
     // Save everything and close the program
     private static void exitSystem() {
         System.out.println("=== Exiting System ===");
         library.saveBooksToFile();
+        if (changeEvents != null) {
+            changeEvents.close(5000); // Let the change log catch up first
+            changeLog.close();
+        }
         System.out.println("Thank you for using the Library Management System!");
         System.out.println("Goodbye!");
     }
@@ -0,0 +1,386 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// Book catalog kept in a memory-mapped file of fixed-size records
+// Changing a book's status is a single byte write into the mapped file, so
+// borrowing or returning no longer rewrites the whole catalog. Opening the file
+// needs no parsing: each record is read straight from the mapping when needed.
+//
+// File layout:
+//   header (64 bytes): magic, version, record size, record count, overflow end
+//   records (128 bytes each):
+//     0  int   id
+//     4  byte  flags (bit 0 = available, bit 1 = deleted)
+//     6  short title length in bytes
+//     8  short author length in bytes
+//     10 int   copies owned (0 = a single copy, the flags say it all)
+//     14 int   copies on the shelf
+//     18 ...   title then author bytes, if they fit in the record;
+//              otherwise a long offset into the overflow file
+// Long titles/authors go to a second file (<name>.ovf).
+// Version 1 files (no copy counts, text at 10) are upgraded in place when opened.
+public class MappedCatalogFile {
+
+    // When changes are forced out to disk
+    public enum ForcePolicy {
+        EVERY_WRITE, // Force the changed record after every write (safest, slowest)
+        ON_FLUSH, // Only when flush() is called (e.g. on exit)
+        OS // Never force - the operating system writes pages back on its own
+    }
+
+    private static final int MAGIC = 0x4C494252; // "LIBR"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 128;
+    private static final int INITIAL_RECORDS = 1024;
+
+    // Header fields
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_RECORD_SIZE = 8;
+    private static final int H_COUNT = 12;
+    private static final int H_OVERFLOW_END = 16;
+
+    // Record fields
+    private static final int R_ID = 0;
+    private static final int R_FLAGS = 4;
+    private static final int R_TITLE_LEN = 6;
+    private static final int R_AUTHOR_LEN = 8;
+    private static final int R_COPIES = 10; // Both counts in one long: owned << 32 | on the shelf
+    private static final int R_TEXT = 18;
+    private static final int INLINE_CAPACITY = RECORD_SIZE - R_TEXT;
+    private static final int V1_TEXT = 10; // Where version 1 records kept their text
+
+    private static final byte AVAILABLE = 1;
+    private static final byte DELETED = 2;
+
+    private final String path;
+    private final ForcePolicy forcePolicy;
+    private final RandomAccessFile recordFile;
+    private final RandomAccessFile overflowFile;
+    private MappedByteBuffer records; // Header + records
+    private MappedByteBuffer overflow; // Long strings
+    private int recordCount;
+
+    // Open (or create) a mapped catalog file
+    // Time Complexity: O(1) - nothing is read until it is needed
+    public static MappedCatalogFile open(String path, ForcePolicy forcePolicy) throws IOException {
+        return new MappedCatalogFile(path, forcePolicy);
+    }
+
+    // Time Complexity: O(1)
+    private MappedCatalogFile(String path, ForcePolicy forcePolicy) throws IOException {
+        this.path = path;
+        this.forcePolicy = forcePolicy;
+        boolean isNew = !new File(path).exists() || new File(path).length() == 0;
+        this.recordFile = new RandomAccessFile(path, "rw");
+        this.overflowFile = new RandomAccessFile(path + ".ovf", "rw");
+
+        long recordBytes = Math.max(recordFile.length(), HEADER_SIZE + (long) INITIAL_RECORDS * RECORD_SIZE);
+        this.records = recordFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, recordBytes);
+        this.overflow = overflowFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(overflowFile.length(), 64 * 1024));
+
+        if (isNew) {
+            records.putInt(H_MAGIC, MAGIC);
+            records.putInt(H_VERSION, VERSION);
+            records.putInt(H_RECORD_SIZE, RECORD_SIZE);
+            records.putInt(H_COUNT, 0);
+            records.putLong(H_OVERFLOW_END, 0);
+            force(0, HEADER_SIZE);
+        } else if (records.getInt(H_MAGIC) != MAGIC || records.getInt(H_RECORD_SIZE) != RECORD_SIZE
+                || records.getInt(H_VERSION) < 1 || records.getInt(H_VERSION) > VERSION) {
+            close();
+            throw new IOException("Not a library catalog file: " + path);
+        }
+        this.recordCount = records.getInt(H_COUNT);
+        if (records.getInt(H_VERSION) == 1) {
+            upgradeFromVersion1();
+        }
+    }
+
+    // Add a book at the end of the file and return a view of it
+    // Time Complexity: O(1) amortized
+    public Book append(Book book) {
+        byte[] title = book.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] author = book.getAuthor().getBytes(StandardCharsets.UTF_8);
+        if (title.length > Short.MAX_VALUE || author.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Title or author is too long");
+        }
+
+        int index = recordCount;
+        long base = recordOffset(index);
+        if (base + RECORD_SIZE > records.capacity()) {
+            records = remap(recordFile, records.capacity() * 2L);
+        }
+
+        int b = (int) base;
+        records.putInt(b + R_ID, book.getId());
+        records.put(b + R_FLAGS, book.isAvailable() ? AVAILABLE : 0);
+        records.putShort(b + R_TITLE_LEN, (short) title.length);
+        records.putShort(b + R_AUTHOR_LEN, (short) author.length);
+        records.putLong(b + R_COPIES, 0); // A single copy until told otherwise
+        if (title.length + author.length <= INLINE_CAPACITY) {
+            records.put(b + R_TEXT, title);
+            records.put(b + R_TEXT + title.length, author);
+        } else {
+            records.putLong(b + R_TEXT, writeOverflow(title, author));
+        }
+
+        // Only count the record once it is fully written
+        recordCount++;
+        records.putInt(H_COUNT, recordCount);
+        force(b, RECORD_SIZE);
+        force(0, HEADER_SIZE);
+        return new MappedBook(index);
+    }
+
+    // Mark a book's record as deleted (the space is not reused)
+    // Time Complexity: O(1)
+    public void remove(Book book) {
+        int index = indexOf(book);
+        if (index < 0) {
+            return;
+        }
+        int b = (int) recordOffset(index);
+        records.put(b + R_FLAGS, (byte) (records.get(b + R_FLAGS) | DELETED));
+        force(b, RECORD_SIZE);
+    }
+
+    // Get a view of one record (null if it was deleted)
+    // Time Complexity: O(1)
+    public Book get(int index) {
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException("Record: " + index + ", Records: " + recordCount);
+        }
+        return isDeleted(index) ? null : new MappedBook(index);
+    }
+
+    // Save a book's copy counts in its record (null = a single copy)
+    // Both counts go in one 8-byte write, next to the availability flag, so the file
+    // never holds counts from two different moments.
+    // Time Complexity: O(1)
+    public void writeCopies(Book book, Holdings copies) {
+        int index = indexOf(book);
+        if (index < 0) {
+            return;
+        }
+        int b = (int) recordOffset(index);
+        long counts = copies == null ? 0 : ((long) copies.getTotal() << 32) | copies.getAvailable();
+        records.putLong(b + R_COPIES, counts);
+        force(b + R_COPIES, 8);
+    }
+
+    // Read the copy counts saved in a book's record (null = a single copy)
+    // Time Complexity: O(1)
+    public Holdings readCopies(Book book) {
+        int index = indexOf(book);
+        if (index < 0) {
+            return null;
+        }
+        long counts = records.getLong((int) recordOffset(index) + R_COPIES);
+        int total = (int) (counts >>> 32);
+        if (total < 2) {
+            return null;
+        }
+        return new Holdings(total, (int) counts);
+    }
+
+    // Number of records, including deleted ones
+    // Time Complexity: O(1)
+    public int recordCount() {
+        return recordCount;
+    }
+
+    // Write every change out to disk now (whatever the policy)
+    // Time Complexity: O(dirty pages)
+    public void flush() {
+        records.force();
+        overflow.force();
+    }
+
+    // Flush and close the files
+    // Time Complexity: O(dirty pages)
+    public void close() throws IOException {
+        flush();
+        recordFile.close();
+        overflowFile.close();
+    }
+
+    // Name of the record file
+    // Time Complexity: O(1)
+    public String getPath() {
+        return path;
+    }
+
+    // Is this book a view of one of our records?
+    // Time Complexity: O(1)
+    public boolean owns(Book book) {
+        return book instanceof MappedBook && ((MappedBook) book).owner() == this;
+    }
+
+    // Which record does this view point at? (-1 if it is not one of ours)
+    // Time Complexity: O(1)
+    private int indexOf(Book book) {
+        return owns(book) ? ((MappedBook) book).index : -1;
+    }
+
+    // Is a record deleted?
+    // Time Complexity: O(1)
+    private boolean isDeleted(int index) {
+        return (records.get((int) recordOffset(index) + R_FLAGS) & DELETED) != 0;
+    }
+
+    // Where a record starts in the file
+    // Time Complexity: O(1)
+    private static long recordOffset(int index) {
+        return HEADER_SIZE + (long) index * RECORD_SIZE;
+    }
+
+    // Rewrite every record in the version 2 layout (copy counts before the text)
+    // A record's text moves 8 bytes along; if it no longer fits, it goes to the
+    // overflow file. Each record stays in its own slot, so the order doesn't matter.
+    // Time Complexity: O(n + total text length), once per file
+    private void upgradeFromVersion1() {
+        for (int i = 0; i < recordCount; i++) {
+            int b = (int) recordOffset(i);
+            int titleLength = records.getShort(b + R_TITLE_LEN);
+            int authorLength = records.getShort(b + R_AUTHOR_LEN);
+            if (titleLength + authorLength > RECORD_SIZE - V1_TEXT) {
+                long position = records.getLong(b + V1_TEXT); // Already in the overflow file
+                records.putLong(b + R_COPIES, 0);
+                records.putLong(b + R_TEXT, position);
+                continue;
+            }
+            byte[] title = new byte[titleLength];
+            byte[] author = new byte[authorLength];
+            records.get(b + V1_TEXT, title);
+            records.get(b + V1_TEXT + titleLength, author);
+            records.putLong(b + R_COPIES, 0);
+            if (titleLength + authorLength <= INLINE_CAPACITY) {
+                records.put(b + R_TEXT, title);
+                records.put(b + R_TEXT + titleLength, author);
+            } else {
+                records.putLong(b + R_TEXT, writeOverflow(title, author));
+            }
+        }
+        records.putInt(H_VERSION, VERSION);
+        flush();
+    }
+
+    // Copy a long title/author pair into the overflow file
+    // Time Complexity: O(length)
+    private long writeOverflow(byte[] title, byte[] author) {
+        long position = records.getLong(H_OVERFLOW_END);
+        long end = position + title.length + author.length;
+        if (end > overflow.capacity()) {
+            overflow = remap(overflowFile, Math.max(overflow.capacity() * 2L, end));
+        }
+        overflow.put((int) position, title);
+        overflow.put((int) position + title.length, author);
+        force(overflow, (int) position, title.length + author.length);
+        records.putLong(H_OVERFLOW_END, end);
+        return position;
+    }
+
+    // Map a bigger part of a file (the file grows to match)
+    // Time Complexity: O(1) - the OS does the work lazily
+    private MappedByteBuffer remap(RandomAccessFile file, long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Catalog file is full");
+        }
+        try {
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not grow catalog file: " + e.getMessage(), e);
+        }
+    }
+
+    // Force part of the record file if the policy says so
+    // Time Complexity: O(1) pages
+    private void force(int offset, int length) {
+        force(records, offset, length);
+    }
+
+    // Force part of a mapping if the policy says so
+    // Time Complexity: O(1) pages
+    private void force(MappedByteBuffer buffer, int offset, int length) {
+        if (forcePolicy == ForcePolicy.EVERY_WRITE) {
+            buffer.force(offset, length);
+        }
+    }
+
+    // Read a string stored inline or in the overflow file
+    // Time Complexity: O(length)
+    private String readText(int index, boolean author) {
+        int b = (int) recordOffset(index);
+        int titleLength = records.getShort(b + R_TITLE_LEN);
+        int authorLength = records.getShort(b + R_AUTHOR_LEN);
+        byte[] bytes = new byte[author ? authorLength : titleLength];
+        int skip = author ? titleLength : 0;
+
+        if (titleLength + authorLength <= INLINE_CAPACITY) {
+            records.get(b + R_TEXT + skip, bytes);
+        } else {
+            long position = records.getLong(b + R_TEXT);
+            overflow.get((int) position + skip, bytes);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // A Book backed by one record of the mapped file
+    // Title and author never change, so they are decoded once and kept
+    private class MappedBook extends Book {
+        private final int index;
+        private String title;
+        private String author;
+
+        MappedBook(int index) {
+            super(0, null, null);
+            this.index = index;
+        }
+
+        private MappedCatalogFile owner() {
+            return MappedCatalogFile.this;
+        }
+
+        @Override
+        public int getId() {
+            return records.getInt((int) recordOffset(index) + R_ID);
+        }
+
+        @Override
+        public String getTitle() {
+            if (title == null) {
+                title = readText(index, false);
+            }
+            return title;
+        }
+
+        @Override
+        public String getAuthor() {
+            if (author == null) {
+                author = readText(index, true);
+            }
+            return author;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return (records.get((int) recordOffset(index) + R_FLAGS) & AVAILABLE) != 0;
+        }
+
+        // One byte written in place (and forced if the policy says so)
+        @Override
+        public void setAvailable(boolean available) {
+            int b = (int) recordOffset(index);
+            byte flags = records.get(b + R_FLAGS);
+            records.put(b + R_FLAGS, (byte) (available ? flags | AVAILABLE : flags & ~AVAILABLE));
+            force(b + R_FLAGS, 1);
+        }
+    }
+}
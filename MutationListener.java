@@ -0,0 +1,20 @@
+// Gets told about every change made to a Library
+// (used by replication and anything else that needs to follow the catalog)
+public interface MutationListener {
+
+    // What kind of change happened
+    enum Type {
+        ADD, // A book was added
+        REMOVE, // A book was removed
+        BORROW, // Someone borrowed a book directly
+        RETURN, // Someone returned a book
+        PROCESS_REQUEST, // A queued request was served (the book is now borrowed)
+        UNDO_BORROW, // A borrow was undone (the book is available again)
+        UNDO_RETURN, // A return was undone (the book is borrowed again)
+        HOLD_EXPIRED, // A hold ran out with nobody else waiting (the book is available again)
+        COPIES // Copies of a book were added or withdrawn (it may be available now, or not)
+    }
+
+    // Called right after the change; book shows the new state, userName may be null
+    void onMutation(Type type, Book book, String userName);
+}
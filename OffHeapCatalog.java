@@ -0,0 +1,488 @@
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.function.IntPredicate;
+
+// Book catalog stored outside the Java heap (direct ByteBuffers)
+// Every book is a fixed-size slot; titles and authors live in a separate string arena.
+// The garbage collector never sees the books, so heap use stays flat no matter how
+// many millions of books we store. Reading a slot gives back a small "view" Book
+// that reads and writes the slot directly instead of copying it.
+// Slots are the rows of CompactCatalog, which keeps the catalog and title order.
+//
+// Slot layout (24 bytes):
+//   0  int  id
+//   4  byte flags (bit 0 = available, bit 1 = deleted)
+//   8  long title position in the arena
+//   16 int  title length in bytes
+//   20 int  author length in bytes (author bytes follow the title bytes)
+//
+// Removed books leave their slot and strings behind until the catalog is compacted
+// (by itself, once there are more removed slots than books). Compacting moves the
+// slots, so a view remembers its book's ID and finds the new slot by ID afterwards;
+// a view of a book that was removed throws IllegalStateException instead of
+// reading whatever book is in its old slot now.
+public class OffHeapCatalog extends CompactCatalog {
+    private static final int SLOT_SIZE = 24;
+    private static final int ID = 0;
+    private static final int FLAGS = 4;
+    private static final int TEXT_POS = 8;
+    private static final int TITLE_LEN = 16;
+    private static final int AUTHOR_LEN = 20;
+
+    private static final byte AVAILABLE = 1;
+    private static final byte DELETED = 2;
+
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int CHUNK_BITS = 24; // Arena chunks are at most 16 MB
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int FIRST_CHUNK_SIZE = 64 * 1024; // Each new chunk is twice the last one
+    private static final int MIN_SLOTS_TO_COMPACT = 1024; // Fewer removed slots than this are left alone
+
+    private ByteBuffer slots; // All the fixed-size records
+    private int slotCount; // Slots used (including deleted ones)
+    private int liveCount; // Slots that are not deleted
+    private int epoch; // Goes up every time slots move (compaction, clear)
+
+    private ByteBuffer[] chunks; // String arena
+    private int chunkCount;
+    private long arenaEnd; // Where the next string goes
+    private long arenaBytes; // Bytes allocated for all chunks
+
+    // ID -> slot lookup table (open addressing, also off-heap)
+    // Each entry is slot + 1 (0 = empty, -1 = removed); the ID is read from the slot
+    private IntBuffer idTable;
+    private int idTableCapacity; // Always a power of two
+    private int idTableUsed; // Entries that are not empty (including removed ones)
+
+    private final HashMap<String, Integer> authorBooks; // Lowercase author -> books (one entry per author)
+
+    // Create an empty off-heap catalog
+    // Time Complexity: O(1)
+    public OffHeapCatalog() {
+        this.authorBooks = new HashMap<>();
+        clearRows();
+    }
+
+    // Number of slots in use, including deleted ones
+    // Time Complexity: O(1)
+    public int slotCount() {
+        return slotCount;
+    }
+
+    // Bytes of native memory in use (slots + arena + ID table)
+    // Time Complexity: O(1)
+    public long offHeapBytes() {
+        return (long) slots.capacity() + arenaBytes + (long) idTableCapacity * 4;
+    }
+
+    // Throw away deleted slots and their strings
+    // Views handed out before this find their book again by ID
+    // Time Complexity: O(n)
+    public void compact() {
+        ByteBuffer oldSlots = slots;
+        ByteBuffer[] oldChunks = chunks;
+        int oldSlotCount = slotCount;
+        int[] oldToNew = new int[oldSlotCount];
+
+        slots = ByteBuffer.allocateDirect(Math.max(INITIAL_SLOTS, liveCount) * SLOT_SIZE);
+        slotCount = 0;
+        chunks = new ByteBuffer[4];
+        chunkCount = 0;
+        arenaEnd = 0;
+        arenaBytes = 0;
+        for (int old = 0; old < oldSlotCount; old++) {
+            int base = old * SLOT_SIZE;
+            byte flags = oldSlots.get(base + FLAGS);
+            if ((flags & DELETED) != 0) {
+                oldToNew[old] = -1;
+                continue;
+            }
+            int titleLength = oldSlots.getInt(base + TITLE_LEN);
+            int authorLength = oldSlots.getInt(base + AUTHOR_LEN);
+            byte[] text = readBytes(oldChunks, oldSlots.getLong(base + TEXT_POS), titleLength + authorLength);
+
+            int slot = slotCount++;
+            int newBase = slot * SLOT_SIZE;
+            slots.putInt(newBase + ID, oldSlots.getInt(base + ID));
+            slots.put(newBase + FLAGS, flags);
+            slots.putLong(newBase + TEXT_POS, writeText(text));
+            slots.putInt(newBase + TITLE_LEN, titleLength);
+            slots.putInt(newBase + AUTHOR_LEN, authorLength);
+            oldToNew[old] = slot;
+        }
+        epoch++;
+        rehash(tableLengthFor(liveCount));
+        renumberRows(oldToNew);
+    }
+
+    // Books by an author (ignoring uppercase/lowercase), from a count kept per author
+    // Time Complexity: O(1) average
+    @Override
+    public int countByAuthor(String author) {
+        return authorBooks.getOrDefault(author.toLowerCase(), 0);
+    }
+
+    // Copy a book into a new slot
+    // Time Complexity: O(1) amortized
+    @Override
+    protected int addRow(Book book) {
+        byte[] titleBytes = book.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] authorBytes = book.getAuthor().getBytes(StandardCharsets.UTF_8);
+        byte[] text = new byte[titleBytes.length + authorBytes.length];
+        System.arraycopy(titleBytes, 0, text, 0, titleBytes.length);
+        System.arraycopy(authorBytes, 0, text, titleBytes.length, authorBytes.length);
+        long textPos = writeText(text);
+
+        if ((slotCount + 1) * SLOT_SIZE > slots.capacity()) {
+            growSlots(slotCount * 2);
+        }
+        int slot = slotCount++;
+        int base = slot * SLOT_SIZE;
+        slots.putInt(base + ID, book.getId());
+        slots.put(base + FLAGS, book.isAvailable() ? AVAILABLE : 0);
+        slots.putLong(base + TEXT_POS, textPos);
+        slots.putInt(base + TITLE_LEN, titleBytes.length);
+        slots.putInt(base + AUTHOR_LEN, authorBytes.length);
+        liveCount++;
+        authorBooks.merge(book.getAuthor().toLowerCase(), 1, Integer::sum);
+        putId(slot);
+        return slot;
+    }
+
+    // Mark a slot deleted; compact once most slots are deleted ones
+    // Time Complexity: O(1) average, O(n) when it compacts (amortized O(1))
+    @Override
+    protected void deleteRow(int row) {
+        int base = row * SLOT_SIZE;
+        slots.put(base + FLAGS, (byte) (slots.get(base + FLAGS) | DELETED));
+        liveCount--;
+        authorBooks.computeIfPresent(authorOf(row).toLowerCase(), (author, count) -> count == 1 ? null : count - 1);
+        removeId(row);
+
+        int deleted = slotCount - liveCount;
+        if (deleted >= MIN_SLOTS_TO_COMPACT && deleted > liveCount) {
+            compact();
+        }
+    }
+
+    // Grow the slots and the ID table once for a batch of books
+    // Time Complexity: O(n) if it has to grow, O(1) otherwise
+    @Override
+    protected void reserveRows(int moreRows) {
+        if ((long) (slotCount + moreRows) * SLOT_SIZE > slots.capacity()) {
+            growSlots(slotCount + moreRows);
+        }
+        if (tableLengthFor(liveCount + moreRows) > idTableCapacity) {
+            rehash(tableLengthFor(liveCount + moreRows));
+        }
+    }
+
+    // Drop every slot and string (the old buffers are freed once nothing uses them)
+    // Time Complexity: O(1)
+    @Override
+    protected void clearRows() {
+        slots = ByteBuffer.allocateDirect(INITIAL_SLOTS * SLOT_SIZE);
+        slotCount = 0;
+        liveCount = 0;
+        epoch++;
+        chunks = new ByteBuffer[4];
+        chunkCount = 0;
+        arenaEnd = 0;
+        arenaBytes = 0;
+        idTableCapacity = tableLengthFor(0);
+        idTable = ByteBuffer.allocateDirect(idTableCapacity * 4).asIntBuffer();
+        idTableUsed = 0;
+        authorBooks.clear();
+    }
+
+    // Find the slot of a book ID (-1 if missing)
+    // Time Complexity: O(1) average
+    @Override
+    protected int rowOfId(int id) {
+        int mask = idTableCapacity - 1;
+        for (int i = hash(id) & mask; idTable.get(i) != 0; i = (i + 1) & mask) {
+            int slot = idTable.get(i) - 1;
+            if (slot >= 0 && slots.getInt(slot * SLOT_SIZE + ID) == id) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected int idOf(int row) {
+        return slots.getInt(row * SLOT_SIZE + ID);
+    }
+
+    @Override
+    protected Book view(int row) {
+        return new SlotBook(row);
+    }
+
+    @Override
+    protected int titleLength(int row) {
+        return slots.getInt(row * SLOT_SIZE + TITLE_LEN);
+    }
+
+    @Override
+    protected byte titleByte(int row, int i) {
+        long position = slots.getLong(row * SLOT_SIZE + TEXT_POS) + i;
+        return chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & (CHUNK_SIZE - 1)));
+    }
+
+    // Time Complexity: O(title length)
+    @Override
+    protected String decodeTitle(int row) {
+        int base = row * SLOT_SIZE;
+        return readText(slots.getLong(base + TEXT_POS), slots.getInt(base + TITLE_LEN));
+    }
+
+    // Author bytes are compared in the arena (ASCII ignoring case); an author with
+    // other characters is decoded and compared as a lowercase String
+    // Time Complexity: O(1) average to create, O(author length) per slot
+    @Override
+    protected IntPredicate authorMatcher(String author) {
+        if (!authorBooks.containsKey(author)) {
+            return null;
+        }
+        byte[] key = author.getBytes(StandardCharsets.UTF_8);
+        return row -> authorMatches(row, author, key);
+    }
+
+    // Slots, arena and ID table at their allocated size, plus the per-author counts
+    // Time Complexity: O(1)
+    @Override
+    protected long rowBytes() {
+        // Each author: the key (String + array) and its map entry with a boxed count
+        return offHeapBytes() + authorBooks.size() * (24L + 16 + 32 + 32 + 16);
+    }
+
+    // Helper method to check one slot's author against a lowercase name
+    // Time Complexity: O(author length)
+    private boolean authorMatches(int row, String author, byte[] key) {
+        int base = row * SLOT_SIZE;
+        long position = slots.getLong(base + TEXT_POS) + slots.getInt(base + TITLE_LEN);
+        int length = slots.getInt(base + AUTHOR_LEN);
+        ByteBuffer chunk = chunks[(int) (position >>> CHUNK_BITS)];
+        int offset = (int) (position & (CHUNK_SIZE - 1));
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int x = chunk.get(offset + i) & 0xFF;
+            int y = key[i] & 0xFF;
+            if (x != y) {
+                int difference = foldedDifference(x, y);
+                if (difference == 0x100) {
+                    return authorOf(row).toLowerCase().equals(author);
+                }
+                if (difference != 0) {
+                    return false;
+                }
+            }
+        }
+        return length == key.length;
+    }
+
+    // Read a slot's author
+    // Time Complexity: O(author length)
+    private String authorOf(int row) {
+        int base = row * SLOT_SIZE;
+        return readText(slots.getLong(base + TEXT_POS) + slots.getInt(base + TITLE_LEN), slots.getInt(base + AUTHOR_LEN));
+    }
+
+    // Make the slot area hold this many slots (copies the old slots)
+    // Time Complexity: O(n)
+    private void growSlots(int minSlots) {
+        long newCapacity = (long) Math.max(minSlots, INITIAL_SLOTS) * SLOT_SIZE;
+        if (newCapacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Off-heap catalog is full");
+        }
+        ByteBuffer bigger = ByteBuffer.allocateDirect((int) newCapacity);
+        ByteBuffer old = slots.duplicate();
+        old.clear();
+        bigger.put(old);
+        slots = bigger;
+    }
+
+    // Copy a title and author (back to back) into the arena, never across chunks
+    // Time Complexity: O(length of the strings)
+    private long writeText(byte[] text) {
+        if (text.length > CHUNK_SIZE) {
+            throw new IllegalArgumentException("Title and author are too long");
+        }
+
+        int offset = (int) (arenaEnd & (CHUNK_SIZE - 1));
+        if (chunkCount == 0 || offset + text.length > chunks[chunkCount - 1].capacity()) {
+            // Start a fresh chunk, twice as big as the last one (up to 16 MB)
+            if (chunkCount == chunks.length) {
+                ByteBuffer[] more = new ByteBuffer[chunks.length * 2];
+                System.arraycopy(chunks, 0, more, 0, chunkCount);
+                chunks = more;
+            }
+            int size = chunkCount == 0 ? FIRST_CHUNK_SIZE : Math.min(CHUNK_SIZE, chunks[chunkCount - 1].capacity() * 2);
+            chunks[chunkCount] = ByteBuffer.allocateDirect(Math.max(size, text.length));
+            arenaBytes += chunks[chunkCount].capacity();
+            arenaEnd = (long) chunkCount << CHUNK_BITS;
+            chunkCount++;
+            offset = 0;
+        }
+
+        long position = arenaEnd;
+        chunks[chunkCount - 1].put(offset, text);
+        arenaEnd += text.length;
+        return position;
+    }
+
+    // Read a string from the arena
+    // Time Complexity: O(length)
+    private String readText(long position, int length) {
+        return new String(readBytes(chunks, position, length), StandardCharsets.UTF_8);
+    }
+
+    // Read bytes from an arena
+    // Time Complexity: O(length)
+    private static byte[] readBytes(ByteBuffer[] arena, long position, int length) {
+        byte[] bytes = new byte[length];
+        arena[(int) (position >>> CHUNK_BITS)].get((int) (position & (CHUNK_SIZE - 1)), bytes);
+        return bytes;
+    }
+
+    // Where does this ID start probing in the table?
+    // Time Complexity: O(1)
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Remember which slot an ID is in (a later slot with the same ID wins, like a map)
+    // Time Complexity: O(1) amortized
+    private void putId(int slot) {
+        int existing = rowOfId(idOf(slot));
+        if (existing >= 0) {
+            removeId(existing);
+        }
+        if ((idTableUsed + 1) * 2 > idTableCapacity) {
+            rehash(tableLengthFor(liveCount)); // Only grows if most entries are real, not removed
+        }
+        int mask = idTableCapacity - 1;
+        int i = hash(idOf(slot)) & mask;
+        while (idTable.get(i) > 0) {
+            i = (i + 1) & mask;
+        }
+        if (idTable.get(i) == 0) {
+            idTableUsed++; // Reusing a removed entry doesn't use up a new one
+        }
+        idTable.put(i, slot + 1);
+    }
+
+    // Forget a slot in the ID table (the entry is marked removed so probing keeps working)
+    // Time Complexity: O(1) average
+    private void removeId(int slot) {
+        int mask = idTableCapacity - 1;
+        for (int i = hash(idOf(slot)) & mask; idTable.get(i) != 0; i = (i + 1) & mask) {
+            if (idTable.get(i) == slot + 1) {
+                idTable.put(i, -1);
+                return;
+            }
+        }
+    }
+
+    // Helper method: a power-of-two table length that is at most a quarter full with n IDs
+    // Time Complexity: O(1)
+    private static int tableLengthFor(int n) {
+        return Math.max(2048, Integer.highestOneBit(Math.max(1, n) * 4 - 1) << 1);
+    }
+
+    // Build a new ID table of the given size from the live slots (drops removed entries)
+    // Time Complexity: O(slots + table length)
+    private void rehash(int newCapacity) {
+        idTableCapacity = newCapacity;
+        idTable = ByteBuffer.allocateDirect(newCapacity * 4).asIntBuffer();
+        idTableUsed = 0;
+        int mask = newCapacity - 1;
+        for (int slot = slotCount - 1; slot >= 0; slot--) { // Last first, so a later slot with the same ID wins
+            if ((slots.get(slot * SLOT_SIZE + FLAGS) & DELETED) == 0 && rowOfId(idOf(slot)) < 0) {
+                int i = hash(idOf(slot)) & mask;
+                while (idTable.get(i) != 0) {
+                    i = (i + 1) & mask;
+                }
+                idTable.put(i, slot + 1);
+                idTableUsed++;
+            }
+        }
+    }
+
+    // A Book that reads its data straight from an off-heap slot
+    // Only the ID and the slot number live on the heap; if the slots were moved since,
+    // the slot is looked up again by ID
+    private class SlotBook extends Book {
+        private final int id;
+        private long located; // Epoch in the high half, slot in the low half (read and written at once)
+
+        SlotBook(int slot) {
+            super(0, null, null);
+            this.id = idOf(slot);
+            this.located = (long) epoch << 32 | slot;
+        }
+
+        // The slot this book is in now
+        // Time Complexity: O(1), O(1) average once after the slots moved
+        private int slot() {
+            long at = located;
+            if ((int) (at >>> 32) == epoch) {
+                return (int) at;
+            }
+            int found = rowOfId(id);
+            if (found < 0) {
+                throw new IllegalStateException("Book " + id + " was removed from the off-heap catalog");
+            }
+            located = (long) epoch << 32 | found;
+            return found;
+        }
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        // Decoded once, then read from the catalog's cache of recent titles
+        @Override
+        public String getTitle() {
+            return titleOf(slot());
+        }
+
+        @Override
+        public String getAuthor() {
+            return authorOf(slot());
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return (slots.get(slot() * SLOT_SIZE + FLAGS) & AVAILABLE) != 0;
+        }
+
+        // Writes straight into the slot, so the change is seen by every view
+        @Override
+        public void setAvailable(boolean available) {
+            int base = slot() * SLOT_SIZE;
+            byte flags = slots.get(base + FLAGS);
+            slots.put(base + FLAGS, (byte) (available ? flags | AVAILABLE : flags & ~AVAILABLE));
+        }
+
+        // Two views of the same book in the same catalog are the same book
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof SlotBook && ((SlotBook) other).id == id && owner() == ((SlotBook) other).owner();
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        private OffHeapCatalog owner() {
+            return OffHeapCatalog.this;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps a fixed number of a file's pages in memory (the buffer pool of DiskTitleIndex)
+// Every page is read into one of 'frameCount' frames, so memory use never grows past
+// frameCount * pageSize however big the file gets. A page must be pinned while it is
+// being used and unpinned afterwards; only unpinned pages can be thrown out.
+// Frames are reused with the CLOCK algorithm: a hand goes round the frames, gives
+// every recently used page a second chance and takes the first one that has none.
+// Pages read by a sequential scan come in without that second chance (and a few at a
+// time, with one read), so a long listing doesn't push the upper tree levels out.
+// Not thread-safe - the owner locks around it.
+public class PageCache {
+    private final FileChannel channel;
+    private final int pageSize;
+    private final ByteBuffer[] frames;
+    private final int[] pageOf; // Page held by each frame, -1 if the frame is free
+    private final int[] pins; // How many users a frame has right now
+    private final boolean[] dirty; // Changed since it was read - write it back before reuse
+    private final boolean[] referenced; // Used since the hand last passed (the second chance)
+    private final HashMap<Integer, Integer> frameOf; // Page -> frame
+    private final ByteBuffer readAheadBuffer;
+    private int hand;
+
+    // Statistics are read by the metrics threads, so they are thread-safe
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder pagesRead;
+    private final LongAdder pagesWritten;
+    private volatile int cachedPages; // frameOf.size()
+
+    private static final int MAX_READ_AHEAD = 8; // Pages read at once by a sequential scan
+
+    // Cache pages of a file in frameCount frames
+    // Time Complexity: O(frameCount) - the frames are allocated up front
+    public PageCache(FileChannel channel, int pageSize, int frameCount) {
+        if (frameCount < 4) {
+            throw new IllegalArgumentException("A page cache needs at least 4 frames: " + frameCount);
+        }
+        this.channel = channel;
+        this.pageSize = pageSize;
+        this.frames = new ByteBuffer[frameCount];
+        this.pageOf = new int[frameCount];
+        this.pins = new int[frameCount];
+        this.dirty = new boolean[frameCount];
+        this.referenced = new boolean[frameCount];
+        this.frameOf = new HashMap<>(frameCount * 2);
+        for (int f = 0; f < frameCount; f++) {
+            frames[f] = ByteBuffer.allocateDirect(pageSize);
+            pageOf[f] = -1;
+        }
+        this.readAheadBuffer = ByteBuffer.allocateDirect(pageSize * MAX_READ_AHEAD);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.pagesRead = new LongAdder();
+        this.pagesWritten = new LongAdder();
+    }
+
+    // Get a page to read or change (read from the file if it isn't cached)
+    // Call unpin() when done
+    // Time Complexity: O(1) on a hit, one page read on a miss
+    public ByteBuffer pin(int pageNo) {
+        Integer frame = frameOf.get(pageNo);
+        if (frame != null) {
+            hits.increment();
+            referenced[frame] = true;
+            pins[frame]++;
+            return frames[frame];
+        }
+        misses.increment();
+        int f = load(pageNo);
+        referenced[f] = true;
+        pins[f]++;
+        return frames[f];
+    }
+
+    // Get a page for a sequential scan: on a miss the next few pages are read too, in one
+    // read, and none of them get a second chance (a scan doesn't come back to them)
+    // Time Complexity: O(1) on a hit, one read of up to 8 pages on a miss
+    public ByteBuffer pinForScan(int pageNo) {
+        Integer frame = frameOf.get(pageNo);
+        if (frame != null) {
+            hits.increment();
+            pins[frame]++;
+            return frames[frame];
+        }
+        misses.increment();
+
+        int count = (int) Math.min(MAX_READ_AHEAD, Math.max(1, fileSize() / pageSize - pageNo));
+        count = Math.min(count, Math.max(1, frames.length / 4)); // Leave most of the cache alone
+        boolean[] cached = new boolean[count]; // A cached copy may be newer than the file
+        for (int i = 1; i < count; i++) {
+            cached[i] = frameOf.containsKey(pageNo + i);
+        }
+        readAheadBuffer.clear().limit(count * pageSize);
+        readFully(readAheadBuffer, (long) pageNo * pageSize);
+        pagesRead.add(count);
+
+        int target = install(pageNo, 0);
+        pins[target]++; // So installing the pages after it can't throw it out again
+        for (int i = 1; i < count; i++) {
+            if (!cached[i] && !frameOf.containsKey(pageNo + i)) {
+                install(pageNo + i, i * pageSize);
+            }
+        }
+        return frames[target];
+    }
+
+    // Get a frame for a brand new page (zeroed, nothing is read); call unpin() when done
+    // Time Complexity: O(1) amortized
+    public ByteBuffer pinNew(int pageNo) {
+        Integer frame = frameOf.get(pageNo);
+        int f = frame != null ? frame : claimFrame(pageNo);
+        ByteBuffer page = frames[f];
+        for (int i = 0; i < pageSize; i += 8) {
+            page.putLong(i, 0L);
+        }
+        dirty[f] = true;
+        referenced[f] = true;
+        pins[f]++;
+        return page;
+    }
+
+    // Done with a page; changed = true if it was written to
+    // Time Complexity: O(1)
+    public void unpin(int pageNo, boolean changed) {
+        Integer frame = frameOf.get(pageNo);
+        if (frame == null || pins[frame] == 0) {
+            throw new IllegalStateException("Page " + pageNo + " is not pinned");
+        }
+        pins[frame]--;
+        if (changed) {
+            dirty[frame] = true;
+        }
+    }
+
+    // Write every changed page back to the file
+    // Time Complexity: O(frameCount)
+    public void flush() {
+        for (int f = 0; f < frames.length; f++) {
+            if (pageOf[f] >= 0 && dirty[f]) {
+                writeBack(f);
+            }
+        }
+    }
+
+    // Forget every cached page without writing anything (the file is being rebuilt)
+    // Time Complexity: O(frameCount)
+    public void discardAll() {
+        for (int f = 0; f < frames.length; f++) {
+            if (pins[f] > 0) {
+                throw new IllegalStateException("Page " + pageOf[f] + " is still pinned");
+            }
+            pageOf[f] = -1;
+            dirty[f] = false;
+            referenced[f] = false;
+        }
+        frameOf.clear();
+        cachedPages = 0;
+    }
+
+    // Statistics (to help pick the memory budget)
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    public int getCachedPages() {
+        return cachedPages;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getPagesRead() {
+        return pagesRead.sum();
+    }
+
+    public long getPagesWritten() {
+        return pagesWritten.sum();
+    }
+
+    // Helper method to read one page into a free (or freed) frame
+    // Time Complexity: one page read
+    private int load(int pageNo) {
+        int f = claimFrame(pageNo);
+        ByteBuffer page = frames[f];
+        page.clear();
+        readFully(page, (long) pageNo * pageSize);
+        pagesRead.increment();
+        return f;
+    }
+
+    // Helper method to copy one page out of the read-ahead buffer into a frame
+    // Time Complexity: O(pageSize)
+    private int install(int pageNo, int offset) {
+        int f = claimFrame(pageNo);
+        ByteBuffer page = frames[f];
+        ByteBuffer source = readAheadBuffer.duplicate();
+        source.limit(offset + pageSize).position(offset);
+        page.clear();
+        page.put(source);
+        return f;
+    }
+
+    // Helper method to pick a frame for a page (CLOCK) and register it there
+    // Time Complexity: O(1) amortized - each pass of the hand clears the bits it passes
+    private int claimFrame(int pageNo) {
+        for (int step = 0; step < 2 * frames.length; step++) {
+            int f = hand;
+            hand = (hand + 1) % frames.length;
+            if (pageOf[f] < 0) {
+                return take(f, pageNo);
+            }
+            if (pins[f] > 0) {
+                continue;
+            }
+            if (referenced[f]) {
+                referenced[f] = false; // Second chance used up
+                continue;
+            }
+            if (dirty[f]) {
+                writeBack(f);
+            }
+            frameOf.remove(pageOf[f]);
+            evictions.increment();
+            return take(f, pageNo);
+        }
+        throw new IllegalStateException("All " + frames.length + " pages of the page cache are in use");
+    }
+
+    // Helper method to give a frame to a page
+    // Time Complexity: O(1)
+    private int take(int f, int pageNo) {
+        pageOf[f] = pageNo;
+        pins[f] = 0;
+        dirty[f] = false;
+        referenced[f] = false;
+        frameOf.put(pageNo, f);
+        cachedPages = frameOf.size();
+        return f;
+    }
+
+    // Helper method to write a frame back to its page in the file
+    // Time Complexity: one page write
+    private void writeBack(int f) {
+        ByteBuffer source = frames[f].duplicate();
+        source.clear();
+        long position = (long) pageOf[f] * pageSize;
+        try {
+            while (source.hasRemaining()) {
+                position += channel.write(source, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write page " + pageOf[f], e);
+        }
+        dirty[f] = false;
+        pagesWritten.increment();
+    }
+
+    // Helper method to fill a buffer from the file; past the end of the file it is zeroed
+    // Time Complexity: O(buffer size)
+    private void readFully(ByteBuffer buffer, long position) {
+        try {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read page at " + position, e);
+        }
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    // Helper method to get the file's length
+    // Time Complexity: O(1)
+    private long fileSize() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,564 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Balanced (AVL) tree of books by title whose nodes never change once built
+// A change copies only the nodes on the path from the root to the changed spot
+// (O(log n) new nodes) and then swaps the root in one atomic step. Everyone still
+// holding the old root keeps a complete, consistent version of the tree, so:
+//   - readers never lock and never see a half-finished insert or delete
+//   - a snapshot (for export, backup, a long listing) is just the current root
+// Books are ordered by lowercase title, then by ID for books with the same title,
+// so every book has its own spot and a delete removes exactly the book asked for.
+public class PersistentTitleTree implements Iterable<Book> {
+
+    // A node is never changed after it is built
+    private static final class Node {
+        final String key; // Lowercase title (worked out once, not on every compare)
+        final Book book;
+        final Node left; // Books with earlier titles
+        final Node right; // Books with later titles
+        final int height;
+        final int size; // Books in this subtree (lets us find the k-th book)
+
+        Node(String key, Book book, Node left, Node right) {
+            this.key = key;
+            this.book = book;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    private final AtomicReference<Node> root; // The current version
+
+    // Start with an empty tree
+    // Time Complexity: O(1)
+    public PersistentTitleTree() {
+        this.root = new AtomicReference<>(null);
+    }
+
+    // Add a book to the tree
+    // Time Complexity: O(log n) - copies one path
+    public void insert(Book book) {
+        String key = keyOf(book.getTitle());
+        Node current;
+        Node updated;
+        do {
+            current = root.get();
+            updated = insert(current, key, book);
+        } while (!root.compareAndSet(current, updated));
+    }
+
+    // Add many books at once
+    // A big batch is sorted, merged with the current version and built into a new
+    // balanced tree in one go; a small batch is just inserted one by one
+    // Time Complexity: O(m log m + n) for a big batch, O(m log n) for a small one
+    public void insertAll(DynamicArray<Book> books) {
+        int m = books.size();
+        Node current = root.get();
+        int log2 = 32 - Integer.numberOfLeadingZeros(Math.max(size(current) + m, 1));
+        if ((long) m * log2 < size(current)) {
+            for (int i = 0; i < m; i++) {
+                insert(books.get(i));
+            }
+            return;
+        }
+
+        // Sort the batch once (keys worked out once per book)
+        Node[] batch = new Node[m];
+        for (int i = 0; i < m; i++) {
+            Book book = books.get(i);
+            batch[i] = new Node(keyOf(book.getTitle()), book, null, null);
+        }
+        Arrays.sort(batch, (a, b) -> compare(a.key, a.book.getId(), b));
+
+        Node updated;
+        do {
+            current = root.get();
+            // Merge with the current version's books (already in order)
+            Node[] merged = new Node[size(current) + m];
+            int next = 0;
+            int b = 0;
+            for (Iterator<Node> it = new NodeIterator(current, 0); it.hasNext();) {
+                Node node = it.next();
+                while (b < m && compare(batch[b].key, batch[b].book.getId(), node) < 0) {
+                    merged[next++] = batch[b++];
+                }
+                merged[next++] = node;
+            }
+            while (b < m) {
+                merged[next++] = batch[b++];
+            }
+            updated = buildBalanced(merged, 0, merged.length - 1);
+        } while (!root.compareAndSet(current, updated));
+    }
+
+    // Remove exactly this book (matched by title and ID)
+    // Time Complexity: O(log n) - copies one path
+    public boolean delete(Book book) {
+        String key = keyOf(book.getTitle());
+        Node current;
+        Node updated;
+        do {
+            current = root.get();
+            updated = delete(current, key, book.getId());
+            if (updated == current) {
+                return false; // Not in the tree
+            }
+        } while (!root.compareAndSet(current, updated));
+        return true;
+    }
+
+    // Remove the first book with this title
+    // Time Complexity: O(log n)
+    public boolean delete(String title) {
+        while (true) {
+            Node current = root.get();
+            Node found = first(current, keyOf(title));
+            if (found == null) {
+                return false;
+            }
+            Node updated = delete(current, found.key, found.book.getId());
+            if (root.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    // Remove all books from the tree
+    // Time Complexity: O(1)
+    public void clear() {
+        root.set(null);
+    }
+
+    // The current version - it will never change, whatever happens to the tree later
+    // Time Complexity: O(1)
+    public Snapshot snapshot() {
+        return new Snapshot(root.get());
+    }
+
+    // Find a book by its title (ignoring uppercase/lowercase)
+    // Time Complexity: O(log n)
+    public Book search(String title) {
+        return snapshot().search(title);
+    }
+
+    // Show all books in alphabetical order
+    // Time Complexity: O(n)
+    public void inOrderTraversal() {
+        snapshot().inOrderTraversal();
+    }
+
+    // Get all books as an array in alphabetical order
+    // Time Complexity: O(n)
+    public DynamicArray<Book> getBooksInOrder() {
+        return snapshot().getBooksInOrder();
+    }
+
+    // How many books are in the tree
+    // Time Complexity: O(1)
+    public int getSize() {
+        return size(root.get());
+    }
+
+    // How many levels the tree has (0 for an empty tree) - stays within 1.44 log2(n)
+    // Time Complexity: O(1)
+    public int getHeight() {
+        return height(root.get());
+    }
+
+    // Go through the current version in alphabetical order
+    // Time Complexity: O(1) to create, O(n) to walk
+    @Override
+    public Iterator<Book> iterator() {
+        return snapshot().iterator();
+    }
+
+    // Spliterator over the current version (splits exactly by position)
+    // Time Complexity: O(1) to create
+    @Override
+    public Spliterator<Book> spliterator() {
+        return snapshot().spliterator();
+    }
+
+    // Stream over the current version in alphabetical order
+    // Time Complexity: O(1) to create
+    public Stream<Book> stream() {
+        return snapshot().stream();
+    }
+
+    // Parallel stream over the current version in alphabetical order
+    // Time Complexity: O(1) to create
+    public Stream<Book> parallelStream() {
+        return snapshot().parallelStream();
+    }
+
+    // One version of the tree, frozen - safe to read from any thread, no locks
+    public static final class Snapshot implements Iterable<Book> {
+        private final Node root;
+
+        private Snapshot(Node root) {
+            this.root = root;
+        }
+
+        // Find a book by its title (the one with the lowest ID if there are several)
+        // Time Complexity: O(log n)
+        public Book search(String title) {
+            Node found = first(root, keyOf(title));
+            return found == null ? null : found.book;
+        }
+
+        // The k-th book in alphabetical order (k starts at 0), or null
+        // Time Complexity: O(log n)
+        public Book get(int k) {
+            Node node = root;
+            while (node != null) {
+                int leftSize = size(node.left);
+                if (k < leftSize) {
+                    node = node.left;
+                } else if (k == leftSize) {
+                    return node.book;
+                } else {
+                    k -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+            return null;
+        }
+
+        // How many books have a title that sorts before this one
+        // Time Complexity: O(log n)
+        public int countBefore(String title) {
+            return rank(root, keyOf(title), false);
+        }
+
+        // How many books have a title that sorts before this one or is equal to it
+        // Time Complexity: O(log n)
+        public int countUpTo(String title) {
+            return rank(root, keyOf(title), true);
+        }
+
+        // Go through the books in alphabetical order, starting at a position
+        // (countBefore/countUpTo give the position of a title)
+        // Time Complexity: O(log n) to start, O(1) amortized per book
+        public Iterator<Book> iteratorFrom(int position) {
+            NodeIterator nodes = new NodeIterator(root, Math.max(0, position));
+            return new Iterator<Book>() {
+                @Override
+                public boolean hasNext() {
+                    return nodes.hasNext();
+                }
+
+                @Override
+                public Book next() {
+                    return nodes.next().book;
+                }
+            };
+        }
+
+        // How many books are in this version
+        // Time Complexity: O(1)
+        public int getSize() {
+            return size(root);
+        }
+
+        // How many levels this version has
+        // Time Complexity: O(1)
+        public int getHeight() {
+            return height(root);
+        }
+
+        // Show all books in alphabetical order
+        // Time Complexity: O(n)
+        public void inOrderTraversal() {
+            if (root == null) {
+                System.out.println("No books in the catalog.");
+                return;
+            }
+            System.out.println("\n=== Books in Alphabetical Order ===");
+            for (Book book : this) {
+                System.out.println(book);
+            }
+        }
+
+        // Get all books as an array in alphabetical order
+        // Time Complexity: O(n)
+        public DynamicArray<Book> getBooksInOrder() {
+            DynamicArray<Book> books = new DynamicArray<>(Math.max(1, getSize()));
+            for (Book book : this) {
+                books.add(book);
+            }
+            return books;
+        }
+
+        // Go through the books in alphabetical order
+        // Time Complexity: O(1) amortized per book, O(log n) memory
+        @Override
+        public Iterator<Book> iterator() {
+            return iteratorFrom(0);
+        }
+
+        // Spliterator that splits by position, so both halves are exactly sized
+        // Time Complexity: O(1) to create
+        @Override
+        public Spliterator<Book> spliterator() {
+            return new RankSpliterator(root, 0, size(root));
+        }
+
+        // Stream over the books in alphabetical order
+        // Time Complexity: O(1) to create
+        public Stream<Book> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        // Parallel stream over the books in alphabetical order
+        // Time Complexity: O(1) to create
+        public Stream<Book> parallelStream() {
+            return StreamSupport.stream(spliterator(), true);
+        }
+    }
+
+    // Walks nodes in order, starting at a given position
+    // Uses our own stack instead of recursion, so it can stop at any point
+    private static final class NodeIterator implements Iterator<Node> {
+        private final Stack<Node> path = new Stack<>();
+
+        // Time Complexity: O(log n) to find the starting position
+        NodeIterator(Node node, int start) {
+            while (node != null) {
+                int leftSize = size(node.left);
+                if (start < leftSize) {
+                    path.push(node); // Come back to it after the left side
+                    node = node.left;
+                } else if (start == leftSize) {
+                    path.push(node);
+                    return;
+                } else {
+                    start -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public Node next() {
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node node = path.pop();
+            for (Node child = node.right; child != null; child = child.left) {
+                path.push(child);
+            }
+            return node;
+        }
+    }
+
+    // Covers books at positions [from, to) of one version
+    private static final class RankSpliterator implements Spliterator<Book> {
+        private final Node root;
+        private int from;
+        private final int to;
+        private NodeIterator nodes; // Created on the first book
+
+        RankSpliterator(Node root, int from, int to) {
+            this.root = root;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Book> action) {
+            if (from >= to) {
+                return false;
+            }
+            if (nodes == null) {
+                nodes = new NodeIterator(root, from);
+            }
+            from++;
+            action.accept(nodes.next().book);
+            return true;
+        }
+
+        @Override
+        public Spliterator<Book> trySplit() {
+            int middle = (from + to) >>> 1;
+            if (middle - from < 1 || to - middle < 1) {
+                return null;
+            }
+            Spliterator<Book> prefix = new RankSpliterator(root, from, middle);
+            from = middle;
+            nodes = null; // Find the new starting position when we continue
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    // Lowercase title used for ordering
+    // Time Complexity: O(length)
+    private static String keyOf(String title) {
+        return title.toLowerCase();
+    }
+
+    // Compare (key, id) with a node: title first, then ID
+    // Time Complexity: O(length)
+    private static int compare(String key, int id, Node node) {
+        int comparison = key.compareTo(node.key);
+        return comparison != 0 ? comparison : Integer.compare(id, node.book.getId());
+    }
+
+    // Time Complexity: O(1)
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    // Time Complexity: O(1)
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    // How many nodes have a key below (or, if inclusive, up to) this key
+    // Time Complexity: O(log n)
+    private static int rank(Node node, String key, boolean inclusive) {
+        int count = 0;
+        while (node != null) {
+            int comparison = key.compareTo(node.key);
+            if (comparison < 0 || (comparison == 0 && !inclusive)) {
+                node = node.left;
+            } else {
+                count += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return count;
+    }
+
+    // The first node (lowest ID) with this key, or null
+    // Time Complexity: O(log n)
+    private static Node first(Node node, String key) {
+        Node found = null;
+        while (node != null) {
+            int comparison = key.compareTo(node.key);
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                node = node.right;
+            } else {
+                found = node; // Keep looking left for a lower ID
+                node = node.left;
+            }
+        }
+        return found;
+    }
+
+    // New version of a subtree with the book added
+    // Time Complexity: O(log n)
+    private static Node insert(Node node, String key, Book book) {
+        if (node == null) {
+            return new Node(key, book, null, null);
+        }
+        if (compare(key, book.getId(), node) < 0) {
+            return balance(node.key, node.book, insert(node.left, key, book), node.right);
+        }
+        return balance(node.key, node.book, node.left, insert(node.right, key, book));
+    }
+
+    // New version of a subtree without the book (the same subtree if it isn't there)
+    // Time Complexity: O(log n)
+    private static Node delete(Node node, String key, int id) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compare(key, id, node);
+        if (comparison < 0) {
+            Node left = delete(node.left, key, id);
+            return left == node.left ? node : balance(node.key, node.book, left, node.right);
+        }
+        if (comparison > 0) {
+            Node right = delete(node.right, key, id);
+            return right == node.right ? node : balance(node.key, node.book, node.left, right);
+        }
+
+        // Found it
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        // Two children: the next book in order takes its place
+        Node next = node.right;
+        while (next.left != null) {
+            next = next.left;
+        }
+        return balance(next.key, next.book, node.left, deleteFirst(node.right));
+    }
+
+    // New version of a subtree without its first node
+    // Time Complexity: O(log n)
+    private static Node deleteFirst(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.book, deleteFirst(node.left), node.right);
+    }
+
+    // Build a node, rotating if one side has become two levels taller
+    // Time Complexity: O(1)
+    private static Node balance(String key, Book book, Node left, Node right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                // Single rotation to the right
+                return new Node(left.key, left.book, left.left, new Node(key, book, left.right, right));
+            }
+            // Left child leans right: double rotation
+            Node middle = left.right;
+            return new Node(middle.key, middle.book, new Node(left.key, left.book, left.left, middle.left),
+                    new Node(key, book, middle.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                // Single rotation to the left
+                return new Node(right.key, right.book, new Node(key, book, left, right.left), right.right);
+            }
+            // Right child leans left: double rotation
+            Node middle = right.left;
+            return new Node(middle.key, middle.book, new Node(key, book, left, middle.left),
+                    new Node(right.key, right.book, middle.right, right.right));
+        }
+        return new Node(key, book, left, right);
+    }
+
+    // Build a balanced tree from nodes in order (their children are ignored)
+    // Time Complexity: O(n)
+    private static Node buildBalanced(Node[] nodes, int low, int high) {
+        if (low > high) {
+            return null;
+        }
+        int middle = (low + high) >>> 1;
+        return new Node(nodes[middle].key, nodes[middle].book, buildBalanced(nodes, low, middle - 1),
+                buildBalanced(nodes, middle + 1, high));
+    }
+}
@@ -0,0 +1,257 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Runs a BookQuery against the library's indexes
+// The planner looks at every index that can answer one of the conditions, asks it
+// how many books it would return, and starts from the smallest one:
+//   ID map          - id condition, 0 or 1 book
+//   title tree      - title exact/prefix/range, exact count from two rank lookups
+//   disk title index - instead of the tree when the titles are on disk; counted by
+//                     walking the range, but never further than the best plan so far
+//   title order     - instead of the tree for a compact catalog, same two rank lookups
+//   author index    - author condition, size of that author's list
+//   author column   - instead of the author index for a compact catalog: its count
+//                     per author, then a scan of the rows that stops at the last match
+//   availability    - "available" condition, count kept by the bitmap
+//   catalog scan    - when nothing else applies
+// The other conditions are checked lazily on each book the index hands over, and
+// the work stops as soon as offset + limit matches have been found.
+// While a staged startup is still building the title tree and author index, the
+// planner can be told to leave them out and use only the ID map and the bitmap.
+public class QueryEngine {
+    private final DynamicArray<Book> catalog;
+    private final CompactCatalog compact; // The catalog, if it answers title and author lookups itself
+    private final IntFunction<Book> booksById;
+    private final PersistentTitleTree titles;
+    private final HashMap<String, DynamicArray<Book>> booksByAuthor;
+    private final AvailabilityIndex availability;
+    private DiskTitleIndex diskTitles; // If set, title conditions use it instead of the tree
+
+    // What the planner picked
+    private static final class Plan {
+        final String index;
+        final long estimate; // Books the index will hand over
+        final Iterator<Book> source;
+
+        Plan(String index, long estimate, Iterator<Book> source) {
+            this.index = index;
+            this.estimate = estimate;
+            this.source = source;
+        }
+    }
+
+    // Use the indexes of one library (they are read, never changed); booksById finds a
+    // book by ID (null if missing)
+    // Time Complexity: O(1)
+    public QueryEngine(DynamicArray<Book> catalog, IntFunction<Book> booksById, PersistentTitleTree titles,
+            HashMap<String, DynamicArray<Book>> booksByAuthor, AvailabilityIndex availability) {
+        this.catalog = catalog;
+        this.compact = catalog instanceof CompactCatalog ? (CompactCatalog) catalog : null;
+        this.booksById = booksById;
+        this.titles = titles;
+        this.booksByAuthor = booksByAuthor;
+        this.availability = availability;
+    }
+
+    // Answer title conditions from an on-disk index from now on (null goes back to the tree)
+    // Time Complexity: O(1)
+    public void useDiskTitleIndex(DiskTitleIndex diskTitles) {
+        this.diskTitles = diskTitles;
+    }
+
+    // Matching books as a lazy stream (nothing is read until the stream is used)
+    // Don't change the library while the stream is being used
+    // Time Complexity: O(log n) to plan + O(books read from the chosen index)
+    public Stream<Book> run(BookQuery query) {
+        return run(query, true);
+    }
+
+    // Same as run(), optionally without the title tree and author index (not built yet)
+    // Time Complexity: O(log n) to plan + O(books read from the chosen index)
+    public Stream<Book> run(BookQuery query, boolean useTitleIndexes) {
+        Plan plan = plan(query, useTitleIndexes);
+        Stream<Book> books = StreamSupport.stream(
+                Spliterators.spliterator(plan.source, plan.estimate, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        return books.filter(query::matches).skip(query.getOffset()).limit(query.getLimit());
+    }
+
+    // Describe which index would be used and what is checked afterwards
+    // Time Complexity: O(log n)
+    public String explain(BookQuery query) {
+        return explain(query, true);
+    }
+
+    // Same as explain(), optionally without the title tree and author index
+    // Time Complexity: O(log n)
+    public String explain(BookQuery query, boolean useTitleIndexes) {
+        Plan plan = plan(query, useTitleIndexes);
+        StringBuilder sb = new StringBuilder();
+        sb.append(query).append('\n');
+        sb.append("Plan: ").append(plan.index).append(" (about ").append(plan.estimate).append(" books)");
+        sb.append(", then check every condition on each book");
+        if (query.getOffset() > 0) {
+            sb.append(", skip ").append(query.getOffset());
+        }
+        if (query.getLimit() != Integer.MAX_VALUE) {
+            sb.append(", stop after ").append(query.getLimit());
+        }
+        return sb.toString();
+    }
+
+    // Pick the index that hands over the fewest books
+    // Time Complexity: O(log n)
+    private Plan plan(BookQuery query, boolean useTitleIndexes) {
+        Plan best = new Plan("catalog scan", catalog.size(), catalog.iterator());
+
+        if (query.getId() != null) {
+            Book book = booksById.apply(query.getId());
+            best = cheaper(best, new Plan("ID map", book == null ? 0 : 1, single(book)));
+        }
+
+        if (useTitleIndexes && query.hasTitleCondition() && diskTitles != null) {
+            // No ranks on disk: count the range, but stop once it can't win anyway
+            String low = query.getTitleLow() == null ? "" : query.getTitleLow();
+            DiskTitleIndex.Cursor counter = diskTitles.seek(low);
+            long count = 0;
+            while (count < best.estimate && counter.next() && inTitleRange(counter.key(), query)) {
+                count++;
+            }
+            if (count < best.estimate) {
+                Iterator<Book> books = diskTitles.books(diskTitles.seek(low), booksById);
+                best = new Plan("disk title index range", count, limited(books, (int) count));
+            }
+        } else if (useTitleIndexes && query.hasTitleCondition() && compact != null) {
+            // Same rank lookups, by binary search of the sorted rows
+            int from = 0;
+            if (query.getTitleLow() != null) {
+                from = query.isTitleLowInclusive() ? compact.countTitlesBefore(query.getTitleLow())
+                        : compact.countTitlesUpTo(query.getTitleLow());
+            }
+            int to = compact.size();
+            if (query.getTitleHigh() != null) {
+                to = query.isTitleHighInclusive() ? compact.countTitlesUpTo(query.getTitleHigh())
+                        : compact.countTitlesBefore(query.getTitleHigh());
+            }
+            int count = Math.max(0, to - from);
+            best = cheaper(best, new Plan("title order range", count, compact.titleOrderIterator(from, from + count)));
+        } else if (useTitleIndexes && query.hasTitleCondition()) {
+            // Two rank lookups give the exact number of books in the title range
+            PersistentTitleTree.Snapshot snapshot = titles.snapshot();
+            int from = 0;
+            if (query.getTitleLow() != null) {
+                from = query.isTitleLowInclusive() ? snapshot.countBefore(query.getTitleLow())
+                        : snapshot.countUpTo(query.getTitleLow());
+            }
+            int to = snapshot.getSize();
+            if (query.getTitleHigh() != null) {
+                to = query.isTitleHighInclusive() ? snapshot.countUpTo(query.getTitleHigh())
+                        : snapshot.countBefore(query.getTitleHigh());
+            }
+            int count = Math.max(0, to - from);
+            best = cheaper(best, new Plan("title tree range", count, limited(snapshot.iteratorFrom(from), count)));
+        }
+
+        if (compact != null && query.getAuthor() != null) {
+            // Kept from the first book on, so it doesn't wait for a staged startup
+            int count = compact.countByAuthor(query.getAuthor());
+            if (count >= 0) {
+                best = cheaper(best, new Plan("author column", count, limited(compact.booksByAuthor(query.getAuthor()), count)));
+            }
+        } else if (useTitleIndexes && query.getAuthor() != null) {
+            DynamicArray<Book> books = booksByAuthor.get(query.getAuthor());
+            best = cheaper(best, new Plan("author index", books == null ? 0 : books.size(),
+                    books == null ? single(null) : books.iterator()));
+        }
+
+        if (Boolean.TRUE.equals(query.getAvailable())) {
+            best = cheaper(best, new Plan("availability bitmap", availability.count(), availableBooks()));
+        }
+        return best;
+    }
+
+    // Can a disk index key still be inside the query's title range? Keys are cut
+    // titles, so this lets a few extra through - matches() checks every book anyway
+    // Time Complexity: O(key length)
+    private static boolean inTitleRange(String key, BookQuery query) {
+        return query.getTitleHigh() == null || key.compareTo(DiskTitleIndex.keyOf(query.getTitleHigh())) <= 0;
+    }
+
+    // The plan with the smaller estimate (the earlier one on a tie)
+    // Time Complexity: O(1)
+    private static Plan cheaper(Plan a, Plan b) {
+        return b.estimate < a.estimate ? b : a;
+    }
+
+    // Zero or one book
+    // Time Complexity: O(1)
+    private static Iterator<Book> single(Book book) {
+        return new Iterator<Book>() {
+            private boolean done = book == null;
+
+            @Override
+            public boolean hasNext() {
+                return !done;
+            }
+
+            @Override
+            public Book next() {
+                if (done) {
+                    throw new NoSuchElementException();
+                }
+                done = true;
+                return book;
+            }
+        };
+    }
+
+    // At most count books from an iterator
+    // Time Complexity: O(1) per book
+    private static Iterator<Book> limited(Iterator<Book> books, int count) {
+        return new Iterator<Book>() {
+            private int left = count;
+
+            @Override
+            public boolean hasNext() {
+                return left > 0 && books.hasNext();
+            }
+
+            @Override
+            public Book next() {
+                if (left <= 0) {
+                    throw new NoSuchElementException();
+                }
+                left--;
+                return books.next();
+            }
+        };
+    }
+
+    // Available books in ID order, straight from the bitmap
+    // Time Complexity: O(1) amortized per book (skips 64 IDs at a time)
+    private Iterator<Book> availableBooks() {
+        return new Iterator<Book>() {
+            private int nextId = availability.nextAvailable(0);
+
+            @Override
+            public boolean hasNext() {
+                return nextId >= 0;
+            }
+
+            @Override
+            public Book next() {
+                if (nextId < 0) {
+                    throw new NoSuchElementException();
+                }
+                Book book = booksById.apply(nextId);
+                nextId = availability.nextAvailable(nextId + 1);
+                return book;
+            }
+        };
+    }
+}
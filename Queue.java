@@ -1,88 +1,204 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 // Queue - like waiting in line at a store
 // First person in line is the first person served (FIFO)
-public class Queue<T> {
-    
-    // Each item in the queue is a Node
-    private class Node {
-        T data;
-        Node next;
-        
-        Node(T data) {
-            this.data = data;
-            this.next = null;
-        }
-    }
-    
-    private Node front; // Start of the line
-    private Node rear; // End of the line
+// The line is kept in a ring buffer: an array whose size is a power of two, with
+// 'head' pointing at the front. Items go in at (head + size) and wrap around the end,
+// so enqueue and dequeue never allocate anything - the array only grows (doubles)
+// when it is full.
+public class Queue<T> implements Iterable<T> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] items; // The ring; its length is always a power of two
+    private int head; // Position of the front of the line
     private int size;
-    
+    private final int initialCapacity; // Smallest the ring is ever made again
+    private final boolean shrinkWhenIdle; // Give memory back when the line empties
+
     // Create an empty queue
     // Time Complexity: O(1)
     public Queue() {
-        this.front = null;
-        this.rear = null;
+        this(INITIAL_CAPACITY, false);
+    }
+
+    // Create an empty queue with room for 'initialCapacity' items (rounded up to a
+    // power of two). If shrinkWhenIdle is set, a ring that grew much bigger than that
+    // is swapped for a small one whenever the line becomes empty, so a burst of
+    // requests doesn't keep its memory forever.
+    // Time Complexity: O(capacity)
+    public Queue(int initialCapacity, boolean shrinkWhenIdle) {
+        this.initialCapacity = powerOfTwoAtLeast(Math.max(1, initialCapacity));
+        this.items = new Object[this.initialCapacity];
+        this.head = 0;
         this.size = 0;
+        this.shrinkWhenIdle = shrinkWhenIdle;
     }
-    
+
     // Add someone to the back of the line
-    // Time Complexity: O(1)
+    // Time Complexity: O(1) amortized, O(n) when the ring has to grow
     public void enqueue(T data) {
-        Node newNode = new Node(data);
-        
-        if (isEmpty()) {
-            // First person in line
-            front = newNode;
-            rear = newNode;
-        } else {
-            // Add to the back
-            rear.next = newNode;
-            rear = newNode;
-        }
-        
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        items[(head + size) & (items.length - 1)] = data;
+        size++;
+    }
+
+    // Put someone back at the front of the line (they were already served once)
+    // Time Complexity: O(1) amortized, O(n) when the ring has to grow
+    public void enqueueFront(T data) {
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        head = (head - 1) & (items.length - 1);
+        items[head] = data;
         size++;
     }
-    
+
+    // Add everyone to the back of the line, in order
+    // Grows the ring at most once when the count is known up front
+    // Time Complexity: O(k) amortized for k items
+    public void enqueueAll(Iterable<? extends T> data) {
+        if (data instanceof DynamicArray) {
+            ensureCapacity(size + ((DynamicArray<?>) data).size());
+        } else if (data instanceof Queue) {
+            ensureCapacity(size + ((Queue<?>) data).size());
+        }
+        for (T item : data) {
+            enqueue(item);
+        }
+    }
+
     // Remove and serve the person at the front
     // Time Complexity: O(1)
+    @SuppressWarnings("unchecked")
     public T dequeue() {
         if (isEmpty()) {
             throw new RuntimeException("Queue is empty. Cannot dequeue.");
         }
-        
-        T data = front.data;
-        front = front.next;
+
+        T data = (T) items[head];
+        items[head] = null; // Don't keep served items alive
+        head = (head + 1) & (items.length - 1);
         size--;
-        
-        // If queue is now empty
-        if (front == null) {
-            rear = null;
+
+        if (size == 0) {
+            becameIdle();
         }
-        
+
         return data;
     }
-    
+
+    // Serve everyone in the line into 'sink', front first; returns how many
+    // Time Complexity: O(n)
+    public int drainTo(DynamicArray<? super T> sink) {
+        return drainTo(sink, size);
+    }
+
+    // Serve up to maxItems people from the front into 'sink'; returns how many
+    // Time Complexity: O(min(n, maxItems))
+    @SuppressWarnings("unchecked")
+    public int drainTo(DynamicArray<? super T> sink, int maxItems) {
+        int count = Math.min(size, Math.max(0, maxItems));
+        sink.ensureCapacity(sink.size() + count);
+        int mask = items.length - 1;
+        for (int i = 0; i < count; i++) {
+            sink.add((T) items[head]);
+            items[head] = null;
+            head = (head + 1) & mask;
+        }
+        size -= count;
+        if (count > 0 && size == 0) {
+            becameIdle();
+        }
+        return count;
+    }
+
+    // Take the first item (closest to the front) that matches out of the line
+    // Returns null if nothing matches; everyone else keeps their place
+    // Time Complexity: O(n) - the items on the shorter side of the gap move over by one
+    @SuppressWarnings("unchecked")
+    public T removeFirstMatch(Predicate<? super T> matcher) {
+        int mask = items.length - 1;
+        for (int i = 0; i < size; i++) {
+            T data = (T) items[(head + i) & mask];
+            if (matcher.test(data)) {
+                if (i < size / 2) {
+                    // Closer to the front: move the ones ahead of it back one place
+                    for (int j = i; j > 0; j--) {
+                        items[(head + j) & mask] = items[(head + j - 1) & mask];
+                    }
+                    items[head] = null;
+                    head = (head + 1) & mask;
+                } else {
+                    // Closer to the back: move the ones behind it forward one place
+                    for (int j = i; j < size - 1; j++) {
+                        items[(head + j) & mask] = items[(head + j + 1) & mask];
+                    }
+                    items[(head + size - 1) & mask] = null;
+                }
+                size--;
+                if (size == 0) {
+                    becameIdle();
+                }
+                return data;
+            }
+        }
+        return null;
+    }
+
     // Look at who's at the front without removing them
     // Time Complexity: O(1)
+    @SuppressWarnings("unchecked")
     public T peek() {
         if (isEmpty()) {
             throw new RuntimeException("Queue is empty. Cannot peek.");
         }
-        return front.data;
+        return (T) items[head];
     }
-    
+
     // Is the queue empty?
     // Time Complexity: O(1)
     public boolean isEmpty() {
-        return front == null;
+        return size == 0;
     }
-    
+
     // How many people in line?
     // Time Complexity: O(1)
     public int size() {
         return size;
     }
-    
+
+    // How many people fit before the ring has to grow?
+    // Time Complexity: O(1)
+    public int capacity() {
+        return items.length;
+    }
+
+    // Make sure the ring can hold at least minCapacity items without growing again
+    // Time Complexity: O(n) if it has to grow, O(1) otherwise
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > items.length) {
+            resize(powerOfTwoAtLeast(minCapacity));
+        }
+    }
+
+    // Give back memory the line doesn't need: the ring becomes the smallest power of
+    // two that still holds everyone (never below the starting size)
+    // Time Complexity: O(n)
+    public void trimToSize() {
+        int target = Math.max(initialCapacity, powerOfTwoAtLeast(Math.max(1, size)));
+        if (target < items.length) {
+            resize(target);
+        }
+    }
+
     // Show everyone in the queue
     // Time Complexity: O(n)
     public void display() {
@@ -90,22 +206,130 @@ public class Queue<T> {
             System.out.println("Queue is empty.");
             return;
         }
-        
-        Node current = front;
+
         System.out.print("Front -> ");
-        while (current != null) {
-            System.out.print(current.data + " -> ");
-            current = current.next;
+        for (T item : this) {
+            System.out.print(item + " -> ");
         }
         System.out.println("Rear");
     }
-    
+
     // Clear the entire queue
-    // Time Complexity: O(1)
+    // Time Complexity: O(n) - the slots are emptied so the ring can be reused
     public void clear() {
-        front = null;
-        rear = null;
+        int mask = items.length - 1;
+        for (int i = 0; i < size; i++) {
+            items[(head + i) & mask] = null;
+        }
+        head = 0;
         size = 0;
+        becameIdle();
     }
-}
 
+    // Go through the items from front to back (for-each loops use this)
+    // Time Complexity: O(1) to create, O(n) to walk
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int index = 0; // Places from the front
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return (T) items[(head + index++) & (items.length - 1)];
+            }
+        };
+    }
+
+    // Splits by position in the line, so parallel streams get even halves
+    // Time Complexity: O(1) to create
+    @Override
+    public Spliterator<T> spliterator() {
+        return new RangeSpliterator(0, size);
+    }
+
+    // Stream over the items from front to back
+    // Time Complexity: O(1) to create
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    // Helper method to move the line into a ring of a new size, front at position 0
+    // Time Complexity: O(n)
+    private void resize(int newCapacity) {
+        Object[] newItems = new Object[newCapacity];
+        int firstPart = Math.min(size, items.length - head); // Up to the end of the old array
+        System.arraycopy(items, head, newItems, 0, firstPart);
+        System.arraycopy(items, 0, newItems, firstPart, size - firstPart);
+        items = newItems;
+        head = 0;
+    }
+
+    // Helper method called when the line runs empty: start again at position 0,
+    // and drop a ring that grew much bigger than needed (only if shrinkWhenIdle)
+    // Time Complexity: O(1)
+    private void becameIdle() {
+        head = 0;
+        if (shrinkWhenIdle && items.length > initialCapacity * 4) {
+            items = new Object[initialCapacity];
+        }
+    }
+
+    // Helper method: the smallest power of two that is at least n
+    // Time Complexity: O(1)
+    private static int powerOfTwoAtLeast(int n) {
+        int power = Integer.highestOneBit(n);
+        return power == n ? n : power << 1;
+    }
+
+    // Covers the places from..to-1 counted from the front
+    private class RangeSpliterator implements Spliterator<T> {
+        private int from; // Next place to hand out
+        private final int to; // One past the last place
+
+        RangeSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept((T) items[(head + from++) & (items.length - 1)]);
+            return true;
+        }
+
+        // Give away the first half of what is left
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (from + to) >>> 1;
+            if (middle <= from) {
+                return null; // Too small to split
+            }
+            Spliterator<T> prefix = new RangeSpliterator(from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+}
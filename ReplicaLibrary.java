@@ -0,0 +1,276 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+// A read-only copy of a library that follows a ReplicationPrimary over TCP
+// A background thread applies the primary's change log to a local Library,
+// so searches here never touch (or slow down) the lending desk's library.
+// If the connection drops, it reconnects and continues from the last offset it applied.
+// If an entry arrives past the one it needs (entries were lost), it reconnects at once
+// from the last offset it applied; the primary replays from there or sends a snapshot.
+// Offsets only mean something within one run of the primary, so SYNC carries the run ID
+// of the last snapshot; a restarted primary has a new one and sends a fresh snapshot.
+// Reads are refused while the replica is further behind than maxStalenessMillis.
+public class ReplicaLibrary {
+    private static final int RECONNECT_MILLIS = 1000;
+
+    private final String host;
+    private final int port;
+    private final long maxStalenessMillis; // Refuse reads that may be older than this
+    private final Object lock; // Guards library while the log is applied
+    private Library library;
+    private long nextOffset; // Next log entry we need (-1 = need a snapshot)
+    private String runId; // Primary run our offsets belong to (null = none yet)
+    private volatile boolean running;
+
+    // Replication lag numbers
+    private volatile long lastContactMillis; // Last time we heard anything from the primary
+    private volatile long lastLagMillis; // Delay of the last applied entry
+    private volatile long maxLagMillis;
+    private volatile long primaryLatestOffset = -1;
+    private volatile long appliedEntries;
+    private volatile long resyncs; // Times a gap in the log made us reconnect
+    private volatile long refusedReads; // Reads turned away because we were too far behind
+
+    // Create a replica of the primary at host:port
+    // Time Complexity: O(1)
+    public ReplicaLibrary(String host, int port, long maxStalenessMillis) {
+        this.host = host;
+        this.port = port;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.lock = new Object();
+        this.library = new Library(0, false);
+        this.nextOffset = -1;
+    }
+
+    // Start following the primary on a background thread
+    // Time Complexity: O(1)
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::followLoop, "replica-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Stop following
+    // Time Complexity: O(1)
+    public void stop() {
+        running = false;
+    }
+
+    // Connect, catch up, keep applying; reconnect if anything goes wrong
+    private void followLoop() {
+        while (running) {
+            boolean gap = false;
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), RECONNECT_MILLIS);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+                synchronized (lock) {
+                    out.println("SYNC\t" + (runId == null ? "-" : runId) + "\t" + nextOffset);
+                }
+
+                String line;
+                while (running && (line = in.readLine()) != null) {
+                    lastContactMillis = System.currentTimeMillis();
+                    if (!handle(line, in)) {
+                        gap = true;
+                        break;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Primary not there (yet) or connection lost - try again shortly
+            }
+
+            if (gap) {
+                resyncs++;
+                continue; // Ask again from nextOffset right away
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Apply one message from the primary
+    // Returns false if entries are missing before this one (we have to resync)
+    private boolean handle(String line, BufferedReader in) throws IOException {
+        String[] fields = line.split("\t", -1);
+        switch (fields[0]) {
+            case "S": {
+                // Snapshot: build a fresh library, then swap it in
+                String snapshotRun = fields[1];
+                long offset = Long.parseLong(fields[2]);
+                int count = Integer.parseInt(fields[3]);
+                Library fresh = new Library(0, false);
+                for (int i = 0; i < count; i++) {
+                    String[] book = in.readLine().split("\t", -1);
+                    fresh.loadBook(ReplicationPrimary.decodeBook(book, 1));
+                }
+                synchronized (lock) {
+                    library = fresh;
+                    nextOffset = offset;
+                    runId = snapshotRun;
+                }
+                primaryLatestOffset = offset - 1; // A restarted primary counts from 0 again
+                break;
+            }
+            case "E": {
+                long offset = Long.parseLong(fields[1]);
+                long sentAt = Long.parseLong(fields[2]);
+                MutationListener.Type type = MutationListener.Type.valueOf(fields[3]);
+                Book book = ReplicationPrimary.decodeBook(fields, 4);
+                synchronized (lock) {
+                    if (offset > nextOffset) {
+                        return false; // Entries nextOffset..offset-1 never came - don't apply past them
+                    }
+                    if (offset < nextOffset) {
+                        return true; // Already applied - skip
+                    }
+                    library.applyReplicated(type, book);
+                    nextOffset = offset + 1;
+                }
+                appliedEntries++;
+                lastLagMillis = System.currentTimeMillis() - sentAt;
+                maxLagMillis = Math.max(maxLagMillis, lastLagMillis);
+                primaryLatestOffset = Math.max(primaryLatestOffset, offset);
+                break;
+            }
+            case "H":
+                primaryLatestOffset = Math.max(primaryLatestOffset, Long.parseLong(fields[1]));
+                break;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    // Turn a read away if the data might be older than we promised
+    // Returns true if the read may go ahead
+    private boolean checkStaleness() {
+        long lag = getLagMillis();
+        if (lag <= maxStalenessMillis) {
+            return true;
+        }
+        refusedReads++;
+        System.out.println("Replica is out of date (" + (lag == Long.MAX_VALUE ? "never heard from the primary" : lag + " ms behind")
+                + ", limit " + maxStalenessMillis + " ms) - read refused, ask the lending desk.");
+        return false;
+    }
+
+    // Search for a book by ID on the replica
+    // Time Complexity: O(1) average
+    public void searchBookById(int bookId) {
+        if (!checkStaleness()) {
+            return;
+        }
+        synchronized (lock) {
+            library.searchBookById(bookId);
+        }
+    }
+
+    // Search for a book by title on the replica
+    // Time Complexity: O(log n) average
+    public void searchBookByTitle(String title) {
+        if (!checkStaleness()) {
+            return;
+        }
+        synchronized (lock) {
+            library.searchBookByTitle(title);
+        }
+    }
+
+    // Show all books in the order they were added
+    // Time Complexity: O(n)
+    public void listAllBooks() {
+        if (!checkStaleness()) {
+            return;
+        }
+        synchronized (lock) {
+            library.listAllBooks();
+        }
+    }
+
+    // Show all books sorted by title
+    // Time Complexity: O(n)
+    public void listBooksAlphabetically() {
+        if (!checkStaleness()) {
+            return;
+        }
+        synchronized (lock) {
+            library.listBooksAlphabetically();
+        }
+    }
+
+    // Look up a book by ID on the replica without printing (null if missing or refused)
+    // Time Complexity: O(1) average
+    public Book getBookById(int bookId) {
+        if (!checkStaleness()) {
+            return null;
+        }
+        synchronized (lock) {
+            return library.getBookById(bookId);
+        }
+    }
+
+    // Number of books the replica has right now
+    // Time Complexity: O(1)
+    public int getCatalogSize() {
+        synchronized (lock) {
+            return library.getCatalogSize();
+        }
+    }
+
+    // How long since we last heard from the primary (entry or heartbeat)
+    // Time Complexity: O(1)
+    public long getStalenessMillis() {
+        return lastContactMillis == 0 ? Long.MAX_VALUE : System.currentTimeMillis() - lastContactMillis;
+    }
+
+    // How far behind the primary reads may be: time since we last heard from it, or
+    // the delay of the last applied entry while entries are still waiting
+    // Time Complexity: O(1)
+    public long getLagMillis() {
+        long lag = getStalenessMillis();
+        if (getEntriesBehind() > 0) {
+            lag = Math.max(lag, lastLagMillis);
+        }
+        return lag;
+    }
+
+    // True while reads are served (lag within maxStalenessMillis)
+    // Time Complexity: O(1)
+    public boolean isReadable() {
+        return getLagMillis() <= maxStalenessMillis;
+    }
+
+    // How many log entries we still have to apply
+    // Time Complexity: O(1)
+    public long getEntriesBehind() {
+        synchronized (lock) {
+            return Math.max(0, primaryLatestOffset + 1 - Math.max(nextOffset, 0));
+        }
+    }
+
+    // Show replication lag numbers
+    // Time Complexity: O(1)
+    public void printStatus() {
+        System.out.println("=== Replication Status ===");
+        System.out.println("Primary:            " + host + ":" + port);
+        synchronized (lock) {
+            System.out.println("Books:              " + library.getCatalogSize());
+            System.out.println("Next offset:        " + nextOffset);
+            System.out.println("Primary run:        " + (runId == null ? "none yet" : runId));
+        }
+        System.out.println("Primary latest:     " + primaryLatestOffset);
+        System.out.println("Entries behind:     " + getEntriesBehind());
+        System.out.println("Entries applied:    " + appliedEntries);
+        System.out.println("Resyncs after gaps: " + resyncs);
+        System.out.println("Refused reads:      " + refusedReads + " (limit " + maxStalenessMillis + " ms)");
+        System.out.println("Last lag:           " + lastLagMillis + " ms (max " + maxLagMillis + " ms)");
+        long age = getStalenessMillis();
+        System.out.println("Last contact:       " + (age == Long.MAX_VALUE ? "never" : age + " ms ago"));
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.function.BooleanSupplier;
+
+// Runnable checks that a replica follows its primary - also across a primary restart
+// Uses a free local port and writes no files:
+//   java ReplicationCheck
+// Prints PASS or FAIL for every check and exits with status 1 if any failed.
+public class ReplicationCheck {
+    private static final long WAIT_MILLIS = 10_000; // Reconnects take about a second
+    private static final long MAX_STALENESS_MILLIS = 1500;
+
+    private static PrintStream console;
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The library talks a lot
+        try {
+            checkCatchUpAcrossRestart();
+        } finally {
+            System.setOut(console);
+        }
+        console.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // The replica catches up, starts over from a snapshot when the primary restarts
+    // (its offsets count from 0 again), and refuses reads while it can't be sure
+    // Time Complexity: O(1) - a handful of books
+    private static void checkCatchUpAcrossRestart() throws IOException {
+        Library first = new Library(0, false);
+        first.addBook("Dune", "Frank Herbert");
+        first.addBook("Emma", "Jane Austen");
+        first.addBook("Ulysses", "James Joyce");
+        ReplicationPrimary primary = new ReplicationPrimary(first);
+        primary.start(0);
+        int port = primary.getPort();
+
+        ReplicaLibrary replica = new ReplicaLibrary("localhost", port, MAX_STALENESS_MILLIS);
+        replica.start();
+        check(await(() -> replica.getCatalogSize() == 3), "a new replica gets a snapshot");
+        first.addBook("Walden", "Henry David Thoreau");
+        first.borrowBook("ann", 2);
+        check(await(() -> replica.getCatalogSize() == 4 && replica.getEntriesBehind() == 0
+                && !replica.getBookById(2).isAvailable()), "the replica applies the change log");
+
+        // A different library behind a new primary on the same port: its log
+        // restarts at offset 0 and is already past where the replica stopped
+        primary.stop();
+        Library second = new Library(0, false);
+        second.addBook("Beloved", "Toni Morrison");
+        second.addBook("Carrie", "Stephen King");
+        ReplicationPrimary restarted = new ReplicationPrimary(second);
+        second.addBook("Hamlet", "William Shakespeare");
+        second.borrowBook("bob", 1);
+        second.addBook("Ivanhoe", "Walter Scott");
+        restarted.start(port);
+        check(!restarted.getRunId().equals(primary.getRunId()), "a restarted primary has a new run ID");
+        check(await(() -> replica.getCatalogSize() == 4 && replica.getBookById(1) != null
+                && replica.getBookById(1).getTitle().equals("Beloved")),
+                "the replica starts over from the restarted primary's snapshot");
+        check(replica.getBookById(1) != null && !replica.getBookById(1).isAvailable()
+                && replica.getBookById(4).getTitle().equals("Ivanhoe"), "no books are left over from the old run");
+        second.returnBook("bob", 1);
+        check(await(() -> replica.getBookById(1) != null && replica.getBookById(1).isAvailable()),
+                "the replica keeps following the new run");
+
+        // No primary: once the lag passes the limit, reads are refused
+        restarted.stop();
+        check(await(() -> !replica.isReadable()), "reads are refused once the replica is too far behind");
+        check(replica.getBookById(1) == null, "a refused read returns nothing");
+        ReplicationPrimary again = new ReplicationPrimary(second);
+        again.start(port);
+        check(await(replica::isReadable), "reads are served again after catching up");
+        again.stop();
+        replica.stop();
+    }
+
+    // Poll until the condition holds (or WAIT_MILLIS pass)
+    // Time Complexity: O(WAIT_MILLIS / 20) polls
+    private static boolean await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return condition.getAsBoolean();
+    }
+
+    // Print one result
+    // Time Complexity: O(1)
+    private static void check(boolean ok, String what) {
+        console.println((ok ? "PASS " : "FAIL ") + what);
+        if (!ok) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+
+// The lending desk side of replication
+// Every change to the library is written to an ordered log (each entry has an offset).
+// Read-only replicas connect over TCP, say which offset they need next, and get
+// the log streamed to them. A replica that is too far behind (or brand new) first
+// gets a snapshot of the whole catalog plus the offset the snapshot is valid at.
+// Offsets start at 0 again whenever the primary restarts, so every run gets its own
+// run ID. A replica that last followed another run (or none) always gets a snapshot -
+// its offset means nothing in this run's log.
+//
+// Wire format (one line per message, fields separated by tabs):
+//   replica -> primary:  SYNC <run ID or -> <next offset or -1>
+//   primary -> replica:  S <run ID> <offset> <count>            snapshot header
+//                        B <id> <available> <title> <author>    one book of the snapshot
+//                        E <offset> <time> <type> <id> <available> <title> <author>
+//                        H <latest offset> <time>               heartbeat when idle
+public class ReplicationPrimary implements MutationListener {
+    private static final int RETAINED_ENTRIES = 100_000; // Older entries need a snapshot
+    private static final long HEARTBEAT_MILLIS = 500;
+
+    private final String runId; // Tells this run's offsets apart from an earlier run's
+    private final String[] log; // Ring of the newest entries, entry o is at o % length
+    private long nextOffset; // Offset the next entry will get
+    private final LinkedHashMap<Integer, String> state; // Book ID -> "id, available, title, author"
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    // Start following a library (its current books become the starting state)
+    // Time Complexity: O(n)
+    public ReplicationPrimary(Library library) {
+        this.runId = UUID.randomUUID().toString();
+        this.log = new String[RETAINED_ENTRIES];
+        this.nextOffset = 0;
+        this.state = new LinkedHashMap<>();
+        for (Book book : library.getAllBooks()) {
+            state.put(book.getId(), encodeBook(book));
+        }
+        library.addMutationListener(this);
+    }
+
+    // Record a change (called by the library right after it happens)
+    // Time Complexity: O(1)
+    @Override
+    public synchronized void onMutation(Type type, Book book, String userName) {
+        if (type == Type.REMOVE) {
+            state.remove(book.getId());
+        } else {
+            state.put(book.getId(), encodeBook(book));
+        }
+
+        long offset = nextOffset++;
+        log[(int) (offset % log.length)] = "E\t" + offset + "\t" + System.currentTimeMillis() + "\t" + type
+                + "\t" + encodeBook(book);
+        notifyAll(); // Wake up the follower threads
+    }
+
+    // Start accepting replicas on a port (runs on background threads)
+    // Time Complexity: O(1)
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        running = true;
+        Thread acceptThread = new Thread(this::acceptLoop, "replication-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        System.out.println("Replication primary listening on port " + serverSocket.getLocalPort());
+    }
+
+    // Port we are listening on (useful when started with port 0)
+    // Time Complexity: O(1)
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Stop accepting replicas and disconnect them
+    // Time Complexity: O(1)
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Error stopping replication: " + e.getMessage());
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    // ID of this run of the primary (replicas use it to notice a restart)
+    // Time Complexity: O(1)
+    public String getRunId() {
+        return runId;
+    }
+
+    // Offset of the newest entry (-1 if nothing has changed yet)
+    // Time Complexity: O(1)
+    public synchronized long getLatestOffset() {
+        return nextOffset - 1;
+    }
+
+    // Accept replicas until stopped, one thread per replica
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread follower = new Thread(() -> serveReplica(socket), "replication-follower");
+                follower.setDaemon(true);
+                follower.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Replication accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Stream the log to one replica until it disconnects
+    private void serveReplica(Socket socket) {
+        try (Socket s = socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), "UTF-8"));
+                PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), "UTF-8")))) {
+            String hello = in.readLine();
+            if (hello == null || !hello.startsWith("SYNC\t")) {
+                return;
+            }
+            String[] fields = hello.split("\t", -1);
+            boolean sameRun = fields.length == 3 && fields[1].equals(runId);
+            long cursor = sameRun ? Long.parseLong(fields[2]) : -1; // Another run's offset - start over
+
+            while (running) {
+                DynamicArray<String> batch = new DynamicArray<>();
+                synchronized (this) {
+                    long firstRetained = Math.max(0, nextOffset - log.length);
+                    if (cursor < firstRetained || cursor > nextOffset) {
+                        // Replica is new or too far behind - send the whole catalog first
+                        batch.add("S\t" + runId + "\t" + nextOffset + "\t" + state.size());
+                        for (String book : state.values()) {
+                            batch.add("B\t" + book);
+                        }
+                        cursor = nextOffset;
+                    }
+                    if (batch.isEmpty() && cursor == nextOffset) {
+                        wait(HEARTBEAT_MILLIS);
+                    }
+                    while (cursor < nextOffset) {
+                        batch.add(log[(int) (cursor % log.length)]);
+                        cursor++;
+                    }
+                    if (batch.isEmpty()) {
+                        batch.add("H\t" + (nextOffset - 1) + "\t" + System.currentTimeMillis());
+                    }
+                }
+
+                // Send outside the lock so a slow replica doesn't block the lending desk
+                for (String line : batch) {
+                    out.println(line);
+                }
+                out.flush();
+                if (out.checkError()) {
+                    return; // Replica went away
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Replica disconnected or sent garbage - it will reconnect and catch up
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Turn a book into tab-separated fields
+    // Time Complexity: O(length)
+    static String encodeBook(Book book) {
+        return book.getId() + "\t" + book.isAvailable() + "\t" + clean(book.getTitle()) + "\t"
+                + clean(book.getAuthor());
+    }
+
+    // Turn tab-separated fields (starting at index first) back into a book
+    // Time Complexity: O(length)
+    static Book decodeBook(String[] fields, int first) {
+        Book book = new Book(Integer.parseInt(fields[first]), fields[first + 2], fields[first + 3]);
+        book.setAvailable(Boolean.parseBoolean(fields[first + 1]));
+        return book;
+    }
+
+    // Tabs and line breaks would break the wire format
+    // Time Complexity: O(length)
+    private static String clean(String text) {
+        return text.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,377 @@
+import java.io.*;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// A library split into N independent shards (each one a normal Library)
+// Books are placed on a shard by hashing their ID, so anything done by ID
+// only touches one shard. Title, author and listing queries ask every shard
+// at the same time on a fork-join pool and merge the sorted answers.
+// Each shard is locked on its own, so work on different shards runs in parallel.
+public class ShardedLibrary {
+    private final Library[] shards;
+    private final ForkJoinPool pool; // Runs the scatter-gather queries
+    private final AtomicInteger nextBookId; // IDs are handed out here, not by the shards
+    private final Stack<Integer> undoOrder; // Which shard did each undoable action
+    private int nextShardToProcess; // Round-robin position for processBorrowRequest
+
+    private static final String BOOKS_FILE = "books.txt";
+    private static final int SHARD_TITLE_CACHE_SIZE = 256;
+
+    private static final Comparator<Book> BY_ID = Comparator.comparingInt(Book::getId);
+    // Same order as the title tree: lowercase title, then ID for duplicate titles
+    private static final Comparator<Book> BY_TITLE = (a, b) -> {
+        int byTitle = a.getTitle().toLowerCase().compareTo(b.getTitle().toLowerCase());
+        return byTitle != 0 ? byTitle : Integer.compare(a.getId(), b.getId());
+    };
+
+    // Create a library with the given number of shards and load books.txt into it
+    // Time Complexity: O(n log n) where n is number of books loaded from file
+    public ShardedLibrary(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Need at least one shard: " + shardCount);
+        }
+        this.shards = new Library[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Library(SHARD_TITLE_CACHE_SIZE, false);
+        }
+        this.pool = new ForkJoinPool(Math.min(shardCount, Runtime.getRuntime().availableProcessors()));
+        this.nextBookId = new AtomicInteger(1);
+        this.undoOrder = new Stack<>();
+        this.nextShardToProcess = 0;
+        loadBooksFromFile();
+    }
+
+    // Which shard does this book ID live on?
+    // The ID is mixed first so shards stay balanced even for patterned IDs
+    // Time Complexity: O(1)
+    private int shardFor(int bookId) {
+        int h = bookId * 0x9E3779B9;
+        h ^= (h >>> 16);
+        return Math.floorMod(h, shards.length);
+    }
+
+    // Add a new book (the ID decides which shard gets it)
+    // Time Complexity: O(log(n/N)) for the shard's title tree insertion
+    public void addBook(String title, String author) {
+        Book book = new Book(nextBookId.getAndIncrement(), title, author);
+        Library shard = shards[shardFor(book.getId())];
+        synchronized (shard) {
+            shard.addBook(book);
+        }
+    }
+
+    // Remove a book by ID
+    // Time Complexity: O(1) to pick the shard + O(n/N) to remove it from that shard's array
+    public void removeBook(int bookId) {
+        Library shard = shards[shardFor(bookId)];
+        synchronized (shard) {
+            shard.removeBook(bookId);
+        }
+    }
+
+    // Search for a book by ID
+    // Time Complexity: O(1) average - one ID map lookup in one shard
+    public void searchBookById(int bookId) {
+        Library shard = shards[shardFor(bookId)];
+        synchronized (shard) {
+            shard.searchBookById(bookId);
+        }
+    }
+
+    // Someone wants to borrow a book - add them to that shard's waiting list
+    // Time Complexity: O(1) average - one ID map lookup and an enqueue in one shard
+    public void requestBorrow(String userName, int bookId) {
+        Library shard = shards[shardFor(bookId)];
+        synchronized (shard) {
+            shard.requestBorrow(userName, bookId);
+        }
+    }
+
+    // Borrow a book right now
+    // Time Complexity: O(1) average to find it in one shard + O(log(n/N)) for that shard's availability bitmap
+    public void borrowBook(String userName, int bookId) {
+        runUndoable(shardFor(bookId), shard -> shard.borrowBook(userName, bookId));
+    }
+
+    // Return a borrowed book
+    // Time Complexity: O(1) average to find it in one shard + O(log(n/N)) for that shard's availability bitmap
+    public void returnBook(String userName, int bookId) {
+        runUndoable(shardFor(bookId), shard -> shard.returnBook(userName, bookId));
+    }
+
+    // Process the next waiting request, taking the shards in turn
+    // Time Complexity: O(N) to find a shard with requests + O(log(n/N) + w) on that shard
+    // (w = people on the book's waitlist)
+    public void processBorrowRequest() {
+        for (int tried = 0; tried < shards.length; tried++) {
+            int index;
+            synchronized (this) {
+                index = nextShardToProcess;
+                nextShardToProcess = (nextShardToProcess + 1) % shards.length;
+            }
+            Library shard = shards[index];
+            synchronized (shard) {
+                if (shard.getBorrowQueueSize() == 0) {
+                    continue;
+                }
+            }
+            runUndoable(index, Library::processBorrowRequest);
+            return;
+        }
+        System.out.println("No borrow requests in queue.");
+    }
+
+    // Undo the most recent borrow/return, whichever shard it happened on
+    // Time Complexity: O(1) average to find the book in one shard + O(log(n/N)) for its availability bitmap
+    public void undoLastAction() {
+        int index;
+        synchronized (this) {
+            if (undoOrder.isEmpty()) {
+                System.out.println("No actions to undo.");
+                return;
+            }
+            index = undoOrder.pop();
+        }
+        Library shard = shards[index];
+        synchronized (shard) {
+            shard.undoLastAction();
+        }
+    }
+
+    // Run something on one shard and remember the shard if it pushed an undoable action
+    // Time Complexity: O(1) + the action
+    private void runUndoable(int index, Consumer<Library> action) {
+        Library shard = shards[index];
+        synchronized (shard) {
+            int before = shard.getActionStackSize();
+            action.accept(shard);
+            if (shard.getActionStackSize() > before) {
+                synchronized (this) {
+                    undoOrder.push(index);
+                }
+            }
+        }
+    }
+
+    // Find every book with this title on any shard (a shard can have several: the
+    // titles equal to it are one range of its title tree, found by rank)
+    // Time Complexity: O(log(n/N) + k) per shard for k matches, shards searched in parallel
+    public DynamicArray<Book> findBooksByTitle(String title) {
+        return scatterGather(shard -> {
+            PersistentTitleTree.Snapshot titles = shard.snapshotTitles();
+            int from = titles.countBefore(title);
+            int to = titles.countUpTo(title);
+            DynamicArray<Book> books = new DynamicArray<>(Math.max(1, to - from));
+            Iterator<Book> matches = titles.iteratorFrom(from);
+            for (int i = from; i < to; i++) {
+                books.add(matches.next()); // In ID order, like the tree keeps equal titles
+            }
+            return books;
+        }, BY_ID);
+    }
+
+    // Search for a book by title and print what we found
+    // Time Complexity: O(log(n/N)) per shard, shards searched in parallel
+    public void searchBookByTitle(String title) {
+        DynamicArray<Book> books = findBooksByTitle(title);
+        if (books.isEmpty()) {
+            System.out.println("Book with title '" + title + "' not found.");
+            return;
+        }
+        for (int i = 0; i < books.size(); i++) {
+            System.out.println("Book found: " + books.get(i));
+        }
+    }
+
+    // Find every book by an author, ordered by ID
+    // Time Complexity: O(n/N) per shard, shards searched in parallel
+    public DynamicArray<Book> findBooksByAuthor(String author) {
+        return scatterGather(shard -> shard.getBooksByAuthor(author), BY_ID);
+    }
+
+    // Every book sorted by title
+    // Time Complexity: O(n/N) per shard in parallel + O(n log N) to merge
+    public DynamicArray<Book> getBooksAlphabetically() {
+        return scatterGather(Library::getBooksAlphabetically, BY_TITLE);
+    }
+
+    // Every book in order of addition (IDs only grow, so this is ID order)
+    // Time Complexity: O(n/N) per shard in parallel + O(n log N) to merge
+    public DynamicArray<Book> getAllBooks() {
+        return scatterGather(Library::getAllBooks, BY_ID);
+    }
+
+    // Show all books in the order we added them
+    // Time Complexity: O(n log N)
+    public void listAllBooks() {
+        printBooks("=== All Books (Order of Addition) ===", getAllBooks());
+    }
+
+    // Show all books sorted alphabetically by title
+    // Time Complexity: O(n log N)
+    public void listBooksAlphabetically() {
+        printBooks("=== Books in Alphabetical Order ===", getBooksAlphabetically());
+    }
+
+    // Print a list of books under a heading
+    // Time Complexity: O(n)
+    private void printBooks(String heading, DynamicArray<Book> books) {
+        if (books.isEmpty()) {
+            System.out.println("No books in the catalog.");
+            return;
+        }
+        System.out.println("\n" + heading);
+        for (int i = 0; i < books.size(); i++) {
+            System.out.println(books.get(i));
+        }
+    }
+
+    // Ask every shard the same question in parallel and merge the sorted answers
+    // Each shard's answer must already be sorted by the given order
+    // Time Complexity: O(per-shard query) in parallel + O(n log N) to merge
+    private DynamicArray<Book> scatterGather(Function<Library, DynamicArray<Book>> query,
+            Comparator<Book> order) {
+        return pool.invoke(new ShardQuery(query, order, 0, shards.length));
+    }
+
+    // Fork-join task: split the shard range in half, query both halves, merge
+    private class ShardQuery extends RecursiveTask<DynamicArray<Book>> {
+        private static final long serialVersionUID = 1L;
+        private final Function<Library, DynamicArray<Book>> query;
+        private final Comparator<Book> order;
+        private final int from; // First shard (inclusive)
+        private final int to; // Last shard (exclusive)
+
+        ShardQuery(Function<Library, DynamicArray<Book>> query, Comparator<Book> order, int from, int to) {
+            this.query = query;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected DynamicArray<Book> compute() {
+            if (to - from == 1) {
+                Library shard = shards[from];
+                synchronized (shard) {
+                    return query.apply(shard);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            ShardQuery left = new ShardQuery(query, order, from, middle);
+            ShardQuery right = new ShardQuery(query, order, middle, to);
+            left.fork();
+            DynamicArray<Book> rightBooks = right.compute();
+            return merge(left.join(), rightBooks, order);
+        }
+    }
+
+    // Merge two sorted lists into one sorted list
+    // Time Complexity: O(a + b)
+    private static DynamicArray<Book> merge(DynamicArray<Book> a, DynamicArray<Book> b, Comparator<Book> order) {
+        DynamicArray<Book> merged = new DynamicArray<>(a.size() + b.size());
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            if (order.compare(a.get(i), b.get(j)) <= 0) {
+                merged.add(a.get(i++));
+            } else {
+                merged.add(b.get(j++));
+            }
+        }
+        while (i < a.size()) {
+            merged.add(a.get(i++));
+        }
+        while (j < b.size()) {
+            merged.add(b.get(j++));
+        }
+        return merged;
+    }
+
+    // Load books.txt and put each book on its shard
+    // Time Complexity: O(n log(n/N))
+    private void loadBooksFromFile() {
+        File file = new File(BOOKS_FILE);
+        if (!file.exists()) {
+            System.out.println("Books file not found. Starting with empty catalog.");
+            return;
+        }
+
+        int loaded = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+
+                Book book = Book.fromFileString(line);
+                shards[shardFor(book.getId())].loadBook(book, Holdings.fromFileString(line));
+                loaded++;
+
+                // Make sure we don't reuse book IDs
+                if (book.getId() >= nextBookId.get()) {
+                    nextBookId.set(book.getId() + 1);
+                }
+            }
+            System.out.println("Loaded " + loaded + " books from file into " + shards.length + " shards.");
+        } catch (IOException e) {
+            System.out.println("Error loading books from file: " + e.getMessage());
+        }
+    }
+
+    // Save all books (from every shard, in ID order) to the file, with the copy
+    // counts of titles that have more than one copy (the same format as Library)
+    // Time Complexity: O(n log N)
+    public void saveBooksToFile() {
+        DynamicArray<Book> books = getAllBooks();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(BOOKS_FILE))) {
+            for (int i = 0; i < books.size(); i++) {
+                Book book = books.get(i);
+                Library shard = shards[shardFor(book.getId())];
+                Holdings copies;
+                synchronized (shard) {
+                    copies = shard.getHoldings(book.getId());
+                }
+                writer.println(copies == null ? book.toFileString() : book.toFileString() + "," + copies.toFileString());
+            }
+            System.out.println("Books saved to file successfully.");
+        } catch (IOException e) {
+            System.out.println("Error saving books to file: " + e.getMessage());
+        }
+    }
+
+    // Total number of books across all shards
+    // Time Complexity: O(N)
+    public int getCatalogSize() {
+        int total = 0;
+        for (Library shard : shards) {
+            synchronized (shard) {
+                total += shard.getCatalogSize();
+            }
+        }
+        return total;
+    }
+
+    // How many shards there are
+    // Time Complexity: O(1)
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // Get one shard (e.g. to look at its metrics)
+    // Time Complexity: O(1)
+    public Library getShard(int index) {
+        return shards[index];
+    }
+
+    // Stop the worker threads
+    // Time Complexity: O(1)
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -1,71 +1,143 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 // Stack - like a pile of plates
 // Last plate you put on top is the first one you take off (LIFO)
-public class Stack<T> {
-    
-    // Each item in the stack is a Node
-    private class Node {
-        T data;
-        Node next;
-        
-        Node(T data) {
-            this.data = data;
-            this.next = null;
-        }
-    }
-    
-    private Node top; // The top of the stack
+// The plates sit in one array, bottom at position 0 and the top at size - 1, so
+// push and pop never allocate anything - the array only grows (doubles) when it is full.
+public class Stack<T> implements Iterable<T> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] items; // Bottom first
     private int size;
-    
+    private final int initialCapacity; // Smallest the array is ever made again
+    private final boolean shrinkWhenIdle; // Give memory back when the stack empties
+
     // Create an empty stack
     // Time Complexity: O(1)
     public Stack() {
-        this.top = null;
+        this(INITIAL_CAPACITY, false);
+    }
+
+    // Create an empty stack with room for 'initialCapacity' items. If shrinkWhenIdle is
+    // set, an array that grew much bigger than that is swapped for a small one whenever
+    // the stack becomes empty.
+    // Time Complexity: O(capacity)
+    public Stack(int initialCapacity, boolean shrinkWhenIdle) {
+        this.initialCapacity = Math.max(1, initialCapacity);
+        this.items = new Object[this.initialCapacity];
         this.size = 0;
+        this.shrinkWhenIdle = shrinkWhenIdle;
     }
-    
+
     // Put something on top of the stack
-    // Time Complexity: O(1)
+    // Time Complexity: O(1) amortized, O(n) when the array has to grow
     public void push(T data) {
-        Node newNode = new Node(data);
-        newNode.next = top;
-        top = newNode;
-        size++;
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        items[size++] = data;
     }
-    
+
+    // Put everything on the stack in order (the last one ends up on top)
+    // Grows the array at most once when the count is known up front
+    // Time Complexity: O(k) amortized for k items
+    public void pushAll(Iterable<? extends T> data) {
+        if (data instanceof DynamicArray) {
+            ensureCapacity(size + ((DynamicArray<?>) data).size());
+        }
+        for (T item : data) {
+            push(item);
+        }
+    }
+
     // Take the top item off the stack
     // Time Complexity: O(1)
+    @SuppressWarnings("unchecked")
     public T pop() {
         if (isEmpty()) {
             throw new RuntimeException("Stack is empty. Cannot pop.");
         }
-        
-        T data = top.data;
-        top = top.next;
-        size--;
+
+        T data = (T) items[--size];
+        items[size] = null; // Don't keep popped items alive
+        if (size == 0) {
+            becameIdle();
+        }
         return data;
     }
-    
+
+    // Pop everything into 'sink', top first; returns how many
+    // Time Complexity: O(n)
+    public int drainTo(DynamicArray<? super T> sink) {
+        return drainTo(sink, size);
+    }
+
+    // Pop up to maxItems items into 'sink', top first; returns how many
+    // Time Complexity: O(min(n, maxItems))
+    @SuppressWarnings("unchecked")
+    public int drainTo(DynamicArray<? super T> sink, int maxItems) {
+        int count = Math.min(size, Math.max(0, maxItems));
+        sink.ensureCapacity(sink.size() + count);
+        for (int i = 0; i < count; i++) {
+            sink.add((T) items[--size]);
+            items[size] = null;
+        }
+        if (count > 0 && size == 0) {
+            becameIdle();
+        }
+        return count;
+    }
+
     // Look at the top item without removing it
     // Time Complexity: O(1)
+    @SuppressWarnings("unchecked")
     public T peek() {
         if (isEmpty()) {
             throw new RuntimeException("Stack is empty. Cannot peek.");
         }
-        return top.data;
+        return (T) items[size - 1];
     }
-    
+
     // Is the stack empty?
     // Time Complexity: O(1)
     public boolean isEmpty() {
-        return top == null;
+        return size == 0;
     }
-    
+
     // How many items in the stack?
     // Time Complexity: O(1)
     public int size() {
         return size;
     }
-    
+
+    // How many items fit before the array has to grow?
+    // Time Complexity: O(1)
+    public int capacity() {
+        return items.length;
+    }
+
+    // Make sure the array can hold at least minCapacity items without growing again
+    // Time Complexity: O(n) if it has to grow, O(1) otherwise
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > items.length) {
+            resize(minCapacity);
+        }
+    }
+
+    // Give back memory the stack doesn't need (never below the starting size)
+    // Time Complexity: O(n)
+    public void trimToSize() {
+        int target = Math.max(initialCapacity, size);
+        if (target < items.length) {
+            resize(target);
+        }
+    }
+
     // Show all items in the stack
     // Time Complexity: O(n)
     public void display() {
@@ -73,20 +145,118 @@ public class Stack<T> {
             System.out.println("Stack is empty.");
             return;
         }
-        
-        Node current = top;
+
         System.out.println("=== Stack (Top to Bottom) ===");
-        while (current != null) {
-            System.out.println(current.data);
-            current = current.next;
+        for (int i = size - 1; i >= 0; i--) {
+            System.out.println(items[i]);
         }
     }
-    
+
     // Clear everything from the stack
-    // Time Complexity: O(1)
+    // Time Complexity: O(n) - the slots are emptied so the array can be reused
     public void clear() {
-        top = null;
+        for (int i = 0; i < size; i++) {
+            items[i] = null;
+        }
         size = 0;
+        becameIdle();
+    }
+
+    // Go through the items from top to bottom (for-each loops use this)
+    // Time Complexity: O(1) to create, O(n) to walk
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int index = size - 1;
+
+            @Override
+            public boolean hasNext() {
+                return index >= 0;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (index < 0) {
+                    throw new NoSuchElementException();
+                }
+                return (T) items[index--];
+            }
+        };
+    }
+
+    // Splits by position from the top, so parallel streams get even halves
+    // Time Complexity: O(1) to create
+    @Override
+    public Spliterator<T> spliterator() {
+        return new RangeSpliterator(size - 1, 0, size);
+    }
+
+    // Stream over the items from top to bottom
+    // Time Complexity: O(1) to create
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    // Helper method to move the items into an array of a new size
+    // Time Complexity: O(n)
+    private void resize(int newCapacity) {
+        Object[] newItems = new Object[newCapacity];
+        System.arraycopy(items, 0, newItems, 0, size);
+        items = newItems;
+    }
+
+    // Helper method called when the stack runs empty: drop an array that grew much
+    // bigger than needed (only if shrinkWhenIdle)
+    // Time Complexity: O(1)
+    private void becameIdle() {
+        if (shrinkWhenIdle && items.length > initialCapacity * 4) {
+            items = new Object[initialCapacity];
+        }
     }
-}
 
+    // Covers the places from..to-1 counted down from position 'top'
+    private class RangeSpliterator implements Spliterator<T> {
+        private final int top; // Position of the top when the stream started
+        private int from; // Next place to hand out
+        private final int to; // One past the last place
+
+        RangeSpliterator(int top, int from, int to) {
+            this.top = top;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept((T) items[top - from++]);
+            return true;
+        }
+
+        // Give away the first half of what is left
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (from + to) >>> 1;
+            if (middle <= from) {
+                return null; // Too small to split
+            }
+            Spliterator<T> prefix = new RangeSpliterator(top, from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+}
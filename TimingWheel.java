@@ -0,0 +1,160 @@
+import java.util.function.Consumer;
+
+// Hashed timing wheel - schedules things that expire at a given time
+// Time is cut into ticks; the wheel has a fixed number of slots and a timeout
+// goes into the slot of the tick it expires in (tick mod slots). Each tick only
+// looks at its own slot, so scheduling, cancelling and ticking are all O(1)
+// no matter how many timeouts are waiting (thousands of holds cost the same).
+// Timeouts further away than one turn of the wheel share a slot with nearer
+// ones and are simply skipped until their turn comes round.
+public class TimingWheel<T> {
+
+    // One scheduled item (keep it to cancel the timeout later)
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private int slot; // -1 once it expired or was cancelled
+
+        private Timeout(T item, long deadline, int slot) {
+            this.item = item;
+            this.deadline = deadline;
+            this.slot = slot;
+        }
+
+        // What was scheduled
+        // Time Complexity: O(1)
+        public T getItem() {
+            return item;
+        }
+
+        // When it expires (milliseconds)
+        // Time Complexity: O(1)
+        public long getDeadline() {
+            return deadline;
+        }
+
+        // Still waiting to expire?
+        // Time Complexity: O(1)
+        public boolean isPending() {
+            return slot >= 0;
+        }
+    }
+
+    private final Timeout<T>[] slots; // Head of a doubly linked list per slot
+    private final long tickMillis;
+    private final int mask; // slots.length - 1 (the length is a power of two)
+    private long currentTick; // Last tick we have processed
+    private int size;
+
+    // Create a wheel with ticks of tickMillis and (at least) slotCount slots, starting at startMillis
+    // Time Complexity: O(slots)
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int slotCount, long startMillis) {
+        if (tickMillis <= 0 || slotCount <= 0) {
+            throw new IllegalArgumentException("Tick and slot count must be positive");
+        }
+        int length = Integer.highestOneBit(slotCount);
+        if (length < slotCount) {
+            length <<= 1;
+        }
+        this.slots = (Timeout<T>[]) new Timeout<?>[length];
+        this.tickMillis = tickMillis;
+        this.mask = length - 1;
+        this.currentTick = startMillis / tickMillis;
+        this.size = 0;
+    }
+
+    // Schedule an item to expire at deadline (milliseconds)
+    // It expires on the first tick at or after the deadline (a past deadline: the next tick)
+    // Time Complexity: O(1)
+    public Timeout<T> schedule(T item, long deadline) {
+        // The first tick whose start is at or after the deadline
+        long tick = Math.max(Math.floorDiv(deadline + tickMillis - 1, tickMillis), currentTick + 1);
+        int slot = (int) (tick & mask);
+        Timeout<T> timeout = new Timeout<>(item, deadline, slot);
+        timeout.next = slots[slot];
+        if (slots[slot] != null) {
+            slots[slot].prev = timeout;
+        }
+        slots[slot] = timeout;
+        size++;
+        return timeout;
+    }
+
+    // Cancel a timeout that hasn't expired yet (returns false if it already had)
+    // Time Complexity: O(1)
+    public boolean cancel(Timeout<T> timeout) {
+        if (!timeout.isPending()) {
+            return false;
+        }
+        unlink(timeout);
+        return true;
+    }
+
+    // Move the wheel forward to 'now' and hand every expired item to onExpire
+    // (onExpire may schedule new timeouts)
+    // Time Complexity: O(ticks passed + expired) - after a long pause at most one full turn
+    public int advance(long now, Consumer<T> onExpire) {
+        long targetTick = Math.floorDiv(now, tickMillis);
+        DynamicArray<Timeout<T>> expired = new DynamicArray<>();
+
+        if (targetTick - currentTick >= slots.length) {
+            // Paused for more than a full turn - every slot is due, visit each once
+            for (int slot = 0; slot < slots.length; slot++) {
+                collectExpired(slot, now, expired);
+            }
+        } else {
+            for (long tick = currentTick + 1; tick <= targetTick; tick++) {
+                collectExpired((int) (tick & mask), now, expired);
+            }
+        }
+        if (targetTick > currentTick) {
+            currentTick = targetTick;
+        }
+
+        // Call back only after the wheel is consistent again
+        for (int i = 0; i < expired.size(); i++) {
+            onExpire.accept(expired.get(i).item);
+        }
+        return expired.size();
+    }
+
+    // How many timeouts are waiting
+    // Time Complexity: O(1)
+    public int size() {
+        return size;
+    }
+
+    // Take the expired timeouts out of one slot
+    // Time Complexity: O(timeouts in the slot)
+    private void collectExpired(int slot, long now, DynamicArray<Timeout<T>> expired) {
+        Timeout<T> current = slots[slot];
+        while (current != null) {
+            Timeout<T> next = current.next;
+            if (current.deadline <= now) {
+                unlink(current);
+                expired.add(current);
+            }
+            current = next;
+        }
+    }
+
+    // Take a timeout out of its slot's list
+    // Time Complexity: O(1)
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.slot = -1;
+        size--;
+    }
+}
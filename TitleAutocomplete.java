@@ -0,0 +1,363 @@
+import java.util.HashMap;
+
+// Type-ahead for titles: the most borrowed books whose title starts with what was typed
+// Titles (lowercase) are stored in a compressed radix trie - every edge holds a whole
+// run of characters, so there is one node per place where titles branch, not one per
+// character. Every node keeps the best 'topK' books of everything below it, ranked
+// by borrow count (then title, then ID), so answering a prefix is just walking down
+// to it and copying that list: O(prefix length + k), however big the catalog is.
+// Keeping the lists right:
+//   - add, or a book borrowed again: offer it to each node on its path, O(depth * topK)
+//   - remove, or a borrow undone: only nodes whose list had the book are rebuilt
+//     from their children's lists, O(depth * children * topK)
+public class TitleAutocomplete {
+
+    // One node of the trie
+    private static final class Node {
+        String label; // Characters on the edge from the parent to this node
+        final HashMap<Character, Node> children = new HashMap<>(4); // By first character of their label
+        DynamicArray<Book> books; // Books whose whole title ends here (null if none)
+        Book[] top; // Best books in this subtree, best first
+        int topSize;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private final int topK;
+    private final Node root;
+    private final HashMap<Integer, Integer> borrowCounts; // Book ID -> times borrowed (missing = 0)
+    private int size;
+
+    // Create an empty index that keeps the best topK books at every node
+    // Time Complexity: O(1)
+    public TitleAutocomplete(int topK) {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("topK must be positive: " + topK);
+        }
+        this.topK = topK;
+        this.root = new Node("");
+        this.borrowCounts = new HashMap<>();
+    }
+
+    // Add a book under its title
+    // Time Complexity: O(title length + depth * topK)
+    public void insert(Book book) {
+        String key = book.getTitle().toLowerCase();
+        DynamicArray<Node> path = new DynamicArray<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.children.put(key.charAt(i), child);
+                i = key.length();
+            } else {
+                int common = commonPrefix(child.label, key, i);
+                if (common < child.label.length()) {
+                    // The title branches off in the middle of this edge - split it there
+                    Node middle = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    middle.children.put(child.label.charAt(0), child);
+                    middle.top = child.top == null ? null : child.top.clone(); // Same books below it
+                    middle.topSize = child.topSize;
+                    node.children.put(key.charAt(i), middle);
+                    child = middle;
+                }
+                i += common;
+            }
+            node = child;
+            path.add(node);
+        }
+        if (node.books == null) {
+            node.books = new DynamicArray<>(1);
+        }
+        node.books.add(book);
+        size++;
+        for (int j = 0; j < path.size(); j++) {
+            offer(path.get(j), book);
+        }
+    }
+
+    // Take a book out (false if it isn't in the index); its borrow count goes either way
+    // Time Complexity: O(title length + depth * children * topK)
+    public boolean remove(Book book) {
+        borrowCounts.remove(book.getId());
+        String key = book.getTitle().toLowerCase();
+        DynamicArray<Node> path = pathTo(key);
+        Node node = path.get(path.size() - 1);
+        if (!endsAt(path, key) || node.books == null || !removeById(node.books, book.getId())) {
+            return false;
+        }
+        if (node.books.isEmpty()) {
+            node.books = null;
+        }
+        size--;
+
+        // Keep the trie compressed: drop empty leaves, merge nodes left with one child
+        int last = path.size() - 1;
+        if (node != root && node.books == null && node.children.isEmpty()) {
+            path.get(last - 1).children.remove(node.label.charAt(0));
+            last--;
+            node = path.get(last);
+        }
+        if (node != root && node.books == null && node.children.size() == 1) {
+            mergeWithChild(node, path.get(last - 1));
+        }
+
+        // Lists that had the book are rebuilt, deepest first
+        refresh(key, book);
+        return true;
+    }
+
+    // Count borrows of a book (delta = -1 takes one back, e.g. an undone borrow)
+    // Time Complexity: O(title length + depth * topK) for a borrow,
+    // O(title length + depth * children * topK) for taking one back
+    public void recordBorrow(Book book, int delta) {
+        int count = Math.max(0, getBorrowCount(book.getId()) + delta);
+        if (count == 0) {
+            borrowCounts.remove(book.getId());
+        } else {
+            borrowCounts.put(book.getId(), count);
+        }
+
+        String key = book.getTitle().toLowerCase();
+        DynamicArray<Node> path = pathTo(key);
+        if (!endsAt(path, key)) {
+            return; // Not in the index
+        }
+        if (delta > 0) {
+            // It can only move up, so offering it again is enough
+            for (int i = 0; i < path.size(); i++) {
+                offer(path.get(i), book);
+            }
+        } else {
+            refresh(key, book); // It may fall out of some lists - they need their next-best book
+        }
+    }
+
+    // The k most borrowed books whose title starts with the prefix (ignoring case),
+    // most borrowed first. Up to topK this is read straight from one node's list;
+    // asking for more walks that node's whole subtree.
+    // Time Complexity: O(prefix length + k) for k <= topK
+    public DynamicArray<Book> complete(String prefix, int k) {
+        DynamicArray<Book> result = new DynamicArray<>();
+        String key = prefix.toLowerCase();
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                return result;
+            }
+            int common = commonPrefix(child.label, key, i);
+            if (i + common < key.length() && common < child.label.length()) {
+                return result; // Differs in the middle of this edge
+            }
+            i += common;
+            node = child; // The prefix may end inside this edge - same books either way
+        }
+
+        if (k <= topK) {
+            for (int j = 0; j < Math.min(k, node.topSize); j++) {
+                result.add(node.top[j]);
+            }
+            return result;
+        }
+        Node all = new Node("");
+        all.top = new Book[k];
+        collect(node, all, k);
+        for (int j = 0; j < all.topSize; j++) {
+            result.add(all.top[j]);
+        }
+        return result;
+    }
+
+    // How many times a book has been borrowed
+    // Time Complexity: O(1) average
+    public int getBorrowCount(int bookId) {
+        Integer count = borrowCounts.get(bookId);
+        return count == null ? 0 : count;
+    }
+
+    // How many books are in the index
+    // Time Complexity: O(1)
+    public int getSize() {
+        return size;
+    }
+
+    // How many books every node remembers
+    // Time Complexity: O(1)
+    public int getTopK() {
+        return topK;
+    }
+
+    // Helper method to put a book into a node's list if it is good enough, or move it
+    // up if it is already there (its count only went up)
+    // Time Complexity: O(topK)
+    private void offer(Node node, Book book) {
+        offer(node, book, topK);
+    }
+
+    // Same, with a list of a given capacity
+    // Time Complexity: O(capacity)
+    private void offer(Node node, Book book, int capacity) {
+        if (node.top == null) {
+            node.top = new Book[capacity];
+        }
+        int pos = -1;
+        for (int i = 0; i < node.topSize; i++) {
+            if (node.top[i].getId() == book.getId()) {
+                pos = i;
+                break;
+            }
+        }
+        if (pos < 0) {
+            if (node.topSize < capacity) {
+                pos = node.topSize++;
+            } else if (ranksBefore(book, node.top[capacity - 1])) {
+                pos = capacity - 1; // Pushes out the last one
+            } else {
+                return;
+            }
+            node.top[pos] = book;
+        }
+        while (pos > 0 && ranksBefore(book, node.top[pos - 1])) {
+            node.top[pos] = node.top[pos - 1];
+            node.top[pos - 1] = book;
+            pos--;
+        }
+    }
+
+    // Helper method to rebuild, deepest first, the lists on a title's path that contain the book
+    // (its count went down, or it was removed)
+    // Time Complexity: O(depth * children * topK)
+    private void refresh(String key, Book book) {
+        DynamicArray<Node> path = pathTo(key);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            if (contains(node, book.getId())) {
+                rebuildTop(node);
+            }
+        }
+    }
+
+    // Helper method to work out a node's list again from its own books and its children's lists
+    // Time Complexity: O((books here + children * topK) * topK)
+    private void rebuildTop(Node node) {
+        node.topSize = 0;
+        if (node.books != null) {
+            for (int i = 0; i < node.books.size(); i++) {
+                offer(node, node.books.get(i));
+            }
+        }
+        for (Node child : node.children.values()) {
+            for (int i = 0; i < child.topSize; i++) {
+                offer(node, child.top[i]);
+            }
+        }
+        for (int i = node.topSize; i < topK && node.top != null; i++) {
+            node.top[i] = null; // Don't keep removed books alive
+        }
+    }
+
+    // Helper method to gather the best 'capacity' books of a whole subtree into 'into'
+    // Time Complexity: O(books in the subtree * capacity)
+    private void collect(Node node, Node into, int capacity) {
+        if (node.books != null) {
+            for (int i = 0; i < node.books.size(); i++) {
+                offer(into, node.books.get(i), capacity);
+            }
+        }
+        for (Node child : node.children.values()) {
+            collect(child, into, capacity);
+        }
+    }
+
+    // Helper method to replace a node that has no books and one child by that child
+    // Time Complexity: O(label length)
+    private static void mergeWithChild(Node node, Node parent) {
+        Node child = node.children.values().iterator().next();
+        child.label = node.label + child.label;
+        parent.children.put(child.label.charAt(0), child);
+    }
+
+    // Helper method to follow a key down as far as whole edges match (root first)
+    // Time Complexity: O(key length)
+    private DynamicArray<Node> pathTo(String key) {
+        DynamicArray<Node> path = new DynamicArray<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null || !key.startsWith(child.label, i)) {
+                break;
+            }
+            i += child.label.length();
+            node = child;
+            path.add(node);
+        }
+        return path;
+    }
+
+    // Helper method: does the path spell out the whole key?
+    // Time Complexity: O(depth)
+    private static boolean endsAt(DynamicArray<Node> path, String key) {
+        int length = 0;
+        for (int i = 0; i < path.size(); i++) {
+            length += path.get(i).label.length();
+        }
+        return length == key.length();
+    }
+
+    // Helper method: is this book in the node's list?
+    // Time Complexity: O(topK)
+    private static boolean contains(Node node, int bookId) {
+        for (int i = 0; i < node.topSize; i++) {
+            if (node.top[i].getId() == bookId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Helper method to take the book with this ID out of a list
+    // Time Complexity: O(k)
+    private static boolean removeById(DynamicArray<Book> books, int bookId) {
+        for (int i = 0; i < books.size(); i++) {
+            if (books.get(i).getId() == bookId) {
+                books.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Helper method: how many characters of the label match the key from position 'from'
+    // Time Complexity: O(label length)
+    private static int commonPrefix(String label, String key, int from) {
+        int n = Math.min(label.length(), key.length() - from);
+        int i = 0;
+        while (i < n && label.charAt(i) == key.charAt(from + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    // Helper method: should a be listed before b? (more borrows, then title, then ID)
+    // Time Complexity: O(title length)
+    private boolean ranksBefore(Book a, Book b) {
+        int c = Integer.compare(getBorrowCount(b.getId()), getBorrowCount(a.getId()));
+        if (c == 0) {
+            c = a.getTitle().compareToIgnoreCase(b.getTitle());
+        }
+        if (c == 0) {
+            c = Integer.compare(a.getId(), b.getId());
+        }
+        return c < 0;
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.HashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// A small LRU cache in front of the title tree
+// Popular titles are answered without walking the title tree at all
+// Misses are cached too (as null), so repeated searches for missing titles are cheap
+public class TitleCache {
+
+    // Each cached title is a node in a doubly linked list (most recent at the front)
+    private class Node {
+        String key;
+        Book book; // null means "we know this title is not in the library"
+        Node prev;
+        Node next;
+
+        Node(String key, Book book) {
+            this.key = key;
+            this.book = book;
+        }
+    }
+
+    private final HashMap<String, Node> map; // Title -> node, for O(1) lookups
+    private final int maxSize;
+    private Node head; // Most recently used
+    private Node tail; // Least recently used (evicted first)
+
+    // Counters and size are read by the metrics threads, so they are thread-safe
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private volatile int entries; // map.size()
+
+    // Create a cache that holds at most maxSize titles (0 turns it off)
+    // Time Complexity: O(1)
+    public TitleCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.map = new HashMap<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    // Turn a title into a cache key (searches ignore uppercase/lowercase)
+    // Time Complexity: O(length of title)
+    public static String keyOf(String title) {
+        return title.toLowerCase();
+    }
+
+    // Is this title in the cache? (counts a miss if it is not)
+    // Time Complexity: O(1)
+    public boolean contains(String key) {
+        if (map.containsKey(key)) {
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    // Get a cached result (may be null for a cached miss) and mark it as recently used
+    // Call contains() first to tell a cached miss apart from "not cached"
+    // Time Complexity: O(1)
+    public Book get(String key) {
+        Node node = map.get(key);
+        if (node == null) {
+            return null;
+        }
+        hits.increment();
+        moveToFront(node);
+        return node.book;
+    }
+
+    // Remember the result of a lookup (book may be null for "not found")
+    // Time Complexity: O(1)
+    public void put(String key, Book book) {
+        if (maxSize == 0) {
+            return;
+        }
+
+        Node node = map.get(key);
+        if (node != null) {
+            node.book = book;
+            moveToFront(node);
+            return;
+        }
+
+        if (map.size() == maxSize) {
+            // Full - throw away the least recently used title
+            map.remove(tail.key);
+            unlink(tail);
+            evictions.increment();
+        }
+
+        node = new Node(key, book);
+        map.put(key, node);
+        addToFront(node);
+        entries = map.size();
+    }
+
+    // Forget a title (call whenever books with this title are added or removed)
+    // Time Complexity: O(1)
+    public void invalidate(String key) {
+        Node node = map.remove(key);
+        if (node != null) {
+            unlink(node);
+            entries = map.size();
+        }
+    }
+
+    // Forget everything
+    // Time Complexity: O(1)
+    public void clear() {
+        map.clear();
+        head = null;
+        tail = null;
+        entries = 0;
+    }
+
+    // Move a node to the front of the list
+    // Time Complexity: O(1)
+    private void moveToFront(Node node) {
+        if (node == head) {
+            return;
+        }
+        unlink(node);
+        addToFront(node);
+    }
+
+    // Put a node at the front of the list
+    // Time Complexity: O(1)
+    private void addToFront(Node node) {
+        node.prev = null;
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        head = node;
+        if (tail == null) {
+            tail = node;
+        }
+    }
+
+    // Take a node out of the list
+    // Time Complexity: O(1)
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    // How many titles are cached right now?
+    // Time Complexity: O(1)
+    public int size() {
+        return entries;
+    }
+
+    // Most titles this cache will hold
+    // Time Complexity: O(1)
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    // Lookups answered from the cache
+    // Time Complexity: O(1)
+    public long getHits() {
+        return hits.sum();
+    }
+
+    // Lookups that had to go to the tree
+    // Time Complexity: O(1)
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Titles thrown out to make room
+    // Time Complexity: O(1)
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
@@ -0,0 +1,229 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Approximate "top K over the last window" (e.g. most borrowed books this week)
+// in a fixed amount of memory, however many different keys come by.
+// The window is cut into buckets (e.g. 7 one-day buckets for a week). Each bucket has:
+//   - a CountMinSketch with the counts of every key seen during it
+//   - a min-heap of its heaviest keys (the candidates), holding 2K of them
+// When time moves past a bucket, the oldest one is cleared and reused. A query sums
+// each candidate's estimates over all buckets and returns the K largest.
+// Estimates are never too low and at most epsilon * (events in the window) too high
+// (with probability 1 - delta). A key that is never among the heaviest of any single
+// bucket can be missed - with 2K candidates per bucket that only happens to keys near
+// the bottom of the top K.
+public class WindowedTopK {
+
+    // One result: what it is, and about how many times it was counted
+    public static final class Item {
+        private final String label;
+        private final long count;
+
+        Item(String label, long count) {
+            this.label = label;
+            this.count = count;
+        }
+
+        // What was counted (a book, author or user name)
+        public String getLabel() {
+            return label;
+        }
+
+        // About how many times (never less than the real count)
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return label + " (" + count + ")";
+        }
+    }
+
+    // The heaviest keys of one bucket, smallest count on top so it is the one pushed out
+    private static final class HeavyHitters {
+        private final long[] keys;
+        private final String[] labels;
+        private final int[] counts;
+        private final HashMap<Long, Integer> positions; // Key -> place in the heap
+        private int size;
+
+        HeavyHitters(int capacity) {
+            keys = new long[capacity];
+            labels = new String[capacity];
+            counts = new int[capacity];
+            positions = new HashMap<>(capacity * 2);
+        }
+
+        // The key's count (estimated) is now 'count': move it, add it, or ignore it
+        // Time Complexity: O(log capacity)
+        void update(long key, String label, int count) {
+            Integer pos = positions.get(key);
+            if (pos != null) {
+                counts[pos] = count; // Counts only go up, so it can only move down in a min-heap
+                siftDown(pos);
+            } else if (size < keys.length) {
+                place(size, key, label, count);
+                size++;
+                siftUp(size - 1);
+            } else if (count > counts[0]) {
+                positions.remove(keys[0]);
+                place(0, key, label, count);
+                siftDown(0);
+            }
+        }
+
+        void clear() {
+            Arrays.fill(labels, null);
+            positions.clear();
+            size = 0;
+        }
+
+        private void place(int i, long key, String label, int count) {
+            keys[i] = key;
+            labels[i] = label;
+            counts[i] = count;
+            positions.put(key, i);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (counts[parent] <= counts[i]) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && counts[left] < counts[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && counts[right] < counts[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long key = keys[a];
+            String label = labels[a];
+            int count = counts[a];
+            place(a, keys[b], labels[b], counts[b]);
+            place(b, key, label, count);
+        }
+    }
+
+    private final int k;
+    private final long bucketMillis;
+    private final CountMinSketch[] sketches;
+    private final HeavyHitters[] heavyHitters;
+    private long currentBucket; // Number of the newest bucket (time / bucketMillis)
+
+    // Top k over the last windowMillis, in 'buckets' steps, with the given error bounds
+    // Time Complexity: O(buckets * (e / epsilon) * ln(1 / delta)) for the counters
+    public WindowedTopK(int k, long windowMillis, int buckets, double epsilon, double delta, long now) {
+        if (k <= 0 || buckets <= 0 || windowMillis < buckets) {
+            throw new IllegalArgumentException("Bad top-K window: k=" + k + ", window=" + windowMillis
+                    + " ms, buckets=" + buckets);
+        }
+        this.k = k;
+        this.bucketMillis = windowMillis / buckets;
+        this.sketches = new CountMinSketch[buckets];
+        this.heavyHitters = new HeavyHitters[buckets];
+        for (int i = 0; i < buckets; i++) {
+            sketches[i] = new CountMinSketch(epsilon, delta);
+            heavyHitters[i] = new HeavyHitters(2 * k);
+        }
+        this.currentBucket = now / bucketMillis;
+    }
+
+    // Count one event for a key (label is what the report shows for it)
+    // Time Complexity: O(depth + log k)
+    public void add(long key, String label, long now) {
+        advance(now);
+        int b = (int) (currentBucket % sketches.length);
+        int count = sketches[b].add(key, 1);
+        heavyHitters[b].update(key, label, count);
+    }
+
+    // Count one event for a key that is a string (e.g. an author or user name)
+    // Time Complexity: O(length + depth + log k)
+    public void add(String label, long now) {
+        add(CountMinSketch.keyOf(label.toLowerCase()), label, now);
+    }
+
+    // The (about) k most counted keys in the window, most counted first
+    // Time Complexity: O(buckets^2 * k * depth)
+    public DynamicArray<Item> top(long now) {
+        advance(now);
+        HashMap<Long, String> candidates = new HashMap<>();
+        for (HeavyHitters hitters : heavyHitters) {
+            for (int i = 0; i < hitters.size; i++) {
+                candidates.putIfAbsent(hitters.keys[i], hitters.labels[i]);
+            }
+        }
+
+        Item[] items = new Item[candidates.size()];
+        int n = 0;
+        for (Long key : candidates.keySet()) {
+            long count = 0;
+            for (CountMinSketch sketch : sketches) {
+                count += sketch.estimate(key);
+            }
+            items[n++] = new Item(candidates.get(key), count);
+        }
+        Arrays.sort(items, (a, b) -> a.count != b.count ? Long.compare(b.count, a.count) : a.label.compareTo(b.label));
+
+        DynamicArray<Item> result = new DynamicArray<>();
+        for (int i = 0; i < Math.min(k, items.length); i++) {
+            result.add(items[i]);
+        }
+        return result;
+    }
+
+    // How many events are in the window
+    // Time Complexity: O(buckets)
+    public long getTotal(long now) {
+        advance(now);
+        long total = 0;
+        for (CountMinSketch sketch : sketches) {
+            total += sketch.getTotal();
+        }
+        return total;
+    }
+
+    // The most any estimate can be too high (epsilon * events in the window), with
+    // probability 1 - delta
+    // Time Complexity: O(buckets)
+    public long getErrorBound(long now) {
+        return (long) Math.ceil(Math.E / sketches[0].getWidth() * getTotal(now));
+    }
+
+    // Helper method to move the window forward: buckets that fell out of it are cleared
+    // Time Complexity: O(buckets passed * counters per bucket), O(1) if still in the same bucket
+    private void advance(long now) {
+        long bucket = now / bucketMillis;
+        if (bucket <= currentBucket) {
+            return;
+        }
+        long steps = Math.min(bucket - currentBucket, sketches.length);
+        for (long i = 1; i <= steps; i++) {
+            int b = (int) ((currentBucket + i) % sketches.length);
+            sketches[b].clear();
+            heavyHitters[b].clear();
+        }
+        currentBucket = bucket;
+    }
+}